@@ -0,0 +1,42 @@
+package luppolo.prestazioni;
+
+import java.util.concurrent.TimeUnit;
+import luppolo.costruzione.NotazionePolaccaEspressione;
+import luppolo.costruzione.ProgrammaLineara;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** The benchmarks of the parsers of Polish notation and of linear programs. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CostruzioneBenchmark {
+
+  /**
+   * Parses the batch in Polish notation.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void notazionePolacca(Espressioni espressioni, Blackhole buco) {
+    for (String riga : espressioni.polacche) {
+      buco.consume(NotazionePolaccaEspressione.fromPolocaa(riga));
+    }
+  }
+
+  /**
+   * Parses the batch of linear programs.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void programmaLineare(Espressioni espressioni, Blackhole buco) {
+    for (String[] programma : espressioni.programmi) {
+      buco.consume(ProgrammaLineara.fromLinearProgram(programma));
+    }
+  }
+}
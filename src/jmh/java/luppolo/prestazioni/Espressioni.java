@@ -0,0 +1,224 @@
+package luppolo.prestazioni;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import luppolo.*;
+import luppolo.costruzione.NotazionePolaccaEspressione;
+import luppolo.costruzione.ProgrammaLineara;
+import luppolo.manipolazione.Derivazione;
+import luppolo.manipolazione.Espansione;
+import luppolo.manipolazione.Semplificazione;
+import luppolo.rappresentazione.FormaProgramma;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import utils.Generatore;
+
+/**
+ * The inputs of the benchmarks: a batch of expressions, in Polish notation, as trees and as linear
+ * programs. The expressions come either from the inputs of the black-box tests of the clients,
+ * found under the directory given by the system property {@value #CORPUS}, or from a seeded
+ * random generator; in both cases the batch has {@link #dimensione} expressions, the ones of the
+ * corpus being repeated if they are fewer.
+ *
+ * <p>The generated expressions come from a {@link Generatore} with depth {@link #profondita},
+ * fan-out {@link #larghezza} and the default parameters otherwise. The expressions that cannot be
+ * parsed, simplified, expanded or derived are discarded, so that every benchmark runs on the same
+ * valid batch, and so are those whose expansion could have more than {@value #MASSIMO_MONOMI}
+ * monomials or that have huge exponents.
+ */
+@State(Scope.Benchmark)
+public class Espressioni {
+
+  /** The system property with the directory of the inputs of the tests of the clients. */
+  public static final String CORPUS = "luppolo.corpus";
+
+  /** The seed of the generator, fixed so that runs can be compared. */
+  private static final long SEME = 20240610L;
+
+  /** The largest number of monomials of the expansion of an expression of the batch. */
+  private static final double MASSIMO_MONOMI = 1e4;
+
+  /** The largest numerator and denominator of an exponent of an expression of the batch. */
+  private static final long MASSIMO_ESPONENTE = 64;
+
+  /** The origin of the expressions: {@code corpus} or {@code sintetico}. */
+  @Param({"corpus", "sintetico"})
+  public String sorgente;
+
+  /** The number of expressions of the batch. */
+  @Param({"1000"})
+  public int dimensione;
+
+  /** The depth of the generated expressions. */
+  @Param({"4"})
+  public int profondita;
+
+  /** The number of operands of the generated sums and products. */
+  @Param({"3"})
+  public int larghezza;
+
+  /** The expressions in Polish notation. */
+  public String[] polacche;
+
+  /** The expressions as trees. */
+  public Nodo[] nodi;
+
+  /** The linear programs. */
+  public String[][] programmi;
+
+  /**
+   * Prepares the batch.
+   *
+   * @throws UncheckedIOException if the corpus cannot be read
+   * @throws IllegalArgumentException if the parameters are invalid or the corpus is empty
+   */
+  @Setup(Level.Trial)
+  public void prepara() {
+    if (dimensione <= 0 || profondita < 0 || larghezza < 2) {
+      throw new IllegalArgumentException("Invalid parameters");
+    }
+    List<String> righe;
+    List<String[]> programmiLetti = new ArrayList<>();
+    switch (sorgente) {
+      case "corpus":
+        righe = new ArrayList<>();
+        leggiCorpus(righe, programmiLetti);
+        break;
+      case "sintetico":
+        righe = new ArrayList<>();
+        Generatore.Parametri predefiniti = Generatore.Parametri.PREDEFINITI;
+        Generatore generatore =
+            new Generatore(
+                new Generatore.Parametri(
+                    profondita,
+                    larghezza,
+                    predefiniti.simboli(),
+                    predefiniti.esponente(),
+                    predefiniti.coefficiente(),
+                    predefiniti.condivisione()),
+                SEME);
+        for (int i = 0; i < dimensione; i++) righe.add(generatore.polacca());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown source: " + sorgente);
+    }
+
+    // si tengono solo le espressioni su cui tutti i benchmark riescono
+    List<String> valide = new ArrayList<>();
+    List<Nodo> alberi = new ArrayList<>();
+    for (String riga : righe) {
+      try {
+        Nodo nodo = NotazionePolaccaEspressione.fromPolocaa(riga);
+        // alcune righe del corpus hanno espansioni enormi, che misurerebbero solo la memoria
+        if (monomi(nodo) > MASSIMO_MONOMI) continue;
+        nodo.accept(new Semplificazione());
+        nodo.accept(new Espansione());
+        nodo.accept(new Derivazione('x'));
+        valide.add(riga);
+        alberi.add(nodo);
+      } catch (RuntimeException e) {
+        // la riga mette alla prova la gestione degli errori, non le prestazioni
+      }
+    }
+    if (valide.isEmpty()) throw new IllegalArgumentException("No valid expressions");
+    if (programmiLetti.isEmpty()) {
+      for (Nodo nodo : alberi) programmiLetti.add(FormaProgramma.toLinearProgram(nodo));
+    }
+
+    polacche = new String[dimensione];
+    nodi = new Nodo[dimensione];
+    programmi = new String[dimensione][];
+    for (int i = 0; i < dimensione; i++) {
+      polacche[i] = valide.get(i % valide.size());
+      nodi[i] = alberi.get(i % alberi.size());
+      programmi[i] = programmiLetti.get(i % programmiLetti.size());
+    }
+  }
+
+  /**
+   * Reads the inputs of the tests of the clients: the linear programs, one per file, and the lines
+   * of all the other inputs.
+   *
+   * @param righe the list where the lines are added
+   * @param programmi the list where the valid linear programs are added
+   */
+  private static void leggiCorpus(List<String> righe, List<String[]> programmi) {
+    Path radice = Path.of(System.getProperty(CORPUS, "tests/clients"));
+    List<Path> file;
+    try (Stream<Path> percorsi = Files.walk(radice)) {
+      file =
+          percorsi
+              .filter(p -> p.getFileName().toString().matches("input-\\d+\\.txt"))
+              .sorted()
+              .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    for (Path p : file) {
+      List<String> contenuto;
+      try {
+        contenuto = Files.readAllLines(p);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (p.getParent().getFileName().toString().startsWith("Programma")) {
+        String[] programma = contenuto.toArray(new String[0]);
+        try {
+          ProgrammaLineara.fromLinearProgram(programma);
+          programmi.add(programma);
+        } catch (RuntimeException e) {
+          // il programma mette alla prova la gestione degli errori
+        }
+      } else {
+        righe.addAll(contenuto);
+      }
+    }
+    if (righe.isEmpty() || programmi.isEmpty()) {
+      throw new IllegalArgumentException("No inputs found under " + radice.toAbsolutePath());
+    }
+  }
+
+  /**
+   * Returns an upper bound of the number of monomials of the expansion of an expression: the
+   * monomials of a sum add up, those of a product multiply, and the n-th power of t monomials has
+   * at most {@code C(t + n - 1, n)} monomials. Powers whose exponent has a numerator or a
+   * denominator greater than {@value #MASSIMO_ESPONENTE} count as infinitely many monomials, since
+   * computing them on rational numbers can take arbitrarily long.
+   *
+   * @param nodo the expression
+   * @return the upper bound, possibly infinite
+   */
+  private static double monomi(Nodo nodo) {
+    if (nodo instanceof Addizione || nodo instanceof Moltiplicazione) {
+      double res = nodo instanceof Addizione ? 0 : 1;
+      for (Nodo figlio : (NodoInterno) nodo) {
+        res = nodo instanceof Addizione ? res + monomi(figlio) : res * monomi(figlio);
+      }
+      return res;
+    }
+    if (nodo instanceof Potenza) {
+      Potenza potenza = (Potenza) nodo;
+      double base = monomi(potenza.getBase());
+      Razionale esponente = potenza.getEsponente();
+      if (!esponente.isLong()
+          || Math.abs(esponente.num()) > MASSIMO_ESPONENTE
+          || esponente.den() > MASSIMO_ESPONENTE) {
+        return Double.POSITIVE_INFINITY;
+      }
+      if (!esponente.isIntero() || esponente.signum() <= 0) return base;
+      double res = 1;
+      for (long i = 1; i <= esponente.num() && res <= MASSIMO_MONOMI; i++) {
+        res = res * (base - 1 + i) / i;
+      }
+      return res;
+    }
+    return 1;
+  }
+}
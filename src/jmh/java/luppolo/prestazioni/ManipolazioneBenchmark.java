@@ -0,0 +1,54 @@
+package luppolo.prestazioni;
+
+import java.util.concurrent.TimeUnit;
+import luppolo.Nodo;
+import luppolo.manipolazione.Derivazione;
+import luppolo.manipolazione.Espansione;
+import luppolo.manipolazione.Semplificazione;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmarks of the visitors that transform expressions. Every expression is visited by a new
+ * visitor, as the clients do, so that no cache survives from one invocation to the next.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManipolazioneBenchmark {
+
+  /**
+   * Simplifies the batch.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void semplificazione(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(new Semplificazione()));
+  }
+
+  /**
+   * Expands the batch.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void espansione(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(new Espansione()));
+  }
+
+  /**
+   * Derives the batch with respect to {@code x}.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void derivazione(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(new Derivazione('x')));
+  }
+}
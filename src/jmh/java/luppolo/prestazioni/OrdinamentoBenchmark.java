@@ -0,0 +1,62 @@
+package luppolo.prestazioni;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import luppolo.Nodo;
+import luppolo.NodoFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The benchmarks of the sorting of the operands by {@link luppolo.NodoComparator} done by the
+ * constructors of additions and multiplications: the operands are the whole batch, shuffled. The
+ * constructors sort the list they are given, hence every invocation builds a fresh copy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OrdinamentoBenchmark {
+
+  /** The factory of the nodes. */
+  private final NodoFactory factory = new NodoFactory();
+
+  /** The operands, in a fixed random order. */
+  private List<Nodo> operandi;
+
+  /**
+   * Shuffles the batch.
+   *
+   * @param espressioni the batch
+   */
+  @Setup(Level.Trial)
+  public void prepara(Espressioni espressioni) {
+    operandi = new ArrayList<>(Arrays.asList(espressioni.nodi));
+    Collections.shuffle(operandi, new Random(espressioni.dimensione));
+  }
+
+  /**
+   * Builds the addition of the batch.
+   *
+   * @return the addition
+   */
+  @Benchmark
+  public Nodo addizione() {
+    return factory.addizione(new ArrayList<>(operandi));
+  }
+
+  /**
+   * Builds the multiplication of the batch.
+   *
+   * @return the multiplication
+   */
+  @Benchmark
+  public Nodo moltiplicazione() {
+    return factory.moltiplicazione(new ArrayList<>(operandi));
+  }
+}
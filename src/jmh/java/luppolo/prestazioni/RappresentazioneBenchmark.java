@@ -0,0 +1,54 @@
+package luppolo.prestazioni;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import luppolo.Nodo;
+import luppolo.rappresentazione.FormaLineare;
+import luppolo.rappresentazione.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** The benchmarks of the renderers of expressions. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RappresentazioneBenchmark {
+
+  /**
+   * Writes the batch in linear form.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void formaLineare(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(new FormaLineare()));
+  }
+
+  /**
+   * Draws the batch as trees.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void albero(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(new Tree("")));
+  }
+
+  /**
+   * Streams the batch as trees to a destination that discards them.
+   *
+   * @param espressioni the batch
+   * @throws IOException if the destination cannot be written
+   */
+  @Benchmark
+  public void alberoInFlusso(Espressioni espressioni) throws IOException {
+    Tree albero = new Tree("");
+    Writer uscita = Writer.nullWriter();
+    for (Nodo nodo : espressioni.nodi) albero.scrivi(nodo, uscita);
+  }
+}
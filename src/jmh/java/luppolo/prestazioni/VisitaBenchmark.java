@@ -0,0 +1,111 @@
+package luppolo.prestazioni;
+
+import java.util.concurrent.TimeUnit;
+import luppolo.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmarks of the visitors that measure expressions, counting the nodes of every expression
+ * of the batch with a {@link VisitorInt}, which returns its counts without boxing them, and with a
+ * {@link VisitorGenerico}, which boxes them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisitaBenchmark {
+
+  /** The visitor that counts the nodes of an expression as an {@code int}. */
+  private static final VisitorInt NODI =
+      new VisitorInt() {
+        @Override
+        public int visit(Razionale razionale) {
+          return 1;
+        }
+
+        @Override
+        public int visit(Simbolo simbolo) {
+          return 1;
+        }
+
+        @Override
+        public int visit(Addizione addizione) {
+          return figli(addizione);
+        }
+
+        @Override
+        public int visit(Moltiplicazione moltiplicazione) {
+          return figli(moltiplicazione);
+        }
+
+        @Override
+        public int visit(Potenza potenza) {
+          return figli(potenza);
+        }
+
+        private int figli(NodoInterno nodo) {
+          int res = 1;
+          for (Nodo figlio : nodo) res += figlio.accept(this);
+          return res;
+        }
+      };
+
+  /** The visitor that counts the nodes of an expression as an {@code Integer}. */
+  private static final VisitorGenerico<Integer> NODI_GENERICO =
+      new VisitorGenerico<>() {
+        @Override
+        public Integer visit(Razionale razionale) {
+          return 1;
+        }
+
+        @Override
+        public Integer visit(Simbolo simbolo) {
+          return 1;
+        }
+
+        @Override
+        public Integer visit(Addizione addizione) {
+          return figli(addizione);
+        }
+
+        @Override
+        public Integer visit(Moltiplicazione moltiplicazione) {
+          return figli(moltiplicazione);
+        }
+
+        @Override
+        public Integer visit(Potenza potenza) {
+          return figli(potenza);
+        }
+
+        private Integer figli(NodoInterno nodo) {
+          Integer res = 1;
+          for (Nodo figlio : nodo) res += figlio.accept(this);
+          return res;
+        }
+      };
+
+  /**
+   * Counts the nodes of the batch with the primitive visitor.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void nodi(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(NODI));
+  }
+
+  /**
+   * Counts the nodes of the batch with the generic visitor.
+   *
+   * @param espressioni the batch
+   * @param buco the sink of the results
+   */
+  @Benchmark
+  public void nodiGenerico(Espressioni espressioni, Blackhole buco) {
+    for (Nodo nodo : espressioni.nodi) buco.consume(nodo.accept(NODI_GENERICO));
+  }
+}
@@ -0,0 +1,543 @@
+package clients;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import luppolo.eventi.Riga;
+
+/**
+ * The batch mode of the clients that transform every line of their input independently. The
+ * lines are read through a buffer and grouped in blocks, the blocks are transformed in parallel by
+ * a pool of workers and their results are written through a buffer in the order of the input, as
+ * if the lines had been transformed one at a time.
+ *
+ * <p>The number of workers is the value of the system property {@value #LAVORATORI}, by default
+ * the number of available processors; with a single worker the lines are transformed by the
+ * calling thread. Every worker has its own transformation, hence a transformation with state, such
+ * as a cache, does not need to be thread-safe. If the transformation of a line throws an
+ * exception or an error, the results of the lines before it are written and it is rethrown. The
+ * transformation of every line is recorded as a {@link Riga} event with the number of the line.
+ *
+ * <p>A transformation can also be a {@link Scrittura}, that writes the result of a line straight
+ * to the output instead of returning it, so that the memory used does not grow with the size of a
+ * result. With a single worker the results are written through the buffer of the output as they
+ * are produced; with more workers the results of a block are held in memory up to {@value
+ * #CARATTERI_PER_BLOCCO} characters, then its worker waits for the blocks before it to be written
+ * and writes the rest of the block itself. In both cases, part of the result of a line whose
+ * transformation fails may have been written.
+ */
+public final class Lotto {
+
+  /** The name of the system property with the number of workers. */
+  public static final String LAVORATORI = "luppolo.lavoratori";
+
+  /** The number of lines of a block. */
+  private static final int RIGHE_PER_BLOCCO = 256;
+
+  /** The number of blocks that can wait to be written, for every worker. */
+  private static final int BLOCCHI_PER_LAVORATORE = 4;
+
+  /** The number of characters of the results of a block that a {@link Scrittura} holds. */
+  private static final int CARATTERI_PER_BLOCCO = 1 << 20;
+
+  /** A transformation of a line that writes its result to an output. */
+  @FunctionalInterface
+  public interface Scrittura {
+
+    /**
+     * Transforms a line, writing its result.
+     *
+     * @param riga the line
+     * @param uscita the output of the result, that must not be followed by a line separator
+     * @throws IOException if the output cannot be written
+     */
+    void scrivi(String riga, Appendable uscita) throws IOException;
+  }
+
+  /**
+   * The result of a block: the text of the lines transformed before the first failure, if any.
+   *
+   * @param testo the results of the lines transformed, each followed by a line separator, that
+   *     have not been written by the worker
+   * @param errore the exception or error thrown by the transformation of a line, or {@code null}
+   */
+  private record Esito(String testo, Throwable errore) {}
+
+  /** The transformation of a block by a worker. */
+  @FunctionalInterface
+  private interface Compito {
+
+    /**
+     * Transforms a block of lines.
+     *
+     * @param blocco the lines
+     * @param primaRiga the number of the first line of the block
+     * @param indice the index of the block
+     * @param turno the turn of the blocks that write their results
+     * @return the result of the block
+     */
+    Esito esegui(List<String> blocco, long primaRiga, long indice, Turno turno);
+  }
+
+  /** The index of the block whose results are written next, shared by the workers. */
+  private static final class Turno {
+
+    /** The stream of the results. */
+    private final Writer uscita;
+
+    /** The index of the block whose results are written next. */
+    private long prossimo;
+
+    /**
+     * Constructs the turn of the first block.
+     *
+     * @param uscita the stream of the results
+     */
+    Turno(Writer uscita) {
+      this.uscita = uscita;
+    }
+
+    /**
+     * Gives the turn to a block, once the results of the blocks before it are written.
+     *
+     * @param blocco the index of the block
+     */
+    synchronized void cedi(long blocco) {
+      prossimo = blocco;
+      notifyAll();
+    }
+
+    /**
+     * Waits for the turn of a block.
+     *
+     * @param blocco the index of the block
+     * @return the stream of the results, that only the block can write until it is done
+     * @throws InterruptedIOException if the wait is interrupted
+     */
+    synchronized Writer attendi(long blocco) throws InterruptedIOException {
+      while (prossimo != blocco) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the turn of a block");
+        }
+      }
+      return uscita;
+    }
+  }
+
+  /**
+   * The output of the results of a block, held in memory up to {@link #CARATTERI_PER_BLOCCO}
+   * characters and then written straight to the stream of the results, in the turn of the block.
+   */
+  private static final class Differita implements Appendable {
+
+    /** The results held in memory. */
+    private final StringBuilder testo = new StringBuilder();
+
+    /** The turn of the blocks. */
+    private final Turno turno;
+
+    /** The index of the block. */
+    private final long blocco;
+
+    /** The stream of the results, once the block has its turn, or {@code null}. */
+    private Writer diretta;
+
+    /**
+     * Constructs the output of a block.
+     *
+     * @param turno the turn of the blocks
+     * @param blocco the index of the block
+     */
+    Differita(Turno turno, long blocco) {
+      this.turno = turno;
+      this.blocco = blocco;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+      if (diretta != null) {
+        diretta.append(csq);
+        return this;
+      }
+      testo.append(csq);
+      return controlla();
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      if (diretta != null) {
+        diretta.append(csq, start, end);
+        return this;
+      }
+      testo.append(csq, start, end);
+      return controlla();
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+      if (diretta != null) {
+        diretta.append(c);
+        return this;
+      }
+      testo.append(c);
+      return controlla();
+    }
+
+    /**
+     * Writes the results held in memory once they exceed {@link #CARATTERI_PER_BLOCCO}, waiting
+     * for the turn of the block.
+     *
+     * @return this output
+     * @throws IOException if the stream cannot be written or the wait is interrupted
+     */
+    private Appendable controlla() throws IOException {
+      if (testo.length() > CARATTERI_PER_BLOCCO) {
+        diretta = turno.attendi(blocco);
+        diretta.write(testo.toString());
+        testo.setLength(0);
+      }
+      return this;
+    }
+
+    /**
+     * Discards the results held in memory after a given length, if they have not been written.
+     *
+     * @param lunghezza the length
+     */
+    void tronca(int lunghezza) {
+      if (diretta == null) testo.setLength(lunghezza);
+    }
+  }
+
+  private Lotto() {}
+
+  /**
+   * Transforms every line of the standard input, writing the results on the standard output.
+   *
+   * @param trasformazione the supplier of the transformation used by each worker
+   * @throws NullPointerException if {@code trasformazione} is {@code null}
+   * @throws IllegalArgumentException if the number of workers is not a positive integer
+   * @throws IOException if the standard input cannot be read or the standard output written
+   */
+  public static void elabora(Supplier<Function<String, String>> trasformazione)
+      throws IOException {
+    Writer uscita = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+    try {
+      elabora(new InputStreamReader(System.in), uscita, trasformazione, lavoratori());
+    } finally {
+      uscita.flush();
+    }
+  }
+
+  /**
+   * Transforms every line of the standard input, writing the results on the standard output as
+   * they are produced.
+   *
+   * @param scrittura the supplier of the transformation used by each worker
+   * @throws NullPointerException if {@code scrittura} is {@code null}
+   * @throws IllegalArgumentException if the number of workers is not a positive integer
+   * @throws IOException if the standard input cannot be read or the standard output written
+   */
+  public static void elaboraInFlusso(Supplier<Scrittura> scrittura) throws IOException {
+    Writer uscita = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+    try {
+      elaboraInFlusso(new InputStreamReader(System.in), uscita, scrittura, lavoratori());
+    } finally {
+      uscita.flush();
+    }
+  }
+
+  /**
+   * Transforms every line read from a stream, writing the results to another.
+   *
+   * @param ingresso the stream of the lines
+   * @param uscita the stream of the results, one per line
+   * @param trasformazione the supplier of the transformation used by each worker
+   * @param lavoratori the number of workers
+   * @throws NullPointerException if any argument is {@code null}
+   * @throws IllegalArgumentException if {@code lavoratori} is not positive
+   * @throws IOException if a stream cannot be read or written
+   */
+  public static void elabora(
+      Reader ingresso,
+      Writer uscita,
+      Supplier<Function<String, String>> trasformazione,
+      int lavoratori)
+      throws IOException {
+    Objects.requireNonNull(ingresso, "the input cannot be null");
+    Objects.requireNonNull(uscita, "the output cannot be null");
+    Objects.requireNonNull(trasformazione, "the transformation cannot be null");
+    if (lavoratori <= 0) {
+      throw new IllegalArgumentException("Invalid number of workers: " + lavoratori);
+    }
+    BufferedReader righe = new BufferedReader(ingresso, 1 << 16);
+    if (lavoratori == 1) {
+      Function<String, String> f = trasformazione.get();
+      long numero = 0;
+      for (String riga = righe.readLine(); riga != null; riga = righe.readLine()) {
+        uscita.write(applica(f, riga, ++numero));
+        uscita.write(System.lineSeparator());
+      }
+      return;
+    }
+
+    ThreadLocal<Function<String, String>> locale = ThreadLocal.withInitial(trasformazione);
+    inParallelo(
+        righe,
+        uscita,
+        lavoratori,
+        (blocco, primaRiga, indice, turno) -> trasforma(blocco, primaRiga, locale.get()));
+  }
+
+  /**
+   * Transforms every line read from a stream, writing the results to another as they are
+   * produced.
+   *
+   * @param ingresso the stream of the lines
+   * @param uscita the stream of the results, one per line
+   * @param scrittura the supplier of the transformation used by each worker
+   * @param lavoratori the number of workers
+   * @throws NullPointerException if any argument is {@code null}
+   * @throws IllegalArgumentException if {@code lavoratori} is not positive
+   * @throws IOException if a stream cannot be read or written
+   */
+  public static void elaboraInFlusso(
+      Reader ingresso, Writer uscita, Supplier<Scrittura> scrittura, int lavoratori)
+      throws IOException {
+    Objects.requireNonNull(ingresso, "the input cannot be null");
+    Objects.requireNonNull(uscita, "the output cannot be null");
+    Objects.requireNonNull(scrittura, "the transformation cannot be null");
+    if (lavoratori <= 0) {
+      throw new IllegalArgumentException("Invalid number of workers: " + lavoratori);
+    }
+    BufferedReader righe = new BufferedReader(ingresso, 1 << 16);
+    if (lavoratori == 1) {
+      Scrittura f = scrittura.get();
+      long numero = 0;
+      for (String riga = righe.readLine(); riga != null; riga = righe.readLine()) {
+        applica(f, riga, ++numero, uscita);
+        uscita.write(System.lineSeparator());
+      }
+      return;
+    }
+
+    ThreadLocal<Scrittura> locale = ThreadLocal.withInitial(scrittura);
+    inParallelo(
+        righe,
+        uscita,
+        lavoratori,
+        (blocco, primaRiga, indice, turno) ->
+            trasforma(blocco, primaRiga, locale.get(), new Differita(turno, indice)));
+  }
+
+  /**
+   * Transforms the blocks of lines of a stream with a pool of workers, writing their results in
+   * the order of the input.
+   *
+   * @param righe the stream of the lines
+   * @param uscita the stream of the results
+   * @param lavoratori the number of workers, at least 2
+   * @param compito the transformation of a block
+   * @throws IOException if a stream cannot be read or written
+   */
+  private static void inParallelo(
+      BufferedReader righe, Writer uscita, int lavoratori, Compito compito) throws IOException {
+    Turno turno = new Turno(uscita);
+    // i lavoratori sono demoni, così un errore non attende la fine dei blocchi ancora in corso
+    ExecutorService esecutore =
+        Executors.newFixedThreadPool(
+            lavoratori,
+            lavoro -> {
+              Thread lavoratore = new Thread(lavoro, "lotto");
+              lavoratore.setDaemon(true);
+              return lavoratore;
+            });
+    try {
+      // i blocchi in corso, nell'ordine dell'ingresso: il primo è il prossimo da scrivere
+      Deque<Future<Esito>> inCorso = new ArrayDeque<>();
+      List<String> blocco = leggiBlocco(righe);
+      long lette = 0;
+      long letti = 0;
+      long scritti = 0;
+      while (!blocco.isEmpty()) {
+        List<String> daTrasformare = blocco;
+        long primaRiga = lette + 1;
+        long indice = letti++;
+        lette += blocco.size();
+        inCorso.add(
+            esecutore.submit(() -> compito.esegui(daTrasformare, primaRiga, indice, turno)));
+        if (inCorso.size() >= BLOCCHI_PER_LAVORATORE * lavoratori) {
+          turno.cedi(scritti++);
+          scrivi(inCorso.remove(), uscita);
+        }
+        blocco = leggiBlocco(righe);
+      }
+      while (!inCorso.isEmpty()) {
+        turno.cedi(scritti++);
+        scrivi(inCorso.remove(), uscita);
+      }
+    } finally {
+      esecutore.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the number of workers configured by the system property {@value #LAVORATORI}.
+   *
+   * @return the number of workers
+   * @throws IllegalArgumentException if the property is not a positive integer
+   */
+  static int lavoratori() {
+    String valore = System.getProperty(LAVORATORI);
+    if (valore == null) return Runtime.getRuntime().availableProcessors();
+    try {
+      return Integer.parseInt(valore.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number of workers: " + valore, e);
+    }
+  }
+
+  /**
+   * Reads the next block of lines.
+   *
+   * @param righe the stream of the lines
+   * @return the lines of the block, empty if the stream is over
+   * @throws IOException if the stream cannot be read
+   */
+  private static List<String> leggiBlocco(BufferedReader righe) throws IOException {
+    List<String> blocco = new ArrayList<>(RIGHE_PER_BLOCCO);
+    String riga = righe.readLine();
+    while (riga != null) {
+      blocco.add(riga);
+      riga = blocco.size() < RIGHE_PER_BLOCCO ? righe.readLine() : null;
+    }
+    return blocco;
+  }
+
+  /**
+   * Transforms a block of lines, stopping at the first failure.
+   *
+   * @param blocco the lines
+   * @param primaRiga the number of the first line of the block
+   * @param f the transformation
+   * @return the result of the block
+   */
+  private static Esito trasforma(
+      List<String> blocco, long primaRiga, Function<String, String> f) {
+    StringBuilder testo = new StringBuilder();
+    long numero = primaRiga;
+    for (String riga : blocco) {
+      try {
+        testo.append(applica(f, riga, numero++)).append(System.lineSeparator());
+      } catch (RuntimeException | Error e) {
+        return new Esito(testo.toString(), e);
+      }
+    }
+    return new Esito(testo.toString(), null);
+  }
+
+  /**
+   * Transforms a block of lines with a transformation that writes their results, stopping at the
+   * first failure.
+   *
+   * @param blocco the lines
+   * @param primaRiga the number of the first line of the block
+   * @param f the transformation
+   * @param uscita the output of the results of the block
+   * @return the result of the block, with the results still held in memory
+   */
+  private static Esito trasforma(
+      List<String> blocco, long primaRiga, Scrittura f, Differita uscita) {
+    StringBuilder testo = uscita.testo;
+    long numero = primaRiga;
+    for (String riga : blocco) {
+      int inizio = testo.length();
+      try {
+        applica(f, riga, numero++, uscita);
+        uscita.append(System.lineSeparator());
+      } catch (IOException e) {
+        uscita.tronca(inizio);
+        return new Esito(testo.toString(), new UncheckedIOException(e));
+      } catch (RuntimeException | Error e) {
+        uscita.tronca(inizio);
+        return new Esito(testo.toString(), e);
+      }
+    }
+    return new Esito(testo.toString(), null);
+  }
+
+  /**
+   * Transforms a line, recording it as a {@link Riga} event.
+   *
+   * @param f the transformation
+   * @param riga the line
+   * @param numero the number of the line
+   * @return the result of the line
+   */
+  private static String applica(Function<String, String> f, String riga, long numero) {
+    Riga evento = new Riga();
+    evento.begin();
+    String res = f.apply(riga);
+    evento.fine(numero, riga);
+    return res;
+  }
+
+  /**
+   * Transforms a line, writing its result and recording it as a {@link Riga} event.
+   *
+   * @param f the transformation
+   * @param riga the line
+   * @param numero the number of the line
+   * @param uscita the output of the result
+   * @throws IOException if the output cannot be written
+   */
+  private static void applica(Scrittura f, String riga, long numero, Appendable uscita)
+      throws IOException {
+    Riga evento = new Riga();
+    evento.begin();
+    f.scrivi(riga, uscita);
+    evento.fine(numero, riga);
+  }
+
+  /**
+   * Waits for the result of a block and writes it.
+   *
+   * @param esito the result of the block
+   * @param uscita the stream of the results
+   * @throws IOException if the stream cannot be written or the wait is interrupted
+   */
+  private static void scrivi(Future<Esito> esito, Writer uscita) throws IOException {
+    Esito risultato;
+    try {
+      risultato = esito.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a block");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+    uscita.write(risultato.testo());
+    if (risultato.errore() instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) risultato.errore()).getCause();
+    }
+    if (risultato.errore() instanceof RuntimeException) throw (RuntimeException) risultato.errore();
+    if (risultato.errore() != null) throw (Error) risultato.errore();
+  }
+}
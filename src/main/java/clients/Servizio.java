@@ -0,0 +1,475 @@
+package clients;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import luppolo.*;
+import luppolo.costruzione.NotazionePolaccaEspressione;
+import luppolo.costruzione.ProgrammaLineara;
+import luppolo.manipolazione.CacheLRU;
+import luppolo.manipolazione.Derivazione;
+import luppolo.manipolazione.Espansione;
+import luppolo.manipolazione.Semplificazione;
+
+/**
+ * A resident server that transforms expressions on request, so that the cost of starting and
+ * warming up the virtual machine is paid once. The only argument is the path of a Unix domain
+ * socket or, if it is a number, a TCP port on the loopback address; if Unix domain sockets are not
+ * supported, the server listens on the loopback address with a port chosen by the system.
+ *
+ * <p>Every request is a line {@code formato operazioni espressione}:
+ *
+ * <ul>
+ *   <li>{@code formato} is {@code polacca} for an expression in Polish notation or {@code
+ *       programma} for a linear program whose instructions are separated by {@code ;};
+ *   <li>{@code operazioni} is {@code -} or a comma-separated list of {@code semplifica}, {@code
+ *       espandi} and {@code deriva:v}, applied from left to right;
+ * </ul>
+ *
+ * <p>and every response is a line {@code ok risultato} or {@code errore messaggio}. A client can
+ * send any number of requests without waiting for the responses, that come in the order of the
+ * requests. The requests are transformed by a fixed pool of workers, as many as given by {@link
+ * Lotto#LAVORATORI}; when the requests waiting for the workers are too many, the server stops
+ * reading from the connections until some of them are done. A connection is also not read while
+ * too many of its responses are not written, so that a client that does not read its responses
+ * only delays itself, and a request longer than {@value #LUNGHEZZA_MASSIMA} bytes is answered with
+ * an error without being kept in memory. Connections are served by virtual threads if the runtime
+ * supports them.
+ *
+ * <p>If the {@link Metriche} are collected, the latency of every stage of a request is recorded,
+ * and the metrics can be read through JMX while the server runs.
+ */
+public class Servizio {
+
+  /** The number of requests that can wait to be answered, for every worker. */
+  private static final int RICHIESTE_PER_LAVORATORE = 64;
+
+  /** The number of requests of a connection that can wait to be answered. */
+  private static final int RICHIESTE_PER_CONNESSIONE = 64;
+
+  /** The maximum length of a request, in bytes. */
+  private static final int LUNGHEZZA_MASSIMA = 1 << 20;
+
+  /** The size of the buffers of a connection. */
+  private static final int DIMENSIONE_BUFFER = 1 << 16;
+
+  /** The tools of a worker, built once per thread. */
+  private static final ThreadLocal<Strumenti> STRUMENTI = ThreadLocal.withInitial(Strumenti::new);
+
+  /**
+   * The tools used by a worker to transform expressions.
+   *
+   * @param factory the factory of the nodes
+   * @param semplificazione the simplification, with its cache
+   * @param espansione the expansion
+   */
+  private record Strumenti(
+      NodoFactory factory, Semplificazione semplificazione, Espansione espansione) {
+
+    /** Constructs the tools of a worker. */
+    Strumenti() {
+      this(new NodoFactory());
+    }
+
+    /**
+     * Constructs the tools of a worker sharing a factory.
+     *
+     * @param factory the factory of the nodes
+     */
+    Strumenti(NodoFactory factory) {
+      this(
+          factory,
+          new Semplificazione(factory, new CacheLRU<>(1 << 16)),
+          new Espansione(factory));
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("Usage: Servizio <socket path | TCP port>");
+    }
+    int lavoratori = Lotto.lavoratori();
+    ExecutorService calcolo = Executors.newFixedThreadPool(lavoratori, demone("servizio"));
+    ExecutorService connessioni = connessioni();
+    Semaphore posti = new Semaphore(RICHIESTE_PER_LAVORATORE * lavoratori);
+    try (ServerSocketChannel server = apri(args[0])) {
+      System.err.println("Listening on " + server.getLocalAddress());
+      while (server.isOpen()) {
+        SocketChannel canale = server.accept();
+        BlockingQueue<CompletableFuture<String>> risposte = new LinkedBlockingQueue<>();
+        Semaphore inAttesa = new Semaphore(RICHIESTE_PER_CONNESSIONE);
+        connessioni.execute(() -> leggi(canale, calcolo, posti, inAttesa, risposte));
+        connessioni.execute(() -> scrivi(canale, inAttesa, risposte));
+      }
+    }
+  }
+
+  /**
+   * Opens the server channel on a Unix domain socket or on a TCP port of the loopback address. A
+   * socket left at the path by a server that is no longer running is replaced.
+   *
+   * @param indirizzo the path of the socket or the port
+   * @return the server channel, bound
+   * @throws FileAlreadyExistsException if the path exists and is not a stale socket
+   * @throws IOException if the channel cannot be opened or bound
+   */
+  private static ServerSocketChannel apri(String indirizzo) throws IOException {
+    InetAddress locale = InetAddress.getLoopbackAddress();
+    if (indirizzo.chars().allMatch(Character::isDigit)) {
+      return ServerSocketChannel.open()
+          .bind(new InetSocketAddress(locale, Integer.parseInt(indirizzo)));
+    }
+    ServerSocketChannel server;
+    try {
+      server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    } catch (UnsupportedOperationException e) {
+      // senza socket locali si ripiega su una porta TCP scelta dal sistema
+      return ServerSocketChannel.open().bind(new InetSocketAddress(locale, 0));
+    }
+    Path percorso = Path.of(indirizzo);
+    SocketAddress socket = UnixDomainSocketAddress.of(percorso);
+    if (abbandonato(percorso, socket)) Files.delete(percorso);
+    server.bind(socket);
+    percorso.toFile().deleteOnExit();
+    return server;
+  }
+
+  /**
+   * Tells whether a path is a socket left by a server that is no longer running.
+   *
+   * @param percorso the path
+   * @param socket the address of the socket at the path
+   * @return {@code false} if nothing exists at the path
+   * @throws FileAlreadyExistsException if the path is not a socket or a server is listening on it
+   * @throws IOException if the attributes of the path cannot be read
+   */
+  private static boolean abbandonato(Path percorso, SocketAddress socket) throws IOException {
+    BasicFileAttributes attributi;
+    try {
+      attributi =
+          Files.readAttributes(percorso, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+    // un socket non è né un file regolare, né una cartella, né un collegamento simbolico
+    if (!attributi.isOther()) {
+      throw new FileAlreadyExistsException(percorso.toString(), null, "not a socket");
+    }
+    try (SocketChannel prova = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      prova.connect(socket);
+    } catch (ConnectException e) {
+      return true;
+    }
+    throw new FileAlreadyExistsException(percorso.toString(), null, "a server is listening");
+  }
+
+  /**
+   * Reads the requests of a connection and hands them to the workers, waiting for a free place
+   * when too many requests are pending. A request longer than {@value #LUNGHEZZA_MASSIMA} bytes is
+   * discarded and answered with an error.
+   *
+   * @param canale the connection
+   * @param calcolo the workers
+   * @param posti the places for the pending requests of all the connections
+   * @param inAttesa the places for the responses of the connection not yet written
+   * @param risposte the responses of the connection, in the order of the requests, ended by a
+   *     {@code null} result
+   */
+  private static void leggi(
+      SocketChannel canale,
+      ExecutorService calcolo,
+      Semaphore posti,
+      Semaphore inAttesa,
+      BlockingQueue<CompletableFuture<String>> risposte) {
+    ByteBuffer buffer = ByteBuffer.allocate(DIMENSIONE_BUFFER).flip();
+    ByteArrayOutputStream riga = new ByteArrayOutputStream();
+    // se la riga corrente è troppo lunga, i suoi byte vengono scartati fino alla fine della riga
+    boolean troppoLunga = false;
+    try {
+      while (riempi(canale, buffer)) {
+        while (buffer.hasRemaining()) {
+          byte b = buffer.get();
+          if (b == '\n') {
+            if (troppoLunga) {
+              rifiuta(inAttesa, risposte);
+            } else {
+              accoda(riga, calcolo, posti, inAttesa, risposte);
+            }
+            troppoLunga = false;
+          } else if (riga.size() < LUNGHEZZA_MASSIMA) {
+            if (!troppoLunga) riga.write(b);
+          } else {
+            troppoLunga = true;
+            riga.reset();
+          }
+        }
+      }
+      if (troppoLunga) {
+        rifiuta(inAttesa, risposte);
+      } else if (riga.size() > 0) {
+        accoda(riga, calcolo, posti, inAttesa, risposte);
+      }
+    } catch (IOException e) {
+      // la connessione è stata chiusa dall'altra parte
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      risposte.add(CompletableFuture.completedFuture(null));
+    }
+  }
+
+  /**
+   * Hands a request to the workers, waiting for a free place of the connection and then for a
+   * free place of the workers, that is released as soon as the request is transformed.
+   *
+   * @param riga the bytes of the request, emptied
+   * @param calcolo the workers
+   * @param posti the places for the pending requests of all the connections
+   * @param inAttesa the places for the responses of the connection not yet written
+   * @param risposte the responses of the connection
+   * @throws InterruptedException if the wait is interrupted
+   */
+  private static void accoda(
+      ByteArrayOutputStream riga,
+      ExecutorService calcolo,
+      Semaphore posti,
+      Semaphore inAttesa,
+      BlockingQueue<CompletableFuture<String>> risposte)
+      throws InterruptedException {
+    String richiesta = riga.toString(StandardCharsets.UTF_8);
+    riga.reset();
+    inAttesa.acquire();
+    try {
+      posti.acquire();
+    } catch (InterruptedException e) {
+      inAttesa.release();
+      throw e;
+    }
+    risposte.add(
+        CompletableFuture.supplyAsync(() -> rispondi(richiesta), calcolo)
+            .exceptionally(Servizio::errore)
+            .whenComplete((risposta, e) -> posti.release()));
+  }
+
+  /**
+   * Answers a request that is too long with an error, waiting for a free place of the connection.
+   *
+   * @param inAttesa the places for the responses of the connection not yet written
+   * @param risposte the responses of the connection
+   * @throws InterruptedException if the wait is interrupted
+   */
+  private static void rifiuta(
+      Semaphore inAttesa, BlockingQueue<CompletableFuture<String>> risposte)
+      throws InterruptedException {
+    inAttesa.acquire();
+    risposte.add(
+        CompletableFuture.completedFuture(
+            "errore Request longer than " + LUNGHEZZA_MASSIMA + " bytes"));
+  }
+
+  /**
+   * Writes the responses of a connection in the order of the requests, then closes it.
+   *
+   * @param canale the connection
+   * @param inAttesa the places for the responses of the connection not yet written
+   * @param risposte the responses of the connection, ended by a {@code null} result
+   */
+  private static void scrivi(
+      SocketChannel canale,
+      Semaphore inAttesa,
+      BlockingQueue<CompletableFuture<String>> risposte) {
+    StringBuilder uscita = new StringBuilder();
+    boolean finite = false;
+    try (canale) {
+      String risposta = risposte.take().join();
+      while (risposta != null) {
+        inAttesa.release();
+        uscita.append(risposta).append('\n');
+        // si scrive quando non ci sono altre risposte pronte o il buffer è pieno
+        CompletableFuture<String> prossima = risposte.peek();
+        if (prossima == null || !prossima.isDone() || uscita.length() >= DIMENSIONE_BUFFER) {
+          invia(canale, uscita);
+        }
+        risposta = risposte.take().join();
+      }
+      // le ultime risposte restano nel buffer se la fine era già in coda
+      invia(canale, uscita);
+      finite = true;
+    } catch (IOException e) {
+      // la connessione è stata chiusa dall'altra parte
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    // le richieste rimaste non avranno risposta, ma devono liberare il loro posto
+    try {
+      while (!finite) {
+        finite = risposte.take().join() == null;
+        if (!finite) inAttesa.release();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the responses collected in a buffer to a connection, emptying the buffer.
+   *
+   * @param canale the connection
+   * @param uscita the responses, each followed by a line separator
+   * @throws IOException if the connection cannot be written
+   */
+  private static void invia(SocketChannel canale, StringBuilder uscita) throws IOException {
+    ByteBuffer dati = StandardCharsets.UTF_8.encode(uscita.toString());
+    while (dati.hasRemaining()) canale.write(dati);
+    uscita.setLength(0);
+  }
+
+  /**
+   * Reads more bytes from a connection if the buffer is empty.
+   *
+   * @param canale the connection
+   * @param buffer the buffer, in read mode
+   * @return {@code false} if the connection is over
+   * @throws IOException if the connection cannot be read
+   */
+  private static boolean riempi(SocketChannel canale, ByteBuffer buffer) throws IOException {
+    buffer.clear();
+    int letti = canale.read(buffer);
+    buffer.flip();
+    return letti >= 0;
+  }
+
+  /**
+   * Answers a request.
+   *
+   * @param richiesta the request
+   * @return the response, without the line separator
+   */
+  static String rispondi(String richiesta) {
+    try {
+      String[] parti = richiesta.strip().split(" ", 3);
+      if (parti.length < 3) {
+        throw new IllegalArgumentException("Invalid request: " + richiesta);
+      }
+      Strumenti strumenti = STRUMENTI.get();
+      Nodo espressione;
+      long inizio = Metriche.inizio();
+      switch (parti[0]) {
+        case "polacca":
+          espressione = NotazionePolaccaEspressione.fromPolocaa(parti[2], strumenti.factory());
+          break;
+        case "programma":
+          espressione =
+              ProgrammaLineara.fromLinearProgram(parti[2].split(" *; *"), strumenti.factory());
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown format: " + parti[0]);
+      }
+      Metriche.fine(Metriche.Fase.LETTURA, inizio);
+      if (!"-".equals(parti[1])) {
+        for (String operazione : parti[1].split(",")) {
+          espressione = applica(operazione, espressione, strumenti);
+        }
+      }
+      inizio = Metriche.inizio();
+      String risposta = "ok " + espressione;
+      Metriche.fine(Metriche.Fase.RAPPRESENTAZIONE, inizio);
+      return risposta;
+    } catch (RuntimeException | StackOverflowError e) {
+      return errore(e);
+    }
+  }
+
+  /**
+   * Returns the response to a request whose transformation failed.
+   *
+   * @param e the cause of the failure
+   * @return the response, without the line separator
+   */
+  private static String errore(Throwable e) {
+    String messaggio = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+    return "errore " + messaggio.replace('\n', ' ');
+  }
+
+  /**
+   * Applies an operation to an expression.
+   *
+   * @param operazione the operation
+   * @param espressione the expression
+   * @param strumenti the tools of the worker
+   * @return the transformed expression
+   * @throws IllegalArgumentException if the operation is unknown
+   */
+  private static Nodo applica(String operazione, Nodo espressione, Strumenti strumenti) {
+    long inizio = Metriche.inizio();
+    if ("semplifica".equals(operazione)) {
+      Nodo res = strumenti.semplificazione().semplifica(espressione);
+      Metriche.fine(Metriche.Fase.SEMPLIFICAZIONE, inizio);
+      return res;
+    }
+    if ("espandi".equals(operazione)) {
+      Nodo res = strumenti.espansione().espandi(espressione);
+      Metriche.fine(Metriche.Fase.ESPANSIONE, inizio);
+      return res;
+    }
+    if (operazione.startsWith("deriva:") && operazione.length() == "deriva:".length() + 1) {
+      char v = operazione.charAt(operazione.length() - 1);
+      Nodo res = new Derivazione(v, strumenti.factory()).deriva(espressione);
+      Metriche.fine(Metriche.Fase.DERIVAZIONE, inizio);
+      return res;
+    }
+    throw new IllegalArgumentException("Unknown operation: " + operazione);
+  }
+
+  /**
+   * Returns the executor of the connections: a virtual thread per task if the runtime supports
+   * them, a daemon platform thread per task otherwise.
+   *
+   * @return the executor of the connections
+   */
+  private static ExecutorService connessioni() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(demone("connessione"));
+    }
+  }
+
+  /**
+   * Returns a factory of daemon threads.
+   *
+   * @param nome the name of the threads
+   * @return the factory
+   */
+  private static ThreadFactory demone(String nome) {
+    return compito -> {
+      Thread thread = new Thread(compito, nome);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,183 @@
+package clients;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import luppolo.Metriche;
+import utils.Generatore;
+
+/**
+ * A stress run of a pipeline over generated expressions. The arguments are options of the form
+ * {@code --nome valore} followed by the format and the operations of the pipeline, as in a request
+ * to {@link Servizio}: for instance {@code --righe 1000 --scala 1,10,100 polacca semplifica}.
+ *
+ * <p>The expressions are produced by a {@link Generatore}, whose parameters are given by the
+ * options described in {@link Generatore.Parametri#da(Map)}. For every factor of {@code --scala}
+ * the pipeline is run on {@code --righe} times that many expressions, after a warm-up on {@code
+ * --riscaldamento} expressions, and a line reports the throughput, the percentiles of the latency
+ * of a single expression, the expressions that failed and the peak occupation of the heap. Only the
+ * pipeline is timed, not the generation of its input. The i-th factor, counting from 0, uses the
+ * seed {@code --seme} plus i, so that a scale does not replay the expressions of the previous ones,
+ * already in the caches of the workers.
+ *
+ * <p>If the {@link Metriche} are collected, they are reset after the warm-up and the firings of the
+ * rules, the nodes visited and built, the latencies of the stages and the hit rate of the cache are
+ * reported at the end of the run.
+ */
+public class Stress {
+
+  /** The percentiles reported, in thousandths. */
+  private static final int[] PERCENTILI = {500, 900, 990, 999};
+
+  /** The names of the percentiles reported. */
+  private static final String[] NOMI_PERCENTILI = {"p50", "p90", "p99", "p99.9"};
+
+  public static void main(String[] args) {
+    List<String> pipeline = new ArrayList<>();
+    Map<String, String> opzioni = Generatore.opzioni(args, pipeline);
+    if (pipeline.size() != 2) {
+      throw new IllegalArgumentException("Usage: Stress [--opzione valore]... formato operazioni");
+    }
+    String richiesta = pipeline.get(0) + " " + pipeline.get(1) + " ";
+    boolean programma = "programma".equals(pipeline.get(0));
+    Generatore.Parametri parametri = Generatore.Parametri.da(opzioni);
+    int righe = Integer.parseInt(opzioni.getOrDefault("righe", "1000"));
+    long seme = Long.parseLong(opzioni.getOrDefault("seme", "0"));
+    int riscaldamento = Integer.parseInt(opzioni.getOrDefault("riscaldamento", "" + righe));
+
+    // il riscaldamento usa espressioni diverse da quelle misurate
+    Generatore generatore = new Generatore(parametri, ~seme);
+    for (int i = 0; i < riscaldamento; i++) {
+      Servizio.rispondi(richiesta + input(generatore, programma));
+    }
+
+    Metriche.azzera();
+    String[] fattori = opzioni.getOrDefault("scala", "1").split(",");
+    for (int indice = 0; indice < fattori.length; indice++) {
+      String fattore = fattori[indice];
+      int n = Math.multiplyExact(righe, Integer.parseInt(fattore.trim()));
+      // ogni scala ha le sue espressioni, così non trova nelle cache quelle della precedente
+      generatore = new Generatore(parametri, seme + indice);
+      long[] latenze = new long[n];
+      int errori = 0;
+      azzeraPicchi();
+      for (int i = 0; i < n; i++) {
+        String r = richiesta + input(generatore, programma);
+        long inizio = System.nanoTime();
+        String risposta = Servizio.rispondi(r);
+        latenze[i] = System.nanoTime() - inizio;
+        if (!risposta.startsWith("ok")) errori++;
+      }
+      System.out.println(rapporto(fattore.trim(), latenze, errori, piccoHeap()));
+    }
+    if (Metriche.ATTIVE) System.out.print(metriche(Metriche.istantanea()));
+  }
+
+  /**
+   * Generates the payload of a request.
+   *
+   * @param generatore the generator
+   * @param programma whether the payload is a linear program
+   * @return the payload
+   */
+  private static String input(Generatore generatore, boolean programma) {
+    return programma ? String.join("; ", generatore.programma()) : generatore.polacca();
+  }
+
+  /**
+   * Describes a run.
+   *
+   * @param fattore the factor of the scale
+   * @param latenze the latencies of the expressions, in nanoseconds
+   * @param errori the number of expressions that failed
+   * @param picco the peak occupation of the heap, in bytes
+   * @return the description of the run
+   */
+  private static String rapporto(String fattore, long[] latenze, int errori, long picco) {
+    long totale = 0;
+    for (long l : latenze) totale += l;
+    Arrays.sort(latenze);
+    StringBuilder res = new StringBuilder();
+    res.append(
+        String.format(
+            Locale.ROOT, "scala %s: %d espressioni, %d errori", fattore, latenze.length, errori));
+    res.append(
+        String.format(
+            Locale.ROOT, ", %.0f espressioni/s", latenze.length / Math.max(totale / 1e9, 1e-9)));
+    for (int i = 0; i < PERCENTILI.length; i++) {
+      long l =
+          latenze.length == 0
+              ? 0
+              : latenze[(int) ((long) (latenze.length - 1) * PERCENTILI[i] / 1000)];
+      res.append(String.format(Locale.ROOT, ", %s %.1f us", NOMI_PERCENTILI[i], l / 1e3));
+    }
+    long massimo = latenze.length == 0 ? 0 : latenze[latenze.length - 1];
+    res.append(String.format(Locale.ROOT, ", max %.1f us", massimo / 1e3));
+    res.append(String.format(Locale.ROOT, ", heap di picco %d MB", picco >> 20));
+    return res.toString();
+  }
+
+  /**
+   * Describes the metrics of the engine.
+   *
+   * @param metriche the snapshot of the metrics
+   * @return the description of the metrics, a line for each group
+   */
+  private static String metriche(Metriche.Istantanea metriche) {
+    StringBuilder res = new StringBuilder();
+    res.append("regole:");
+    for (Map.Entry<Metriche.Regola, Long> e : metriche.regole().entrySet()) {
+      if (e.getValue() > 0) res.append(' ').append(e.getKey()).append('=').append(e.getValue());
+    }
+    res.append(System.lineSeparator()).append("nodi visitati/creati:");
+    for (Metriche.Visitatore v : Metriche.Visitatore.values()) {
+      res.append(' ').append(v).append('=').append(metriche.visitati().get(v));
+      res.append('/').append(metriche.creati().get(v));
+    }
+    res.append(System.lineSeparator()).append("latenze:");
+    for (Map.Entry<Metriche.Fase, Metriche.Istogramma> e : metriche.latenze().entrySet()) {
+      Metriche.Istogramma latenze = e.getValue();
+      if (latenze.numero() == 0) continue;
+      res.append(
+          String.format(
+              Locale.ROOT,
+              " %s=%d media %.1f us p99 < %.1f us",
+              e.getKey(),
+              latenze.numero(),
+              latenze.media() / 1e3,
+              latenze.quantile(0.99) / 1e3));
+    }
+    res.append(System.lineSeparator());
+    res.append(
+        String.format(
+            Locale.ROOT,
+            "cache: %d successi, %d fallimenti, %.1f%%",
+            metriche.successiCache(),
+            metriche.fallimentiCache(),
+            100 * metriche.rapportoSuccessiCache()));
+    return res.append(System.lineSeparator()).toString();
+  }
+
+  /** Resets the peak occupation of the memory pools of the heap. */
+  private static void azzeraPicchi() {
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+    }
+  }
+
+  /**
+   * Returns the peak occupation of the heap since the last reset, as the sum of the peaks of its
+   * memory pools; since the pools do not peak together, this is an upper bound.
+   *
+   * @return the peak occupation of the heap, in bytes
+   */
+  private static long piccoHeap() {
+    long res = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) res += pool.getPeakUsage().getUsed();
+    }
+    return res;
+  }
+}
@@ -1,15 +1,12 @@
 package clients.costruzione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.costruzione.NotazionePolaccaEspressione;
 
-public class NotazionePolacca { 
+public class NotazionePolacca {
 
-  public static void main(String[] args) {
-    try (Scanner scanner = new Scanner(System.in)) {
-      while (scanner.hasNextLine()) {
-        System.out.println(NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine()));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    Lotto.elabora(() -> riga -> NotazionePolaccaEspressione.fromPolocaa(riga).toString());
   }
 }
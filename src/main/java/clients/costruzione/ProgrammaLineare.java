@@ -1,21 +1,15 @@
 package clients.costruzione;
 
-import java.util.*;
-import luppolo.costruzione.ProgrammaLineara;
+import java.io.IOException;
+import luppolo.NodoFactory;
+import luppolo.costruzione.LetturaProgramma;
 
 
 public class ProgrammaLineare {
 
-  public static void main(String[] args) {
-    Scanner scanner = new Scanner(System.in);
-    ArrayList<String> inputLines = new ArrayList<>();
-
-    while (scanner.hasNextLine()) {
-      inputLines.add(scanner.nextLine());
-    }
-
-    scanner.close();
-    String[] instructions = inputLines.toArray(new String[0]);
-    System.out.println(ProgrammaLineara.fromLinearProgram(instructions));
+  public static void main(String[] args) throws IOException {
+    // le istruzioni vengono lette una alla volta, senza tenerle tutte in memoria
+    LetturaProgramma programma = new LetturaProgramma(System.in, new NodoFactory());
+    System.out.println(programma.leggi());
   }
 }
@@ -2,6 +2,7 @@ package clients.costruzione;
 
 import java.util.*;
 import luppolo.Nodo;
+import luppolo.NodoFactory;
 import luppolo.costruzione.ProgrammaLineara;
 import luppolo.manipolazione.Semplificazione;
 
@@ -18,8 +19,10 @@ public class ProgrammaLineareSemplifica {
     scanner.close();
 
     String[] instructions = inputLines.toArray(new String[0]);
-    Nodo espressioneAlgebrica = ProgrammaLineara.fromLinearProgram(instructions);
+    // serve solo l'ultima istruzione: le altre vengono costruite solo se ne dipende
+    Nodo espressioneAlgebrica =
+        ProgrammaLineara.fromLinearProgram(instructions, new NodoFactory(), true);
 
-    System.out.println(espressioneAlgebrica.accept(new Semplificazione()));
+    System.out.println(new Semplificazione().semplifica(espressioneAlgebrica));
   }
 }
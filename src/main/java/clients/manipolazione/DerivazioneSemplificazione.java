@@ -1,22 +1,23 @@
 package clients.manipolazione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.Nodo;
 import luppolo.costruzione.NotazionePolaccaEspressione;
 import luppolo.manipolazione.Derivazione;
 
 public class DerivazioneSemplificazione {
 
-  public static void main(String[] args) {
-
-    try (Scanner scanner = new Scanner(System.in)) {
-      char c = args[0].charAt(0);
-      while (scanner.hasNextLine()) {
-        Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine());
-        Nodo espressioneSemplificata = espressione.accept(new Derivazione(c));
-        System.out.println(
-            espressioneSemplificata.accept(new luppolo.manipolazione.Semplificazione()));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    char c = args[0].charAt(0);
+    Lotto.elabora(
+        () ->
+            riga -> {
+              Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(riga);
+              Nodo espressioneSemplificata = new Derivazione(c).deriva(espressione);
+              return new luppolo.manipolazione.Semplificazione()
+                  .semplifica(espressioneSemplificata)
+                  .toString();
+            });
   }
 }
@@ -1,18 +1,18 @@
 package clients.manipolazione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.Nodo;
 import luppolo.costruzione.NotazionePolaccaEspressione;
 
 public class Espansione {
 
-  public static void main(String[] args) {
-
-    try (Scanner scanner = new Scanner(System.in)) {
-      while (scanner.hasNextLine()) {
-        Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine());
-        System.out.println(espressione.accept(new luppolo.manipolazione.Espansione()));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    Lotto.elabora(
+        () ->
+            riga -> {
+              Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(riga);
+              return new luppolo.manipolazione.Espansione().espandi(espressione).toString();
+            });
   }
 }
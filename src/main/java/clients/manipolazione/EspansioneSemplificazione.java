@@ -1,21 +1,28 @@
 package clients.manipolazione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.Nodo;
+import luppolo.NodoFactory;
 import luppolo.costruzione.NotazionePolaccaEspressione;
+import luppolo.manipolazione.CacheLRU;
+import luppolo.manipolazione.Espansione;
 import luppolo.manipolazione.Semplificazione;
 
 
 public class EspansioneSemplificazione {
 
-  public static void main(String[] args) {
-
-    try (Scanner scanner = new Scanner(System.in)) {
-      while (scanner.hasNextLine()) {
-        Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine());
-        Nodo espressioneEsp = espressione.accept(new luppolo.manipolazione.Espansione());
-        System.out.println(espressioneEsp.accept(new Semplificazione()));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    Lotto.elabora(
+        () -> {
+          // la cache è condivisa da tutte le espressioni trasformate dallo stesso lavoratore
+          Semplificazione semplificazione =
+              new Semplificazione(new NodoFactory(), new CacheLRU<>(1 << 16));
+          Espansione espansione = new Espansione();
+          return riga -> {
+            Nodo espressione = NotazionePolaccaEspressione.fromPolocaa(riga);
+            return espansione.espandiESemplifica(espressione, semplificazione).toString();
+          };
+        });
   }
 }
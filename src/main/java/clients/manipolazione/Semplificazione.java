@@ -1,17 +1,22 @@
 package clients.manipolazione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.*;
 
 public class Semplificazione {
 
-  public static void main(String[] args) {
-    try (Scanner scanner = new Scanner(System.in)) {
-      while (scanner.hasNextLine()) {
-        Nodo espressione =
-            luppolo.costruzione.NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine());
-        System.out.println(espressione.accept(new luppolo.manipolazione.Semplificazione()));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    Lotto.elabora(
+        () -> {
+          // la cache è condivisa da tutte le espressioni trasformate dallo stesso lavoratore
+          luppolo.manipolazione.Semplificazione semplificazione =
+              new luppolo.manipolazione.Semplificazione(
+                  new NodoFactory(), new luppolo.manipolazione.CacheLRU<>(1 << 16));
+          return riga -> {
+            Nodo espressione = luppolo.costruzione.NotazionePolaccaEspressione.fromPolocaa(riga);
+            return semplificazione.semplifica(espressione).toString();
+          };
+        });
   }
 }
@@ -1,19 +1,21 @@
 package clients.rappresentazione;
 
-import java.util.Scanner;
+import clients.Lotto;
+import java.io.IOException;
 import luppolo.Nodo;
 import luppolo.rappresentazione.Tree;
 
 public class Albero {
 
-  public static void main(String[] args) {
-    try (Scanner scanner = new Scanner(System.in)) {
-      while (scanner.hasNextLine()) {
-        Nodo espressione =
-            luppolo.costruzione.NotazionePolaccaEspressione.fromPolocaa(scanner.nextLine());
-
-        System.out.println(espressione.accept(new Tree("")));
-      }
-    }
+  public static void main(String[] args) throws IOException {
+    // l'albero viene scritto direttamente sull'uscita, senza costruirne la rappresentazione
+    Lotto.elaboraInFlusso(
+        () -> {
+          Tree albero = new Tree("");
+          return (riga, uscita) -> {
+            Nodo espressione = luppolo.costruzione.NotazionePolaccaEspressione.fromPolocaa(riga);
+            albero.scrivi(espressione, uscita);
+          };
+        });
   }
 }
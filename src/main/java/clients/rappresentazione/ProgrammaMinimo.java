@@ -0,0 +1,28 @@
+package clients.rappresentazione;
+
+import java.util.*;
+import luppolo.Nodo;
+import luppolo.NodoFactory;
+import luppolo.costruzione.ProgrammaLineara;
+import luppolo.rappresentazione.FormaProgramma;
+
+public class ProgrammaMinimo {
+
+  public static void main(String[] args) {
+    Scanner scanner = new Scanner(System.in);
+    ArrayList<String> inputLines = new ArrayList<>();
+
+    while (scanner.hasNextLine()) {
+      inputLines.add(scanner.nextLine());
+    }
+
+    scanner.close();
+    // serve solo l'ultima istruzione: le altre vengono costruite solo se ne dipende
+    Nodo espressione =
+        ProgrammaLineara.fromLinearProgram(
+            inputLines.toArray(new String[0]), new NodoFactory(), true);
+    for (String istruzione : FormaProgramma.toLinearProgram(espressione)) {
+      System.out.println(istruzione);
+    }
+  }
+}
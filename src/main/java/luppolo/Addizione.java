@@ -16,6 +16,15 @@ public class Addizione extends NodoInterno {
   /** the node's chidren */
   private final List<Nodo> addendi;
 
+  /** the structural fingerprint of the node */
+  private final long impronta;
+
+  /** the depth of the node */
+  private final int profondita;
+
+  /** whether the node is known to be in canonical form */
+  private final boolean canonico;
+
   /**
    * Constructs an internal node with given children and sorts them using 'NodoComparator' logic.
    *
@@ -25,6 +34,20 @@ public class Addizione extends NodoInterno {
    *     elments
    */
   public Addizione(List<Nodo> f) {
+    this(f, false);
+  }
+
+  /**
+   * Constructs an internal node with given children, marking it as canonical if {@code canonico}
+   * holds and all the children are canonical.
+   *
+   * @param f List of child nodes to be assigned to this internal node
+   * @param canonico whether the node is the result of a simplification
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  Addizione(List<Nodo> f, boolean canonico) {
     Objects.requireNonNull(f, "the list of child nodes cannot be null");
     if (f.contains(null))
       throw new IllegalArgumentException("List of child nodes cannot contain null elements");
@@ -34,6 +57,9 @@ public class Addizione extends NodoInterno {
     NodoComparator comparator = new NodoComparator();
     Collections.sort(f, comparator);
     addendi = Collections.unmodifiableList(f);
+    impronta = Impronta.diNodoInterno(Impronta.ADDIZIONE, addendi.iterator());
+    profondita = profondita(addendi);
+    this.canonico = canonico && f.stream().allMatch(Nodo::isCanonico);
   }
 
   /**
@@ -46,6 +72,21 @@ public class Addizione extends NodoInterno {
     return 4;
   }
 
+  @Override
+  public long impronta() {
+    return impronta;
+  }
+
+  @Override
+  public int profondita() {
+    return profondita;
+  }
+
+  @Override
+  public boolean isCanonico() {
+    return canonico;
+  }
+
   @Override
   public String tipo() {
     return "+";
@@ -61,6 +102,26 @@ public class Addizione extends NodoInterno {
     return visitor.visit(this);
   }
 
+  @Override
+  public <R> R accept(VisitorGenerico<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public int accept(VisitorInt visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long accept(VisitorLong visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public double accept(VisitorDouble visitor) {
+    return visitor.visit(this);
+  }
+
   @Override
   public Iterator<Nodo> iterator() {
     return Collections.unmodifiableList(addendi).iterator();
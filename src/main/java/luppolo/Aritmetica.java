@@ -0,0 +1,192 @@
+package luppolo;
+
+import java.math.BigInteger;
+
+/**
+ * A utility class with the exact integer arithmetic used by {@code Razionale}: integer k-th roots
+ * computed with Newton's method, perfect power tests and exponentiation by squaring with overflow
+ * detection. Every operation has a {@code long} version, that never allocates, and a {@link
+ * BigInteger} version for the values that do not fit.
+ *
+ * <p>The results of the recent perfect power tests on {@code long} values are kept in a small
+ * direct-mapped cache, since the simplification of a power asks for the same roots over and over.
+ */
+public final class Aritmetica {
+
+  /** The value returned by the {@code long} operations when the result does not exist or fit. */
+  public static final long NESSUNO = Long.MIN_VALUE;
+
+  /** The number of entries of the cache of the roots, a power of two. */
+  private static final int DIMENSIONE_CACHE = 256;
+
+  /**
+   * An immutable entry of the cache of the roots.
+   *
+   * @param x the radicand
+   * @param k the index of the root
+   * @param radice the exact k-th root of x, or {@code NESSUNO} if x is not a perfect k-th power
+   */
+  private record Voce(long x, long k, long radice) {}
+
+  /**
+   * The cache of the roots. Entries are immutable, hence a race between threads can at most lose
+   * an entry, never publish a wrong one.
+   */
+  private static final Voce[] CACHE = new Voce[DIMENSIONE_CACHE];
+
+  /** This class only has static methods, hence it cannot be instantiated. */
+  private Aritmetica() {}
+
+  /**
+   * Computes the integer k-th root of a non negative number, that is the largest {@code r} such
+   * that {@code r^k <= x}.
+   *
+   * @param x the radicand
+   * @param k the index of the root
+   * @return the integer k-th root of {@code x}
+   * @throws IllegalArgumentException if {@code x} is negative or {@code k} is not positive
+   */
+  public static long radiceIntera(long x, long k) {
+    if (x < 0) throw new IllegalArgumentException("Il radicando non può essere negativo");
+    if (k <= 0) throw new IllegalArgumentException("L'indice della radice deve essere positivo");
+    if (x < 2 || k == 1) return x;
+    if (k >= 63) return 1; // 2^63 non è rappresentabile
+    int bit = 64 - Long.numberOfLeadingZeros(x);
+    // 2^ceil(bit/k) è una stima per eccesso, da cui Newton decresce monotonamente
+    long r = 1L << ((bit + k - 1) / k);
+    long y = r;
+    do {
+      r = y;
+      long p = potenzaEsatta(r, k - 1);
+      // se r^(k-1) non è rappresentabile supera x, quindi il quoziente è 0
+      long q = p == NESSUNO ? 0 : x / p;
+      y = ((k - 1) * r + q) / k;
+    } while (y < r);
+    return r;
+  }
+
+  /**
+   * Computes the integer k-th root of a non negative number, that is the largest {@code r} such
+   * that {@code r^k <= x}.
+   *
+   * @param x the radicand
+   * @param k the index of the root
+   * @return the integer k-th root of {@code x}
+   * @throws IllegalArgumentException if {@code x} is negative or {@code k} is not positive
+   */
+  public static BigInteger radiceIntera(BigInteger x, long k) {
+    if (x.signum() < 0) throw new IllegalArgumentException("Il radicando non può essere negativo");
+    if (k <= 0) throw new IllegalArgumentException("L'indice della radice deve essere positivo");
+    if (x.compareTo(BigInteger.TWO) < 0 || k == 1) return x;
+    if (k >= x.bitLength()) return BigInteger.ONE;
+    int e = (int) k;
+    BigInteger kk = BigInteger.valueOf(k);
+    BigInteger km1 = BigInteger.valueOf(k - 1);
+    // 2^ceil(bitLength/k) è una stima per eccesso, da cui Newton decresce monotonamente
+    BigInteger r;
+    BigInteger y = BigInteger.ONE.shiftLeft((x.bitLength() + e - 1) / e);
+    do {
+      r = y;
+      y = km1.multiply(r).add(x.divide(r.pow(e - 1))).divide(kk);
+    } while (y.compareTo(r) < 0);
+    return r;
+  }
+
+  /**
+   * Computes the exact k-th root of a non negative number.
+   *
+   * @param x the radicand
+   * @param k the index of the root
+   * @return the k-th root of {@code x}, or {@code NESSUNO} if {@code x} is not a perfect k-th
+   *     power
+   * @throws IllegalArgumentException if {@code x} is negative or {@code k} is not positive
+   */
+  public static long radiceEsatta(long x, long k) {
+    if (x < 2 || k == 1) return radiceIntera(x, k);
+    int indice = Long.hashCode(x * 31 + k) & (DIMENSIONE_CACHE - 1);
+    Voce voce = CACHE[indice];
+    if (voce != null && voce.x() == x && voce.k() == k) return voce.radice();
+    long r = radiceIntera(x, k);
+    long radice = potenzaEsatta(r, k) == x ? r : NESSUNO;
+    CACHE[indice] = new Voce(x, k, radice);
+    return radice;
+  }
+
+  /**
+   * Computes the exact k-th root of a non negative number.
+   *
+   * @param x the radicand
+   * @param k the index of the root
+   * @return the k-th root of {@code x}, or {@code null} if {@code x} is not a perfect k-th power
+   * @throws IllegalArgumentException if {@code x} is negative or {@code k} is not positive
+   */
+  public static BigInteger radiceEsatta(BigInteger x, long k) {
+    BigInteger r = radiceIntera(x, k);
+    if (k == 1 || x.compareTo(BigInteger.TWO) < 0) return r;
+    if (BigInteger.ONE.equals(r)) return null; // x > 1 non è una potenza k-esima di 1
+    return r.pow((int) k).equals(x) ? r : null;
+  }
+
+  /**
+   * Raises a number to a non negative power by repeated squaring, checking for overflow.
+   *
+   * @param b the base
+   * @param e the exponent
+   * @return {@code b^e}, or {@code NESSUNO} if the result does not fit in (Long.MIN_VALUE,
+   *     Long.MAX_VALUE]
+   * @throws IllegalArgumentException if {@code e} is negative
+   */
+  public static long potenzaEsatta(long b, long e) {
+    if (e < 0) throw new IllegalArgumentException("L'esponente non può essere negativo");
+    if (b == 0 || b == 1) return e == 0 ? 1 : b;
+    if (b == -1) return (e & 1) == 0 ? 1 : -1;
+    if (e >= 64 || b == NESSUNO) return NESSUNO;
+    long risultato = 1;
+    long quadrato = b;
+    for (long esp = e; esp != 0; esp >>= 1) {
+      if ((esp & 1) != 0) {
+        risultato = prodottoEsatto(risultato, quadrato);
+        if (risultato == NESSUNO) return NESSUNO;
+      }
+      // l'ultimo quadrato non serve e potrebbe non essere rappresentabile
+      if (esp > 1) {
+        quadrato = prodottoEsatto(quadrato, quadrato);
+        if (quadrato == NESSUNO) return NESSUNO;
+      }
+    }
+    return risultato;
+  }
+
+  /**
+   * Raises a number to a non negative power, staying on {@code long} arithmetic while the result
+   * fits.
+   *
+   * @param b the base
+   * @param e the exponent
+   * @return {@code b^e}
+   * @throws IllegalArgumentException if {@code e} is negative
+   * @throws ArithmeticException if {@code e} does not fit in an {@code int} and {@code |b| > 1}
+   */
+  public static BigInteger potenza(BigInteger b, long e) {
+    if (b.bitLength() < 64) {
+      long r = potenzaEsatta(b.longValue(), e);
+      if (r != NESSUNO) return BigInteger.valueOf(r);
+    }
+    return b.pow(Math.toIntExact(e));
+  }
+
+  /**
+   * Multiplies two numbers checking for overflow.
+   *
+   * @param a the first factor
+   * @param b the second factor
+   * @return the product, or {@code NESSUNO} if it does not fit in (Long.MIN_VALUE,
+   *     Long.MAX_VALUE]
+   */
+  public static long prodottoEsatto(long a, long b) {
+    long alto = Math.multiplyHigh(a, b);
+    long basso = a * b;
+    if ((alto == 0 && basso >= 0) || (alto == -1 && basso < 0)) return basso;
+    return NESSUNO;
+  }
+}
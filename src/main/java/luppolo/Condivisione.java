@@ -0,0 +1,224 @@
+package luppolo;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A traversal driver for expressions whose subexpressions are shared, as the ones built from a
+ * linear program, where an instruction can be used as an operand by many later instructions. Such
+ * an expression is a directed acyclic graph: walking it as a tree costs time proportional to the
+ * number of paths from the root, that can grow exponentially with the depth of the sharing.
+ *
+ * <p>A {@code Condivisione} computes a function of the nodes (typically a visit) at most once for
+ * every distinct internal node, recognizing the nodes by identity, and hands out the remembered
+ * result on every later request. A visitor obtains the sharing by recursing on the children through
+ * {@link #visita(Nodo)} instead of calling {@code accept} directly. Before computing a node that
+ * was never met, the driver computes its descendants in post-order with an explicit stack, hence
+ * the visit of a child found by the function is always a lookup and the depth of the expression
+ * does not consume the call stack.
+ *
+ * <p>The function must be a function of the node alone: results that depend on the position of the
+ * node in the expression (such as the indentation of {@link luppolo.rappresentazione.Tree}) cannot
+ * be shared. The results are kept as long as the instance, that is mutable and not thread-safe.
+ *
+ * <p>The driver is also the way to visit an expression too deep to be visited recursively: the
+ * visitors of {@link luppolo.manipolazione} switch to it, for a single visit, when the depth of the
+ * expression exceeds {@link #PROFONDITA_RICORSIVA}.
+ *
+ * <p>The static methods analyze the sharing of an expression without computing anything.
+ *
+ * @param <R> the type of the results
+ */
+public final class Condivisione<R> {
+
+  /**
+   * The greatest depth of an expression (see {@link Nodo#profondita()}) that a visitor should walk
+   * recursively: the visit of a deeper expression could overflow the call stack of a thread with
+   * the default stack size, and should be driven by a {@code Condivisione}.
+   */
+  public static final int PROFONDITA_RICORSIVA = 512;
+
+  /*
+   * AF: risultati maps every internal node already computed, by identity, to calcolo.apply of it.
+   *
+   * RI: calcolo and risultati not null, risultati has no null values and all its keys are
+   * instances of NodoInterno.
+   */
+
+  /** The function computed on the nodes. */
+  private final Function<Nodo, R> calcolo;
+
+  /** The results of the internal nodes already computed, by identity. */
+  private final Map<Nodo, R> risultati = new IdentityHashMap<>();
+
+  /**
+   * Constructs a driver that computes the given function.
+   *
+   * @param calcolo the function to compute, that must not return {@code null}
+   * @throws NullPointerException if {@code calcolo} is {@code null}
+   */
+  public Condivisione(Function<Nodo, R> calcolo) {
+    this.calcolo = Objects.requireNonNull(calcolo, "the function cannot be null");
+  }
+
+  /**
+   * Constructs a driver that computes the visit of the given visitor.
+   *
+   * @param visitor the visitor
+   * @return a driver computing {@code nodo.accept(visitor)}
+   * @throws NullPointerException if {@code visitor} is {@code null}
+   */
+  public static Condivisione<String> di(Visitor visitor) {
+    Objects.requireNonNull(visitor, "the visitor cannot be null");
+    return new Condivisione<>(nodo -> nodo.accept(visitor));
+  }
+
+  /**
+   * Constructs a driver that computes the visit of the given visitor.
+   *
+   * @param visitor the visitor
+   * @return a driver computing {@code nodo.accept(visitor)}
+   * @throws NullPointerException if {@code visitor} is {@code null}
+   */
+  public static Condivisione<Nodo> di(VisitorNodo visitor) {
+    Objects.requireNonNull(visitor, "the visitor cannot be null");
+    return new Condivisione<>(nodo -> nodo.accept(visitor));
+  }
+
+  /**
+   * Returns the result of the function on a node, computing it only if the node is a leaf or an
+   * internal node that has not been computed yet.
+   *
+   * @param nodo the node
+   * @return the result of the function on {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null} or the function returns {@code
+   *     null}
+   */
+  public R visita(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    if (!(nodo instanceof NodoInterno)) return calcola(nodo);
+    R risultato = risultati.get(nodo);
+    if (risultato != null) return risultato;
+    // i discendenti vengono calcolati prima degli antenati, così ogni visita di un figlio trova il
+    // risultato già pronto
+    for (NodoInterno n : postordine(nodo, risultati.keySet())) {
+      // il calcolo di un nodo precedente può aver già visitato n
+      if (!risultati.containsKey(n)) risultati.put(n, calcola(n));
+    }
+    return risultati.get(nodo);
+  }
+
+  /**
+   * Returns the number of internal nodes whose result is remembered.
+   *
+   * @return the number of remembered results
+   */
+  public int dimensione() {
+    return risultati.size();
+  }
+
+  /** Forgets all the remembered results. */
+  public void svuota() {
+    risultati.clear();
+  }
+
+  /**
+   * Applies the function to a node, checking the result.
+   *
+   * @param nodo the node
+   * @return the result of the function on {@code nodo}
+   */
+  private R calcola(Nodo nodo) {
+    return Objects.requireNonNull(calcolo.apply(nodo), "the function returned null");
+  }
+
+  /**
+   * Returns the distinct internal nodes of an expression, recognized by identity, in post-order:
+   * every node comes after all its internal descendants and the root, if internal, comes last.
+   *
+   * @param radice the root of the expression
+   * @return the distinct internal nodes of {@code radice} in post-order
+   * @throws NullPointerException if {@code radice} is {@code null}
+   */
+  public static List<NodoInterno> postordine(Nodo radice) {
+    Objects.requireNonNull(radice, "the root cannot be null");
+    return postordine(radice, Collections.emptySet());
+  }
+
+  /**
+   * Tells how many times every distinct internal node of an expression occurs as a child of
+   * another node; the root counts as one occurrence. The nodes occurring more than once are the
+   * shared ones.
+   *
+   * @param radice the root of the expression
+   * @return a map, by identity, from the internal nodes of {@code radice} to their number of
+   *     occurrences
+   * @throws NullPointerException if {@code radice} is {@code null}
+   */
+  public static Map<Nodo, Integer> occorrenze(Nodo radice) {
+    Objects.requireNonNull(radice, "the root cannot be null");
+    Map<Nodo, Integer> occorrenze = new IdentityHashMap<>();
+    if (!(radice instanceof NodoInterno)) return occorrenze;
+    Deque<NodoInterno> daVisitare = new ArrayDeque<>();
+    occorrenze.put(radice, 1);
+    daVisitare.push((NodoInterno) radice);
+    while (!daVisitare.isEmpty()) {
+      for (Nodo figlio : daVisitare.pop()) {
+        if (!(figlio instanceof NodoInterno)) continue;
+        // i figli di un nodo vengono esplorati solo alla sua prima occorrenza
+        if (occorrenze.merge(figlio, 1, Integer::sum) == 1) daVisitare.push((NodoInterno) figlio);
+      }
+    }
+    return occorrenze;
+  }
+
+  /**
+   * Returns the internal nodes of an expression that occur more than once in it, recognized by
+   * identity.
+   *
+   * @param radice the root of the expression
+   * @return the set, by identity, of the shared internal nodes of {@code radice}
+   * @throws NullPointerException if {@code radice} is {@code null}
+   */
+  public static Set<Nodo> condivisi(Nodo radice) {
+    Set<Nodo> condivisi = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Map.Entry<Nodo, Integer> e : occorrenze(radice).entrySet()) {
+      if (e.getValue() > 1) condivisi.add(e.getKey());
+    }
+    return condivisi;
+  }
+
+  /**
+   * Returns the distinct internal nodes of an expression in post-order, skipping the given nodes
+   * and their descendants.
+   *
+   * @param radice the root of the expression
+   * @param esclusi the nodes to skip, by identity
+   * @return the distinct internal nodes of {@code radice} not in {@code esclusi}, in post-order
+   */
+  private static List<NodoInterno> postordine(Nodo radice, Set<Nodo> esclusi) {
+    List<NodoInterno> ordine = new ArrayList<>();
+    if (!(radice instanceof NodoInterno) || esclusi.contains(radice)) return ordine;
+    Set<Nodo> visti = Collections.newSetFromMap(new IdentityHashMap<>());
+    // ogni nodo sulla pila è accompagnato dall'iteratore sui figli ancora da esplorare
+    Deque<NodoInterno> nodi = new ArrayDeque<>();
+    Deque<Iterator<Nodo>> figli = new ArrayDeque<>();
+    visti.add(radice);
+    nodi.push((NodoInterno) radice);
+    figli.push(((NodoInterno) radice).iterator());
+    while (!nodi.isEmpty()) {
+      Iterator<Nodo> it = figli.peek();
+      if (it.hasNext()) {
+        Nodo figlio = it.next();
+        if (figlio instanceof NodoInterno && !esclusi.contains(figlio) && visti.add(figlio)) {
+          nodi.push((NodoInterno) figlio);
+          figli.push(((NodoInterno) figlio).iterator());
+        }
+      } else {
+        figli.pop();
+        ordine.add(nodi.pop());
+      }
+    }
+    return ordine;
+  }
+}
@@ -0,0 +1,58 @@
+package luppolo;
+
+/**
+ * The constants of the compact binary format of the expressions, written by {@link
+ * luppolo.rappresentazione.ScritturaBinaria} and read by {@link
+ * luppolo.costruzione.LetturaBinaria}.
+ *
+ * <p>An expression is written in pre-order, every node starting with a one-byte opcode:
+ *
+ * <ul>
+ *   <li>{@link #INTERO} followed by the value as a zigzag varint;
+ *   <li>{@link #FRAZIONE} followed by the numerator as a zigzag varint and the denominator, greater
+ *       than 1, as a varint;
+ *   <li>{@link #GRANDE} followed by the numerator and the denominator of a rational number that
+ *       does not fit in {@code long}, each as a varint length and the bytes of its two's complement
+ *       big-endian representation;
+ *   <li>{@code SIMBOLO + i} for the i-th letter of the alphabet, from 0 to 25, with no operand;
+ *   <li>{@link #ADDIZIONE} and {@link #MOLTIPLICAZIONE} followed by the number of children as a
+ *       varint and by the children;
+ *   <li>{@link #POTENZA} followed by the base and the exponent;
+ *   <li>{@link #RIFERIMENTO} followed by a varint {@code k}, standing for an internal node equal to
+ *       the k-th internal node completed so far in the same expression, counting from 0.
+ * </ul>
+ *
+ * <p>Varints are unsigned LEB128: seven bits per byte, least significant group first, with the
+ * high bit set on all the bytes but the last; the zigzag encoding maps the signed values 0, -1, 1,
+ * -2, ... to 0, 1, 2, 3, ... so that small negative values take few bytes as well. A stream is a
+ * sequence of expressions, each with its own back-references.
+ */
+public final class FormatoBinario {
+
+  /** The opcode of an integer that fits in {@code long}. */
+  public static final int INTERO = 0x01;
+
+  /** The opcode of a fraction whose numerator and denominator fit in {@code long}. */
+  public static final int FRAZIONE = 0x02;
+
+  /** The opcode of a rational number that does not fit in {@code long}. */
+  public static final int GRANDE = 0x03;
+
+  /** The opcode of the symbol {@code a}; the opcode of every other symbol follows in order. */
+  public static final int SIMBOLO = 0x10;
+
+  /** The opcode of an addition. */
+  public static final int ADDIZIONE = 0x30;
+
+  /** The opcode of a multiplication. */
+  public static final int MOLTIPLICAZIONE = 0x31;
+
+  /** The opcode of a power. */
+  public static final int POTENZA = 0x32;
+
+  /** The opcode of a back-reference to an internal node already written. */
+  public static final int RIFERIMENTO = 0x40;
+
+  /** This class only has constants and cannot be instantiated. */
+  private FormatoBinario() {}
+}
@@ -0,0 +1,74 @@
+package luppolo;
+
+import java.util.Iterator;
+
+/**
+ * A utility class computing the structural fingerprint of the nodes. The fingerprint of a node is
+ * a 64-bit value obtained by mixing a tag identifying its type with the fingerprints of its
+ * children (or with its value, for the leaves); it only depends on the structure of the node and on
+ * the constants of this class, hence it does not change across executions.
+ */
+final class Impronta {
+
+  /** The tag of the rational nodes. */
+  static final long RAZIONALE = 0x52415A494F4E414CL;
+
+  /** The tag of the symbol nodes. */
+  static final long SIMBOLO = 0x53494D424F4C4FL;
+
+  /** The tag of the addition nodes. */
+  static final long ADDIZIONE = 0x4144444958494F4EL;
+
+  /** The tag of the multiplication nodes. */
+  static final long MOLTIPLICAZIONE = 0x4D4F4C5449504CL;
+
+  /** The tag of the power nodes. */
+  static final long POTENZA = 0x504F54454E5A41L;
+
+  /** The odd constant derived from the golden ratio used to spread the combined values. */
+  private static final long PHI = 0x9E3779B97F4A7C15L;
+
+  /** This class only has static methods, hence it cannot be instantiated. */
+  private Impronta() {}
+
+  /**
+   * Combines a partial fingerprint with a new value.
+   *
+   * @param h the partial fingerprint
+   * @param v the value to add to the fingerprint
+   * @return the combined fingerprint
+   */
+  static long combina(long h, long v) {
+    return mescola(h ^ (mescola(v) + PHI + (h << 6) + (h >>> 2)));
+  }
+
+  /**
+   * Computes the fingerprint of an internal node given its tag and its children.
+   *
+   * @param tag the tag of the type of the node
+   * @param figli the children of the node
+   * @return the fingerprint of the node
+   */
+  static long diNodoInterno(long tag, Iterator<Nodo> figli) {
+    long h = mescola(tag);
+    int n = 0;
+    while (figli.hasNext()) {
+      h = combina(h, figli.next().impronta());
+      n++;
+    }
+    return combina(h, n);
+  }
+
+  /**
+   * Applies the finalization step of MurmurHash3, so that every bit of the input affects every bit
+   * of the output.
+   *
+   * @param z the value to mix
+   * @return the mixed value
+   */
+  private static long mescola(long z) {
+    long x = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+    x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return x ^ (x >>> 33);
+  }
+}
@@ -0,0 +1,596 @@
+package luppolo;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of the engine: how many times every simplification rule fires, how many nodes every
+ * visitor visits and builds, how long every stage of a pipeline takes and how often the cache of
+ * the simplified subtrees is hit.
+ *
+ * <p>The metrics are collected only if the system property {@value #PROPRIETA} is {@code true}
+ * when this class is initialized: otherwise every method that records a metric does nothing, and
+ * since the switch is a constant the JIT removes the calls altogether. The counters are {@link
+ * LongAdder}s, so that recording from many threads does not contend on a single variable.
+ *
+ * <p>The metrics can be read through {@link #istantanea()} and, if they are collected, through the
+ * platform MBean server, under the name {@value #NOME_JMX} (see {@link MetricheMXBean}).
+ */
+public final class Metriche {
+
+  /** The name of the system property that switches the metrics on. */
+  public static final String PROPRIETA = "luppolo.metriche";
+
+  /** The name of the MBean of the metrics. */
+  public static final String NOME_JMX = "luppolo:type=Metriche";
+
+  /** Whether the metrics are collected. */
+  public static final boolean ATTIVE = Boolean.getBoolean(PROPRIETA);
+
+  /** The number of buckets of a latency histogram, one per power of two of nanoseconds. */
+  public static final int SECCHI = 64;
+
+  /** The simplification rules whose firings are counted. */
+  public enum Regola {
+    /** A child with the same operator as its parent is replaced by its children. */
+    APPIATTIMENTO,
+    /** Two or more rational addends are summed. */
+    SOMMA_RAZIONALI,
+    /** Two or more addends equal but for a rational coefficient are collected. */
+    TERMINI_SIMILI,
+    /** The addends equal but for a rational coefficient cancel out. */
+    TERMINI_OPPOSTI,
+    /** Two or more rational factors are multiplied. */
+    PRODOTTO_RAZIONALI,
+    /** Two or more factors with the same base are collected, summing their exponents. */
+    FATTORI_SIMILI,
+    /** The exponents of the factors with the same base cancel out. */
+    ESPONENTI_OPPOSTI,
+    /** A product with a zero factor becomes zero. */
+    PRODOTTO_NULLO,
+    /** A power of a power becomes a single power, multiplying the exponents. */
+    POTENZA_DI_POTENZA,
+    /** A power with exponent one becomes its base. */
+    ESPONENTE_UNO,
+    /** A power of zero becomes zero. */
+    BASE_ZERO,
+    /** A power of a nonzero rational with exponent zero becomes one. */
+    ESPONENTE_ZERO,
+    /** A power of a rational with negative exponent is inverted. */
+    ESPONENTE_NEGATIVO,
+    /** A power of a rational with an exact root becomes a rational. */
+    RADICE_RAZIONALE
+  }
+
+  /** The visitors whose visited and built nodes are counted. */
+  public enum Visitatore {
+    /** The simplification. */
+    SEMPLIFICAZIONE,
+    /** The expansion. */
+    ESPANSIONE,
+    /** The derivation. */
+    DERIVAZIONE
+  }
+
+  /** The stages of a pipeline whose latency is measured. */
+  public enum Fase {
+    /** The parsing of the input into an expression. */
+    LETTURA,
+    /** The simplification of the expression. */
+    SEMPLIFICAZIONE,
+    /** The expansion of the expression. */
+    ESPANSIONE,
+    /** The derivation of the expression. */
+    DERIVAZIONE,
+    /** The representation of the result as text. */
+    RAPPRESENTAZIONE
+  }
+
+  /**
+   * A histogram of latencies: the bucket {@code i} counts the durations {@code d} such that {@code
+   * 2^i <= d < 2^(i+1)} nanoseconds, the first one includes zero.
+   *
+   * @param conteggi the number of durations in every bucket
+   * @param totale the sum of the durations, in nanoseconds
+   */
+  public record Istogramma(long[] conteggi, long totale) {
+
+    /**
+     * Constructs a histogram.
+     *
+     * @param conteggi the number of durations in every bucket
+     * @param totale the sum of the durations, in nanoseconds
+     * @throws NullPointerException if {@code conteggi} is {@code null}
+     * @throws IllegalArgumentException if {@code conteggi} has not {@value Metriche#SECCHI}
+     *     elements
+     */
+    public Istogramma {
+      conteggi = Objects.requireNonNull(conteggi, "the counts cannot be null").clone();
+      if (conteggi.length != SECCHI) {
+        throw new IllegalArgumentException("Invalid number of buckets: " + conteggi.length);
+      }
+    }
+
+    /**
+     * Returns the number of durations in every bucket.
+     *
+     * @return a copy of the counts
+     */
+    @Override
+    public long[] conteggi() {
+      return conteggi.clone();
+    }
+
+    /**
+     * Returns the number of durations.
+     *
+     * @return the number of durations
+     */
+    public long numero() {
+      long res = 0;
+      for (long c : conteggi) res += c;
+      return res;
+    }
+
+    /**
+     * Returns the mean of the durations.
+     *
+     * @return the mean, in nanoseconds, or 0 if there are no durations
+     */
+    public double media() {
+      long n = numero();
+      return n == 0 ? 0 : (double) totale / n;
+    }
+
+    /**
+     * Returns an upper bound of a quantile of the durations: the upper end of the bucket that
+     * contains it.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the upper bound, in nanoseconds, or 0 if there are no durations
+     * @throws IllegalArgumentException if {@code q} is not between 0 and 1
+     */
+    public long quantile(double q) {
+      if (!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Invalid quantile: " + q);
+      long n = numero();
+      if (n == 0) return 0;
+      long soglia = Math.max(1, (long) Math.ceil(q * n));
+      long visti = 0;
+      int i = 0;
+      while (visti + conteggi[i] < soglia) visti += conteggi[i++];
+      return i >= SECCHI - 2 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Istogramma i && totale == i.totale && Arrays.equals(conteggi, i.conteggi);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Arrays.hashCode(conteggi) + Long.hashCode(totale);
+    }
+
+    @Override
+    public String toString() {
+      return "Istogramma[numero=" + numero() + ", totale=" + totale + "]";
+    }
+  }
+
+  /**
+   * A snapshot of the metrics. The counters are read one at a time while they may be updated,
+   * hence the snapshot is not atomic; every map has an entry for every constant of its key.
+   *
+   * @param regole the firings of every simplification rule
+   * @param visitati the nodes visited by every visitor
+   * @param creati the internal nodes built by every visitor
+   * @param latenze the latencies of every stage
+   * @param successiCache the lookups in the cache of the simplified subtrees that found an entry
+   * @param fallimentiCache the lookups in the cache of the simplified subtrees that did not
+   */
+  public record Istantanea(
+      Map<Regola, Long> regole,
+      Map<Visitatore, Long> visitati,
+      Map<Visitatore, Long> creati,
+      Map<Fase, Istogramma> latenze,
+      long successiCache,
+      long fallimentiCache) {
+
+    /**
+     * Constructs a snapshot.
+     *
+     * @param regole the firings of every simplification rule
+     * @param visitati the nodes visited by every visitor
+     * @param creati the internal nodes built by every visitor
+     * @param latenze the latencies of every stage
+     * @param successiCache the lookups in the cache of the simplified subtrees that found an entry
+     * @param fallimentiCache the lookups in the cache of the simplified subtrees that did not
+     * @throws NullPointerException if any map is {@code null}
+     */
+    public Istantanea {
+      Objects.requireNonNull(regole, "the rules cannot be null");
+      Objects.requireNonNull(visitati, "the visited nodes cannot be null");
+      Objects.requireNonNull(creati, "the built nodes cannot be null");
+      Objects.requireNonNull(latenze, "the latencies cannot be null");
+    }
+
+    /**
+     * Returns the fraction of the lookups in the cache of the simplified subtrees that found an
+     * entry.
+     *
+     * @return the hit rate, or 0 if there were no lookups
+     */
+    public double rapportoSuccessiCache() {
+      long ricerche = successiCache + fallimentiCache;
+      return ricerche == 0 ? 0 : (double) successiCache / ricerche;
+    }
+  }
+
+  /*
+   * AF: REGOLE[r.ordinal()] counts the firings of the rule r, VISITATI[v.ordinal()] and
+   * CREATI[v.ordinal()] the nodes visited and built by the visitor v, LATENZE[f.ordinal()][i] the
+   * durations of the stage f in the bucket i and DURATE[f.ordinal()] their sum; SUCCESSI and
+   * FALLIMENTI count the hits and misses of the cache.
+   *
+   * RI: every array has an element for every constant of its enum, LATENZE[f] has SECCHI elements;
+   * all the counters are zero if not ATTIVE.
+   */
+
+  /** The firings of every simplification rule. */
+  private static final LongAdder[] REGOLE = contatori(Regola.values().length);
+
+  /** The nodes visited by every visitor. */
+  private static final LongAdder[] VISITATI = contatori(Visitatore.values().length);
+
+  /** The internal nodes built by every visitor. */
+  private static final LongAdder[] CREATI = contatori(Visitatore.values().length);
+
+  /** The durations of every stage, by bucket. */
+  private static final LongAdder[][] LATENZE = new LongAdder[Fase.values().length][];
+
+  /** The sum of the durations of every stage, in nanoseconds. */
+  private static final LongAdder[] DURATE = contatori(Fase.values().length);
+
+  /** The lookups in the cache of the simplified subtrees that found an entry. */
+  private static final LongAdder SUCCESSI = new LongAdder();
+
+  /** The lookups in the cache of the simplified subtrees that did not. */
+  private static final LongAdder FALLIMENTI = new LongAdder();
+
+  static {
+    for (int f = 0; f < LATENZE.length; f++) LATENZE[f] = contatori(SECCHI);
+    if (ATTIVE) {
+      try {
+        ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(new Gestione(), new ObjectName(NOME_JMX));
+      } catch (JMException | SecurityException e) {
+        // senza MBean le metriche restano leggibili tramite istantanea()
+      }
+    }
+  }
+
+  /** This class only has static methods, hence it cannot be instantiated. */
+  private Metriche() {}
+
+  /**
+   * Records a firing of a simplification rule.
+   *
+   * @param regola the rule
+   */
+  public static void regola(Regola regola) {
+    if (ATTIVE) REGOLE[regola.ordinal()].increment();
+  }
+
+  /**
+   * Records a node visited by a visitor.
+   *
+   * @param visitatore the visitor
+   */
+  public static void visitato(Visitatore visitatore) {
+    if (ATTIVE) VISITATI[visitatore.ordinal()].increment();
+  }
+
+  /**
+   * Records a lookup in the cache of the simplified subtrees.
+   *
+   * @param successo whether the lookup found an entry
+   */
+  public static void cache(boolean successo) {
+    if (ATTIVE) (successo ? SUCCESSI : FALLIMENTI).increment();
+  }
+
+  /**
+   * Returns the start time of a stage, to be passed to {@link #fine(Fase, long)}.
+   *
+   * @return the current time in nanoseconds, or 0 if the metrics are not collected
+   */
+  public static long inizio() {
+    return ATTIVE ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the end of a stage.
+   *
+   * @param fase the stage
+   * @param inizio the start time of the stage, as returned by {@link #inizio()}
+   */
+  public static void fine(Fase fase, long inizio) {
+    if (ATTIVE) {
+      long durata = Math.max(0, System.nanoTime() - inizio);
+      LATENZE[fase.ordinal()][Math.max(0, 63 - Long.numberOfLeadingZeros(durata))].increment();
+      DURATE[fase.ordinal()].add(durata);
+    }
+  }
+
+  /**
+   * Returns a factory that builds the same nodes as the given one, counting the internal nodes as
+   * built by a visitor. If the metrics are not collected the factory is returned as it is.
+   *
+   * @param factory the factory
+   * @param visitatore the visitor
+   * @return the counting factory
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public static NodoFactory conta(NodoFactory factory, Visitatore visitatore) {
+    Objects.requireNonNull(factory, "the factory cannot be null");
+    if (!ATTIVE) return factory;
+    // un visitatore che ne crea un altro non conta due volte gli stessi nodi
+    NodoFactory base = factory instanceof Contata ? ((Contata) factory).base : factory;
+    return new Contata(base, CREATI[visitatore.ordinal()]);
+  }
+
+  /**
+   * Returns a snapshot of the metrics.
+   *
+   * @return the current values of the metrics, all zero if they are not collected
+   */
+  public static Istantanea istantanea() {
+    return new Istantanea(
+        valori(Regola.class, REGOLE),
+        valori(Visitatore.class, VISITATI),
+        valori(Visitatore.class, CREATI),
+        latenze(),
+        SUCCESSI.sum(),
+        FALLIMENTI.sum());
+  }
+
+  /** Resets all the metrics to zero. */
+  public static void azzera() {
+    for (LongAdder c : REGOLE) c.reset();
+    for (LongAdder c : VISITATI) c.reset();
+    for (LongAdder c : CREATI) c.reset();
+    for (LongAdder[] istogramma : LATENZE) {
+      for (LongAdder c : istogramma) c.reset();
+    }
+    for (LongAdder c : DURATE) c.reset();
+    SUCCESSI.reset();
+    FALLIMENTI.reset();
+  }
+
+  /**
+   * Returns new counters.
+   *
+   * @param n the number of counters
+   * @return the counters, all zero
+   */
+  private static LongAdder[] contatori(int n) {
+    LongAdder[] res = new LongAdder[n];
+    for (int i = 0; i < n; i++) res[i] = new LongAdder();
+    return res;
+  }
+
+  /**
+   * Returns the values of counters indexed by the constants of an enum.
+   *
+   * @param <E> the type of the enum
+   * @param tipo the class of the enum
+   * @param contatori the counters
+   * @return an unmodifiable map from every constant to the value of its counter
+   */
+  private static <E extends Enum<E>> Map<E, Long> valori(Class<E> tipo, LongAdder[] contatori) {
+    Map<E, Long> res = new EnumMap<>(tipo);
+    for (E e : tipo.getEnumConstants()) res.put(e, contatori[e.ordinal()].sum());
+    return Collections.unmodifiableMap(res);
+  }
+
+  /**
+   * Returns the latency histograms of the stages.
+   *
+   * @return an unmodifiable map from every stage to its histogram
+   */
+  private static Map<Fase, Istogramma> latenze() {
+    Map<Fase, Istogramma> res = new EnumMap<>(Fase.class);
+    for (Fase f : Fase.values()) {
+      long[] conteggi = new long[SECCHI];
+      for (int i = 0; i < SECCHI; i++) conteggi[i] = LATENZE[f.ordinal()][i].sum();
+      res.put(f, new Istogramma(conteggi, DURATE[f.ordinal()].sum()));
+    }
+    return Collections.unmodifiableMap(res);
+  }
+
+  /** A factory that delegates to another one, counting the internal nodes it builds. */
+  private static final class Contata extends NodoFactory {
+
+    /** The factory that builds the nodes. */
+    private final NodoFactory base;
+
+    /** The counter of the internal nodes built. */
+    private final LongAdder creati;
+
+    /**
+     * Constructs a factory that counts the internal nodes built by another one.
+     *
+     * @param base the factory that builds the nodes
+     * @param creati the counter of the internal nodes built
+     */
+    Contata(NodoFactory base, LongAdder creati) {
+      this.base = base;
+      this.creati = creati;
+    }
+
+    @Override
+    public Razionale razionale(long n) {
+      return base.razionale(n);
+    }
+
+    @Override
+    public Razionale razionale(long n, long d) {
+      return base.razionale(n, d);
+    }
+
+    @Override
+    public Razionale razionale(BigInteger n, BigInteger d) {
+      return base.razionale(n, d);
+    }
+
+    @Override
+    public Razionale razionale(String valore) {
+      return base.razionale(valore);
+    }
+
+    @Override
+    public Simbolo simbolo(char simbolo) {
+      return base.simbolo(simbolo);
+    }
+
+    @Override
+    public Addizione addizione(List<Nodo> f) {
+      creati.increment();
+      return base.addizione(f);
+    }
+
+    @Override
+    public Moltiplicazione moltiplicazione(List<Nodo> f) {
+      creati.increment();
+      return base.moltiplicazione(f);
+    }
+
+    @Override
+    public Potenza potenza(Nodo b, Razionale e) {
+      creati.increment();
+      return base.potenza(b, e);
+    }
+
+    @Override
+    public Addizione addizioneCanonica(List<Nodo> f) {
+      creati.increment();
+      return base.addizioneCanonica(f);
+    }
+
+    @Override
+    public Moltiplicazione moltiplicazioneCanonica(List<Nodo> f) {
+      creati.increment();
+      return base.moltiplicazioneCanonica(f);
+    }
+
+    @Override
+    public Potenza potenzaCanonica(Nodo b, Razionale e) {
+      creati.increment();
+      return base.potenzaCanonica(b, e);
+    }
+  }
+
+  /** The MBean of the metrics. */
+  private static final class Gestione implements MetricheMXBean {
+
+    @Override
+    public boolean isAttive() {
+      return ATTIVE;
+    }
+
+    @Override
+    public Map<String, Long> getRegole() {
+      return perNome(istantanea().regole());
+    }
+
+    @Override
+    public Map<String, Long> getNodiVisitati() {
+      return perNome(istantanea().visitati());
+    }
+
+    @Override
+    public Map<String, Long> getNodiCreati() {
+      return perNome(istantanea().creati());
+    }
+
+    @Override
+    public Map<String, Long> getEsecuzioni() {
+      Map<String, Long> res = new LinkedHashMap<>();
+      for (Map.Entry<Fase, Istogramma> e : istantanea().latenze().entrySet()) {
+        res.put(e.getKey().name(), e.getValue().numero());
+      }
+      return res;
+    }
+
+    @Override
+    public Map<String, Double> getLatenzaMedia() {
+      Map<String, Double> res = new LinkedHashMap<>();
+      for (Map.Entry<Fase, Istogramma> e : istantanea().latenze().entrySet()) {
+        res.put(e.getKey().name(), e.getValue().media() / 1e3);
+      }
+      return res;
+    }
+
+    @Override
+    public Map<String, Double> getLatenzaP50() {
+      return quantili(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getLatenzaP99() {
+      return quantili(0.99);
+    }
+
+    @Override
+    public long getSuccessiCache() {
+      return SUCCESSI.sum();
+    }
+
+    @Override
+    public long getFallimentiCache() {
+      return FALLIMENTI.sum();
+    }
+
+    @Override
+    public double getRapportoSuccessiCache() {
+      return istantanea().rapportoSuccessiCache();
+    }
+
+    @Override
+    public void azzera() {
+      Metriche.azzera();
+    }
+
+    /**
+     * Returns a map keyed by the names of the constants.
+     *
+     * @param valori the map keyed by the constants
+     * @return the map keyed by their names, in the same order
+     */
+    private static Map<String, Long> perNome(Map<? extends Enum<?>, Long> valori) {
+      Map<String, Long> res = new LinkedHashMap<>();
+      for (Map.Entry<? extends Enum<?>, Long> e : valori.entrySet()) {
+        res.put(e.getKey().name(), e.getValue());
+      }
+      return res;
+    }
+
+    /**
+     * Returns the upper bounds of a quantile of the latencies of the stages.
+     *
+     * @param q the quantile
+     * @return the upper bounds, in microseconds, by name of the stage
+     */
+    private static Map<String, Double> quantili(double q) {
+      Map<String, Double> res = new LinkedHashMap<>();
+      for (Map.Entry<Fase, Istogramma> e : istantanea().latenze().entrySet()) {
+        res.put(e.getKey().name(), e.getValue().quantile(q) / 1e3);
+      }
+      return res;
+    }
+  }
+}
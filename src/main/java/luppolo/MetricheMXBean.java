@@ -0,0 +1,92 @@
+package luppolo;
+
+import java.util.*;
+
+/**
+ * The management interface of the metrics of the engine, registered under the name {@value
+ * Metriche#NOME_JMX} when the metrics are collected. The maps are keyed by the names of the
+ * constants of {@link Metriche.Regola}, {@link Metriche.Visitatore} and {@link Metriche.Fase}.
+ */
+public interface MetricheMXBean {
+
+  /**
+   * Returns whether the metrics are collected.
+   *
+   * @return {@code true} if the metrics are collected
+   */
+  boolean isAttive();
+
+  /**
+   * Returns the firings of every simplification rule.
+   *
+   * @return the firings, by name of the rule
+   */
+  Map<String, Long> getRegole();
+
+  /**
+   * Returns the nodes visited by every visitor.
+   *
+   * @return the visited nodes, by name of the visitor
+   */
+  Map<String, Long> getNodiVisitati();
+
+  /**
+   * Returns the internal nodes built by every visitor.
+   *
+   * @return the built nodes, by name of the visitor
+   */
+  Map<String, Long> getNodiCreati();
+
+  /**
+   * Returns the number of executions of every stage.
+   *
+   * @return the executions, by name of the stage
+   */
+  Map<String, Long> getEsecuzioni();
+
+  /**
+   * Returns the mean latency of every stage.
+   *
+   * @return the mean latencies in microseconds, by name of the stage
+   */
+  Map<String, Double> getLatenzaMedia();
+
+  /**
+   * Returns an upper bound of the median latency of every stage.
+   *
+   * @return the bounds in microseconds, by name of the stage
+   */
+  Map<String, Double> getLatenzaP50();
+
+  /**
+   * Returns an upper bound of the 99th percentile of the latency of every stage.
+   *
+   * @return the bounds in microseconds, by name of the stage
+   */
+  Map<String, Double> getLatenzaP99();
+
+  /**
+   * Returns the lookups in the cache of the simplified subtrees that found an entry.
+   *
+   * @return the number of hits
+   */
+  long getSuccessiCache();
+
+  /**
+   * Returns the lookups in the cache of the simplified subtrees that did not find an entry.
+   *
+   * @return the number of misses
+   */
+  long getFallimentiCache();
+
+  /**
+   * Returns the fraction of the lookups in the cache of the simplified subtrees that found an
+   * entry.
+   *
+   * @return the hit rate, or 0 if there were no lookups
+   */
+  double getRapportoSuccessiCache();
+
+  /** Resets all the metrics to zero. */
+  void azzera();
+}
@@ -17,6 +17,15 @@ public class Moltiplicazione extends NodoInterno {
   /** the node's chidren */
   private final List<Nodo> fattori;
 
+  /** the structural fingerprint of the node */
+  private final long impronta;
+
+  /** the depth of the node */
+  private final int profondita;
+
+  /** whether the node is known to be in canonical form */
+  private final boolean canonico;
+
   /**
    * Constructs an internal node with given children and sorts them using 'NodoComparator' logic.
    *
@@ -26,6 +35,20 @@ public class Moltiplicazione extends NodoInterno {
    * @throws NullPointerException if the f is {@code null}
    */
   public Moltiplicazione(List<Nodo> f) {
+    this(f, false);
+  }
+
+  /**
+   * Constructs an internal node with given children, marking it as canonical if {@code canonico}
+   * holds and all the children are canonical.
+   *
+   * @param f List of child nodes to be assigned to this internal node
+   * @param canonico whether the node is the result of a simplification
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  Moltiplicazione(List<Nodo> f, boolean canonico) {
     Objects.requireNonNull(f, "the list of child nodes cannot be null");
     if (f.contains(null))
       throw new IllegalArgumentException("List of child nodes cannot contain null elements");
@@ -35,6 +58,9 @@ public class Moltiplicazione extends NodoInterno {
     NodoComparator comparator = new NodoComparator();
     Collections.sort(f, comparator);
     fattori = Collections.unmodifiableList(f);
+    impronta = Impronta.diNodoInterno(Impronta.MOLTIPLICAZIONE, fattori.iterator());
+    profondita = profondita(fattori);
+    this.canonico = canonico && f.stream().allMatch(Nodo::isCanonico);
   }
 
   /**
@@ -47,6 +73,21 @@ public class Moltiplicazione extends NodoInterno {
     return 3;
   }
 
+  @Override
+  public long impronta() {
+    return impronta;
+  }
+
+  @Override
+  public int profondita() {
+    return profondita;
+  }
+
+  @Override
+  public boolean isCanonico() {
+    return canonico;
+  }
+
   @Override
   public String tipo() {
     return "*";
@@ -62,6 +103,26 @@ public class Moltiplicazione extends NodoInterno {
     return visitor.visit(this);
   }
 
+  @Override
+  public <R> R accept(VisitorGenerico<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public int accept(VisitorInt visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long accept(VisitorLong visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public double accept(VisitorDouble visitor) {
+    return visitor.visit(this);
+  }
+
   @Override
   public Iterator<Nodo> iterator() {
     return Collections.unmodifiableList(fattori).iterator();
@@ -9,6 +9,34 @@ public interface Nodo {
    */
   public abstract int priority();
 
+  /**
+   * Returns the structural fingerprint of the node. The fingerprint is computed once, when the node
+   * is built, from its value or from the fingerprints of its children; structurally equal nodes
+   * have the same fingerprint, which does not change across executions.
+   *
+   * @return the 64-bit fingerprint of this node
+   */
+  long impronta();
+
+  /**
+   * Returns the depth of the node: 1 for a leaf, one more than the depth of its deepest child for
+   * an internal node. The depth is computed once, when the node is built, so that a visitor can
+   * decide in constant time whether the node is too deep to be visited recursively.
+   *
+   * @return the depth of this node, at least 1
+   */
+  int profondita();
+
+  /**
+   * Tells whether the node is known to be in canonical form, that is in the form produced by the
+   * simplification, which leaves it unchanged. Leaves are always canonical; an internal node is
+   * canonical only if it was built as the result of a simplification and all its children are
+   * canonical. A node that is not marked may still happen to be in canonical form.
+   *
+   * @return {@code true} if the node is known to be in canonical form
+   */
+  boolean isCanonico();
+
   /**
    * Accepts a visitor that operates on this node and returns a string result.
    *
@@ -24,4 +52,37 @@ public interface Nodo {
    * @return the resulting node after visiting this node
    */
   Nodo accept(VisitorNodo visitor);
+
+  /**
+   * Accepts a visitor that operates on this node and returns a result of any type.
+   *
+   * @param <R> the type of the result
+   * @param visitor the VisitorGenerico object visiting this node
+   * @return the result after visiting this node
+   */
+  <R> R accept(VisitorGenerico<R> visitor);
+
+  /**
+   * Accepts a visitor that operates on this node and returns an {@code int}.
+   *
+   * @param visitor the VisitorInt object visiting this node
+   * @return the resulting integer after visiting this node
+   */
+  int accept(VisitorInt visitor);
+
+  /**
+   * Accepts a visitor that operates on this node and returns a {@code long}.
+   *
+   * @param visitor the VisitorLong object visiting this node
+   * @return the resulting integer after visiting this node
+   */
+  long accept(VisitorLong visitor);
+
+  /**
+   * Accepts a visitor that operates on this node and returns a {@code double}.
+   *
+   * @param visitor the VisitorDouble object visiting this node
+   * @return the resulting number after visiting this node
+   */
+  double accept(VisitorDouble visitor);
 }
@@ -7,6 +7,9 @@ import java.util.*;
  * based on their class type. If nodes are of the same class, specific comparison methods are
  * invoked to determine their order. Nodes are ordered by their priority if they are not of the same
  * class.
+ *
+ * <p>The children of internal nodes are compared in order with an explicit stack, hence the depth
+ * of the nodes does not consume the call stack.
  */
 public class NodoComparator implements Comparator<Nodo> {
 
@@ -24,18 +27,60 @@ public class NodoComparator implements Comparator<Nodo> {
   @Override
   public int compare(Nodo o1, Nodo o2) {
     if (o1 == null || o2 == null) throw new NullPointerException("Cannot compare null objects");
+    // il confronto con una foglia non richiede di visitare figli
+    if (!(o1 instanceof NodoInterno && o2 instanceof NodoInterno)) {
+      return confronta(o1, o2, null, null);
+    }
+    // i figli delle coppie di nodi interni ancora da confrontare, dalla coppia più profonda: le
+    // coppie vengono confrontate in preordine, nello stesso ordine di una visita ricorsiva
+    Deque<Iterator<Nodo>> figli1 = new ArrayDeque<>();
+    Deque<Iterator<Nodo>> figli2 = new ArrayDeque<>();
+    int cmp = confronta(o1, o2, figli1, figli2);
+    while (cmp == 0 && !figli1.isEmpty()) {
+      Iterator<Nodo> it1 = figli1.peek();
+      Iterator<Nodo> it2 = figli2.peek();
+      if (it1.hasNext() && it2.hasNext()) {
+        cmp = confronta(it1.next(), it2.next(), figli1, figli2);
+      } else if (it1.hasNext()) {
+        return 1; // il primo nodo ha più figli del secondo
+      } else if (it2.hasNext()) {
+        return -1; // il secondo nodo ha più figli del primo
+      } else {
+        figli1.pop();
+        figli2.pop();
+      }
+    }
+    return cmp;
+  }
+
+  /**
+   * Compares two nodes without visiting their children: if they are internal nodes of the same
+   * class that are not known to be equal, their children are pushed to be compared in order.
+   *
+   * @param o1 the first node to compare
+   * @param o2 the second node to compare
+   * @param figli1 the children of the first nodes still to compare, not used if a node is a leaf
+   * @param figli2 the children of the second nodes still to compare, not used if a node is a leaf
+   * @return a negative integer, zero, or a positive integer if the first node is less than, equal
+   *     to (or to be decided by the children), or greater than the second node, respectively
+   */
+  private int confronta(
+      Nodo o1, Nodo o2, Deque<Iterator<Nodo>> figli1, Deque<Iterator<Nodo>> figli2) {
+    // un sottoalbero condiviso è uguale a sé stesso: non serve visitarlo
+    if (o1 == o2) return 0;
+    // nodi uguali hanno la stessa impronta: confrontarne i figli ripercorrerebbe i sottoalberi
+    // condivisi una volta per ogni cammino, mentre equals li confronta una volta sola
+    if (o1 instanceof NodoInterno && o1.impronta() == o2.impronta() && o1.equals(o2)) return 0;
 
     if (o1.getClass() == o2.getClass()) {
       if (o1 instanceof Razionale) {
         return compareRazionale((Razionale) o1, (Razionale) o2);
       } else if (o1 instanceof Simbolo) {
         return compareSimbolo((Simbolo) o1, (Simbolo) o2);
-      } else if (o1 instanceof Addizione) {
-        return compareNodiInterni((Addizione) o1, (Addizione) o2);
-      } else if (o1 instanceof Moltiplicazione) {
-        return compareNodiInterni((Moltiplicazione) o1, (Moltiplicazione) o2);
-      } else if (o1 instanceof Potenza) {
-        return compareNodiInterni((Potenza) o1, (Potenza) o2);
+      } else if (o1 instanceof NodoInterno) {
+        figli1.push(((NodoInterno) o1).iterator());
+        figli2.push(((NodoInterno) o2).iterator());
+        return 0;
       }
     }
     return Integer.compare(o1.priority(), o2.priority());
@@ -50,8 +95,7 @@ public class NodoComparator implements Comparator<Nodo> {
    *     than, equal to, or greater than the second Razionale node, respectively
    */
   private int compareRazionale(Razionale r1, Razionale r2) {
-    long diff = r1.num * r2.den - r2.num * r1.den;
-    return Long.compare(diff, 0);
+    return r1.compareTo(r2);
   }
 
   /**
@@ -65,35 +109,4 @@ public class NodoComparator implements Comparator<Nodo> {
   private int compareSimbolo(Simbolo s1, Simbolo s2) {
     return Character.compare(s1.x, s2.x);
   }
-
-  /**
-   * Compares two internal node types based on their childre node elements.
-   *
-   * @param n1 the first internal node to compare
-   * @param n2 the second internal node to compare
-   * @return a negative integer, zero, or a positive integer if the first internal node is less
-   *     than, equal to, or greater than the second internal node, respectively
-   */
-  private int compareNodiInterni(NodoInterno n1, NodoInterno n2) {
-    Iterator<Nodo> it1 = n1.iterator();
-    Iterator<Nodo> it2 = n2.iterator();
-
-    while (it1.hasNext() && it2.hasNext()) {
-      Nodo f1 = it1.next();
-      Nodo f2 = it2.next();
-
-      int cmp = compare(f1, f2);
-      if (cmp != 0) {
-        return cmp;
-      }
-    }
-    // If one iterator has remaining elements
-    if (it1.hasNext()) {
-      return 1; // a1 is longer than a2
-    } else if (it2.hasNext()) {
-      return -1; // a2 is longer than a1
-    }
-
-    return 0; // Both are equal
-  }
 }
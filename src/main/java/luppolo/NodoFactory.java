@@ -0,0 +1,166 @@
+package luppolo;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A concrete class that builds the nodes of an expression tree. Parsers and visitors create their
+ * nodes through a {@code NodoFactory} so that the construction strategy can be chosen by the
+ * caller: this class takes the leaves from the pools of {@link Razionale} and {@link Simbolo} and
+ * allocates a new internal node at every request, while subclasses (see {@link
+ * NodoFactoryCondivisa}) can return shared instances.
+ */
+public class NodoFactory {
+
+  /**
+   * Builds a {@code Razionale} with the given integer value.
+   *
+   * @param n the numerator
+   * @return a rational node representing {@code n}
+   */
+  public Razionale razionale(long n) {
+    return canonico(Razionale.of(n));
+  }
+
+  /**
+   * Builds a {@code Razionale} representing the fraction {@code n/d}.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return a rational node representing {@code n/d} in its simplest form
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public Razionale razionale(long n, long d) {
+    return canonico(Razionale.of(n, d));
+  }
+
+  /**
+   * Builds a {@code Razionale} representing the fraction {@code n/d} with arbitrary precision.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return a rational node representing {@code n/d} in its simplest form
+   * @throws NullPointerException if {@code n} or {@code d} is {@code null}
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public Razionale razionale(BigInteger n, BigInteger d) {
+    return canonico(Razionale.of(n, d));
+  }
+
+  /**
+   * Builds a {@code Razionale} from an integer literal of arbitrary length, or from a fraction
+   * {@code p/q} of two such literals.
+   *
+   * @param valore the literal
+   * @return a rational node representing {@code valore}
+   * @throws NullPointerException if {@code valore} is {@code null}
+   * @throws NumberFormatException if {@code valore} is not a valid integer or fraction literal
+   * @throws IllegalArgumentException if {@code valore} is a fraction with a zero denominator
+   */
+  public Razionale razionale(String valore) {
+    return canonico(Razionale.valueOf(valore));
+  }
+
+  /**
+   * Builds a {@code Simbolo} node.
+   *
+   * @param simbolo the character symbol
+   * @return a symbol node representing {@code simbolo}
+   * @throws IllegalArgumentException if simbolo is not a charachter between 'a' and 'z'
+   */
+  public Simbolo simbolo(char simbolo) {
+    return canonico(Simbolo.of(simbolo));
+  }
+
+  /**
+   * Builds an {@code Addizione} node with the given addends.
+   *
+   * @param f the addends
+   * @return an addition node
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  public Addizione addizione(List<Nodo> f) {
+    return canonico(new Addizione(f));
+  }
+
+  /**
+   * Builds a {@code Moltiplicazione} node with the given factors.
+   *
+   * @param f the factors
+   * @return a multiplication node
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  public Moltiplicazione moltiplicazione(List<Nodo> f) {
+    return canonico(new Moltiplicazione(f));
+  }
+
+  /**
+   * Builds a {@code Potenza} node with the given base and exponent.
+   *
+   * @param b base
+   * @param e exponent
+   * @return a power node
+   * @throws NullPointerException if b or e is {@code null};
+   */
+  public Potenza potenza(Nodo b, Razionale e) {
+    return canonico(new Potenza(b, e));
+  }
+
+  /**
+   * Builds an {@code Addizione} node that is the result of a simplification. The node is marked as
+   * canonical if all its children are canonical, so that simplifying it again costs nothing.
+   *
+   * @param f the addends, already simplified
+   * @return an addition node
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  public Addizione addizioneCanonica(List<Nodo> f) {
+    return canonico(new Addizione(f, true));
+  }
+
+  /**
+   * Builds a {@code Moltiplicazione} node that is the result of a simplification. The node is
+   * marked as canonical if all its children are canonical, so that simplifying it again costs
+   * nothing.
+   *
+   * @param f the factors, already simplified
+   * @return a multiplication node
+   * @throws NullPointerException if the f is {@code null}
+   * @throws IllegalArgumentException if f contains {@code null} values or if it has less then 2
+   *     elments
+   */
+  public Moltiplicazione moltiplicazioneCanonica(List<Nodo> f) {
+    return canonico(new Moltiplicazione(f, true));
+  }
+
+  /**
+   * Builds a {@code Potenza} node that is the result of a simplification. The node is marked as
+   * canonical if its base is canonical, so that simplifying it again costs nothing.
+   *
+   * @param b base, already simplified
+   * @param e exponent
+   * @return a power node
+   * @throws NullPointerException if b or e is {@code null};
+   */
+  public Potenza potenzaCanonica(Nodo b, Razionale e) {
+    return canonico(new Potenza(b, e, true));
+  }
+
+  /**
+   * Returns the instance that has to be handed out for a freshly built node. This implementation
+   * returns the node itself.
+   *
+   * @param <T> the type of the node
+   * @param nodo the freshly built node
+   * @return the node to be used in place of {@code nodo}
+   */
+  protected <T extends Nodo> T canonico(T nodo) {
+    return nodo;
+  }
+}
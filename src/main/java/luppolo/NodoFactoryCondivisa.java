@@ -0,0 +1,116 @@
+package luppolo;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe {@code NodoFactory} that performs <em>hash-consing</em>: for every structure it
+ * hands out a single canonical instance, so that structurally equal subtrees built through the same
+ * factory are shared and can be compared by reference.
+ *
+ * <p>Being in canonical form (see {@link Nodo#isCanonico()}) only depends on the structure of a
+ * node, hence the factory prefers the instances marked as canonical: a marked node replaces an
+ * equal unmarked one in the table, and an unmarked node is exchanged for an equal marked one.
+ *
+ * <p>The canonical instances are held through weak references, hence nodes that are no longer used
+ * anywhere else can be reclaimed by the garbage collector; the corresponding entries are purged
+ * from the table the next time the factory is used.
+ */
+public class NodoFactoryCondivisa extends NodoFactory {
+
+  /*
+   * AF: the canonical instance of a structure is the referent of the entry of `tabella` whose
+   * referent equals it; `coda` collects the entries whose referent has been reclaimed.
+   *
+   * RI: tabella and coda not null, every key of tabella is mapped to itself and is registered on
+   * coda.
+   */
+
+  /** The table of the canonical instances. */
+  private final ConcurrentMap<Riferimento, Riferimento> tabella = new ConcurrentHashMap<>();
+
+  /** The queue where the garbage collector enqueues the reclaimed entries. */
+  private final ReferenceQueue<Nodo> coda = new ReferenceQueue<>();
+
+  /**
+   * A weak reference to a node that is compared by the structure of its referent. The hash code is
+   * computed once, so that the entry can still be removed after its referent has been reclaimed.
+   */
+  private static final class Riferimento extends WeakReference<Nodo> {
+
+    /** The hash code of the referent. */
+    private final int hash;
+
+    /**
+     * Constructs a reference to the given node.
+     *
+     * @param nodo the referent
+     * @param coda the queue the reference is registered with
+     */
+    Riferimento(Nodo nodo, ReferenceQueue<Nodo> coda) {
+      super(nodo, coda);
+      hash = nodo.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) return true;
+      if (!(other instanceof Riferimento)) return false;
+      Riferimento otherRif = (Riferimento) other;
+      if (hash != otherRif.hash) return false;
+      Nodo nodo = get();
+      return nodo != null && nodo.equals(otherRif.get());
+    }
+  }
+
+  @Override
+  protected <T extends Nodo> T canonico(T nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    pulisci();
+    Riferimento nuovo = new Riferimento(nodo, coda);
+    Nodo condiviso;
+    do {
+      Riferimento esistente = tabella.putIfAbsent(nuovo, nuovo);
+      if (esistente == null) return nodo;
+      condiviso = esistente.get();
+      if (condiviso == null) {
+        // il nodo è stato raccolto tra la ricerca e la get: rimuovo la voce e riprovo
+        tabella.remove(esistente, esistente);
+      } else if (nodo.isCanonico() && !condiviso.isCanonico()) {
+        // preferisco l'istanza marcata come canonica; se la sostituzione fallisce riprovo
+        if (tabella.remove(esistente, esistente) && tabella.putIfAbsent(nuovo, nuovo) == null) {
+          return nodo;
+        }
+        condiviso = null;
+      }
+    } while (condiviso == null);
+    @SuppressWarnings("unchecked") // nodi uguali appartengono alla stessa classe
+    T res = (T) condiviso;
+    return res;
+  }
+
+  /**
+   * Returns the number of canonical instances currently held by this factory.
+   *
+   * @return the number of entries of the table
+   */
+  public int dimensione() {
+    pulisci();
+    return tabella.size();
+  }
+
+  /** Removes from the table the entries whose referent has been reclaimed. */
+  private void pulisci() {
+    for (Object r = coda.poll(); r != null; r = coda.poll()) {
+      tabella.remove(r, r);
+    }
+  }
+}
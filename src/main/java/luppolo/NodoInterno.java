@@ -1,6 +1,6 @@
 package luppolo;
 
-import java.util.Iterator;
+import java.util.*;
 import luppolo.rappresentazione.FormaLineare;
 
 /** Abstract class representing a generic internal node. */
@@ -14,38 +14,92 @@ public abstract class NodoInterno implements Nodo, Iterable<Nodo> {
    */
   public abstract String tipo();
 
+  /**
+   * Returns the depth of an internal node with the given children.
+   *
+   * @param figli the children of the node
+   * @return one more than the depth of the deepest child
+   */
+  static int profondita(List<Nodo> figli) {
+    int res = 0;
+    for (Nodo figlio : figli) res = Math.max(res, figlio.profondita());
+    return res + 1;
+  }
+
+  /**
+   * Returns the hash code of the node, derived from its structural fingerprint in constant time.
+   *
+   * @return the hash code of the node
+   */
   @Override
   public int hashCode() {
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + tipo().hashCode();
-
-    Iterator<Nodo> iterator = this.iterator();
-    while (iterator.hasNext()) {
-      result = prime * result + iterator.next().hashCode();
-    }
-    return result;
+    return Long.hashCode(impronta());
   }
 
+  /**
+   * Tells whether this node is structurally equal to another object. The children are compared
+   * with an explicit stack, and every pair of internal nodes is compared at most once, so that the
+   * cost is linear in the number of distinct pairs even when the nodes share their subexpressions.
+   *
+   * @param other the object to compare with
+   * @return {@code true} if {@code other} is a node with the same structure as this one
+   */
   @Override
   public boolean equals(Object other) {
+    if (this == other) return true;
     if (other == null) return false;
     if (!(other instanceof NodoInterno)) return false;
-    NodoInterno otherNodo = (NodoInterno) other;
-    if (!this.tipo().equals(otherNodo.tipo())) return false;
-
-    Iterator<Nodo> thisIterator = this.iterator();
-    Iterator<Nodo> otherIterator = otherNodo.iterator();
-    while (thisIterator.hasNext() && otherIterator.hasNext()) {
-      if (!thisIterator.next().equals(otherIterator.next())) {
-        return false;
+    // nodi con impronte diverse non possono essere uguali
+    if (impronta() != ((NodoInterno) other).impronta()) return false;
+
+    Set<Coppia> confrontate = new HashSet<>();
+    Deque<Coppia> daConfrontare = new ArrayDeque<>();
+    daConfrontare.push(new Coppia(this, (NodoInterno) other));
+    while (!daConfrontare.isEmpty()) {
+      Coppia coppia = daConfrontare.pop();
+      NodoInterno n1 = coppia.n1();
+      NodoInterno n2 = coppia.n2();
+      if (!n1.tipo().equals(n2.tipo())) return false;
+      if (!confrontate.add(coppia)) continue; // coppia già confrontata
+      Iterator<Nodo> it1 = n1.iterator();
+      Iterator<Nodo> it2 = n2.iterator();
+      while (it1.hasNext() && it2.hasNext()) {
+        Nodo f1 = it1.next();
+        Nodo f2 = it2.next();
+        if (f1 == f2) continue;
+        if (f1 instanceof NodoInterno && f2 instanceof NodoInterno) {
+          if (f1.impronta() != f2.impronta()) return false;
+          daConfrontare.push(new Coppia((NodoInterno) f1, (NodoInterno) f2));
+        } else if (!f1.equals(f2)) {
+          return false;
+        }
       }
+      if (it1.hasNext() || it2.hasNext()) return false;
     }
     return true;
   }
 
+  /**
+   * A pair of internal nodes under comparison, compared by the identity of its components.
+   *
+   * @param n1 the first node
+   * @param n2 the second node
+   */
+  private record Coppia(NodoInterno n1, NodoInterno n2) {
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Coppia && ((Coppia) other).n1 == n1 && ((Coppia) other).n2 == n2;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(n1) + System.identityHashCode(n2);
+    }
+  }
+
   @Override
   public String toString() {
-    return this.accept(new FormaLineare());
+    return new FormaLineare().rappresenta(this);
   }
 }
@@ -22,6 +22,15 @@ public class Potenza extends NodoInterno {
   /** the exponent of the power */
   private final Razionale esponente;
 
+  /** the structural fingerprint of the power */
+  private final long impronta;
+
+  /** the depth of the power */
+  private final int profondita;
+
+  /** whether the power is known to be in canonical form */
+  private final boolean canonico;
+
   /**
    * Constructs a Potenza node with given base and exponent
    *
@@ -30,10 +39,26 @@ public class Potenza extends NodoInterno {
    * @throws NullPointerException if b or e is {@code null};
    */
   public Potenza(Nodo b, Razionale e) {
+    this(b, e, false);
+  }
+
+  /**
+   * Constructs a Potenza node with given base and exponent, marking it as canonical if {@code
+   * canonico} holds and the base is canonical.
+   *
+   * @param b base
+   * @param e exponent
+   * @param canonico whether the node is the result of a simplification
+   * @throws NullPointerException if b or e is {@code null};
+   */
+  Potenza(Nodo b, Razionale e, boolean canonico) {
     Objects.requireNonNull(b, "the base of Potenza cannot be null");
     Objects.requireNonNull(e, "the exponent of Potenza cannot be {@code null}");
     base = b;
     esponente = e;
+    impronta = Impronta.diNodoInterno(Impronta.POTENZA, List.of(b, e).iterator());
+    profondita = b.profondita() + 1;
+    this.canonico = canonico && b.isCanonico();
   }
 
   /**
@@ -64,6 +89,21 @@ public class Potenza extends NodoInterno {
     return 2;
   }
 
+  @Override
+  public long impronta() {
+    return impronta;
+  }
+
+  @Override
+  public int profondita() {
+    return profondita;
+  }
+
+  @Override
+  public boolean isCanonico() {
+    return canonico;
+  }
+
   @Override
   public String tipo() {
     return "^";
@@ -79,6 +119,26 @@ public class Potenza extends NodoInterno {
     return visitor.visit(this);
   }
 
+  @Override
+  public <R> R accept(VisitorGenerico<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public int accept(VisitorInt visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long accept(VisitorLong visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public double accept(VisitorDouble visitor) {
+    return visitor.visit(this);
+  }
+
   @Override
   public Iterator<Nodo> iterator() {
     List<Nodo> figli = new ArrayList<>(Arrays.asList(base, esponente));
@@ -1,33 +1,88 @@
 package luppolo;
 
+import java.math.BigInteger;
+
 /**
  * An immutable concrete class that represents a rational number node. This class ensures that
  * rational numbers are manipulated in their simplest form.
+ *
+ * <p>Rational numbers have arbitrary precision. The numerator and the denominator are kept in two
+ * {@code long} fields as long as both fit, and the arithmetic operations work on them checking for
+ * overflow without allocating; only when a result does not fit the value is promoted to a pair of
+ * {@link BigInteger}s.
+ *
+ * <p>The instances with a small numerator and denominator are preallocated and shared: the static
+ * factories {@link #of(long)} and {@link #of(long, long)} return them instead of allocating a new
+ * object. The size of the pool can be configured with the system properties {@code
+ * luppolo.razionali.numeratore} and {@code luppolo.razionali.denominatore}.
  */
-public class Razionale implements Nodo {
+public class Razionale implements Nodo, Comparable<Razionale> {
 
   /*
-   * AF: A rational number represented by the fraction `num / den`, where:
-   *  -num is the numerator
-   *  -den is the denominator
+   * AF: A rational number represented by the fraction `num / den` if grandeNum is null, or by the
+   * fraction `grandeNum / grandeDen` otherwise, where:
+   *  -num (grandeNum) is the numerator
+   *  -den (grandeDen) is the denominator
    *  -The fraction is in its most simplified form
-   * A negative Razionale is one that has a negative num
+   * A negative Razionale is one that has a negative numerator
    *
    * RI:
-   * - den>0
-   * -The fraction `num / den` is in its simplest form
+   * - grandeNum and grandeDen are both null or both not null
+   * - if grandeNum is null: den>0 and num != Long.MIN_VALUE
+   * - if grandeNum is not null: grandeDen>0 and at least one of grandeNum, grandeDen does not fit
+   *   in (Long.MIN_VALUE, Long.MAX_VALUE] (num and den are then unused)
+   * -The fraction is in its simplest form
+   */
+
+  /** The numerator of <em>Razionale</em>, if it fits in a {@code long} */
+  private final long num;
+
+  /** The denominator of <em>Razionale</em>, if it fits in a {@code long} */
+  private final long den;
+
+  /** The numerator of <em>Razionale</em>, if it does not fit in a {@code long} */
+  private final BigInteger grandeNum;
+
+  /** The denominator of <em>Razionale</em>, if it does not fit in a {@code long} */
+  private final BigInteger grandeDen;
+
+  /** The structural fingerprint of <em>Razionale</em> */
+  private final long impronta;
+
+  /**
+   * The largest absolute value of the numerators of the pooled instances, read from the system
+   * property {@code luppolo.razionali.numeratore} (128 by default).
    */
+  private static final int POOL_NUMERATORE =
+      Math.max(0, Math.min(Integer.getInteger("luppolo.razionali.numeratore", 128), 1 << 16));
 
-  /** The numerator of <em>Razionale</em> */
-  public final long num;
+  /**
+   * The largest denominator of the pooled instances, read from the system property {@code
+   * luppolo.razionali.denominatore} (4 by default).
+   */
+  private static final int POOL_DENOMINATORE =
+      Math.max(1, Math.min(Integer.getInteger("luppolo.razionali.denominatore", 4), 1 << 8));
+
+  /**
+   * The pooled instances: the fraction {@code n/d} with {@code |n| <= POOL_NUMERATORE} and {@code 1
+   * <= d <= POOL_DENOMINATORE} is found at index {@code (d - 1) * (2 * POOL_NUMERATORE + 1) + n +
+   * POOL_NUMERATORE}. Fractions that are not in their simplest form share the instance of their
+   * simplest form.
+   */
+  private static final Razionale[] POOL = creaPool();
 
-  /** The numerator of <em>Razionale</em> */
-  public final long den;
+  /** The {@code Razionale} that represents 0. */
+  public static final Razionale ZERO = of(0);
+
+  /** The {@code Razionale} that represents 1. */
+  public static final Razionale UNO = of(1);
+
+  /** The {@code Razionale} that represents -1. */
+  public static final Razionale MENO_UNO = of(-1);
 
   /** Constructs a {@code Razionale} that rappresents 0 */
   public Razionale() {
-    num = 0;
-    den = 1;
+    this(0);
   }
 
   /**
@@ -36,8 +91,7 @@ public class Razionale implements Nodo {
    * @param n the numerator to be rapresented
    */
   public Razionale(long n) {
-    num = n;
-    den = 1;
+    this(n, 1);
   }
 
   /**
@@ -49,26 +103,319 @@ public class Razionale implements Nodo {
    */
   public Razionale(long n, long d) {
     if (d == 0) throw new IllegalArgumentException("Denominator cannot be zero");
-    long mcd = mcd(Math.abs(n), Math.abs(d));
-    if (d < 0) {
-      num = -n / mcd;
-      den = -d / mcd;
+    if (n == Long.MIN_VALUE || d == Long.MIN_VALUE) {
+      // il valore assoluto non è rappresentabile: passo alla precisione arbitraria
+      BigInteger[] frazione = normalizza(BigInteger.valueOf(n), BigInteger.valueOf(d));
+      BigInteger[] grandi = grandi(frazione[0], frazione[1]);
+      num = grandi == null ? frazione[0].longValue() : 0;
+      den = grandi == null ? frazione[1].longValue() : 1;
+      grandeNum = grandi == null ? null : grandi[0];
+      grandeDen = grandi == null ? null : grandi[1];
     } else {
-      num = n / mcd;
-      den = d / mcd;
+      long mcd = mcd(Math.abs(n), Math.abs(d));
+      if (d < 0) {
+        num = -n / mcd;
+        den = -d / mcd;
+      } else {
+        num = n / mcd;
+        den = d / mcd;
+      }
+      grandeNum = null;
+      grandeDen = null;
+    }
+    impronta = calcolaImpronta();
+  }
+
+  /**
+   * Constructs a {@code Razionale} that represents a fraction with arbitrary precision.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @throws NullPointerException if {@code n} or {@code d} is {@code null}
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public Razionale(BigInteger n, BigInteger d) {
+    if (n == null || d == null) throw new NullPointerException("the fraction cannot be null");
+    if (d.signum() == 0) throw new IllegalArgumentException("Denominator cannot be zero");
+    BigInteger[] frazione = normalizza(n, d);
+    BigInteger[] grandi = grandi(frazione[0], frazione[1]);
+    num = grandi == null ? frazione[0].longValue() : 0;
+    den = grandi == null ? frazione[1].longValue() : 1;
+    grandeNum = grandi == null ? null : grandi[0];
+    grandeDen = grandi == null ? null : grandi[1];
+    impronta = calcolaImpronta();
+  }
+
+  /**
+   * Returns a {@code Razionale} with the given integer value. Small values are taken from a pool of
+   * preallocated instances, hence this method should be preferred to the constructor.
+   *
+   * @param n the numerator
+   * @return a {@code Razionale} representing {@code n}
+   */
+  public static Razionale of(long n) {
+    if (n >= -POOL_NUMERATORE && n <= POOL_NUMERATORE) return POOL[(int) n + POOL_NUMERATORE];
+    return new Razionale(n);
+  }
+
+  /**
+   * Returns a {@code Razionale} that represents a fraction. Fractions with a small numerator and
+   * denominator are taken from a pool of preallocated instances, hence this method should be
+   * preferred to the constructor.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return a {@code Razionale} representing {@code n/d} in its simplest form
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public static Razionale of(long n, long d) {
+    if (n >= -POOL_NUMERATORE && n <= POOL_NUMERATORE) {
+      if (d >= 1 && d <= POOL_DENOMINATORE) return POOL[indicePool(n, d)];
+      if (d <= -1 && d >= -POOL_DENOMINATORE) return POOL[indicePool(-n, -d)];
+    }
+    return new Razionale(n, d);
+  }
+
+  /**
+   * Returns a {@code Razionale} that represents a fraction with arbitrary precision. Fractions with
+   * a small numerator and denominator are taken from a pool of preallocated instances.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return a {@code Razionale} representing {@code n/d} in its simplest form
+   * @throws NullPointerException if {@code n} or {@code d} is {@code null}
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public static Razionale of(BigInteger n, BigInteger d) {
+    if (n != null && d != null && n.bitLength() < 64 && d.bitLength() < 64) {
+      return of(n.longValue(), d.longValue());
+    }
+    return new Razionale(n, d);
+  }
+
+  /**
+   * Returns the index of a pooled fraction.
+   *
+   * @param n the numerator, {@code |n| <= POOL_NUMERATORE}
+   * @param d the denominator, {@code 1 <= d <= POOL_DENOMINATORE}
+   * @return the index of {@code n/d} in {@code POOL}
+   */
+  private static int indicePool(long n, long d) {
+    return (int) ((d - 1) * (2 * POOL_NUMERATORE + 1) + n + POOL_NUMERATORE);
+  }
+
+  /**
+   * Builds the pool of the preallocated instances.
+   *
+   * @return the pool
+   */
+  private static Razionale[] creaPool() {
+    Razionale[] pool = new Razionale[(2 * POOL_NUMERATORE + 1) * POOL_DENOMINATORE];
+    for (int d = 1; d <= POOL_DENOMINATORE; d++) {
+      for (int n = -POOL_NUMERATORE; n <= POOL_NUMERATORE; n++) {
+        long g = mcd(Math.abs(n), d);
+        // le frazioni non ridotte condividono l'istanza già creata per la loro forma più semplice
+        pool[indicePool(n, d)] = g == 1 ? new Razionale(n, d) : pool[indicePool(n / g, d / g)];
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Parses an integer literal of arbitrary length, or a fraction {@code p/q} of two such literals.
+   *
+   * @param s the string to parse
+   * @return the {@code Razionale} represented by {@code s}
+   * @throws NullPointerException if {@code s} is {@code null}
+   * @throws NumberFormatException if {@code s} is not a valid integer or fraction
+   * @throws IllegalArgumentException if the denominator is zero
+   */
+  public static Razionale valueOf(String s) {
+    int barra = s.indexOf('/');
+    if (barra >= 0) {
+      return of(intero(s.substring(0, barra)), intero(s.substring(barra + 1)));
+    }
+    // fino a 18 cifre il valore sta sicuramente in un long
+    if (s.length() <= 18) return of(Long.parseLong(s));
+    return new Razionale(new BigInteger(s), BigInteger.ONE);
+  }
+
+  /**
+   * Parses an integer literal of arbitrary length.
+   *
+   * @param s the string to parse
+   * @return the integer represented by {@code s}
+   * @throws NumberFormatException if {@code s} is not a valid integer
+   */
+  private static BigInteger intero(String s) {
+    return s.length() <= 18 ? BigInteger.valueOf(Long.parseLong(s)) : new BigInteger(s);
+  }
+
+  /**
+   * Reduces a fraction to its simplest form with a positive denominator.
+   *
+   * @param n the numerator
+   * @param d the denominator, not zero
+   * @return an array containing the numerator and the denominator of the reduced fraction
+   */
+  private static BigInteger[] normalizza(BigInteger n, BigInteger d) {
+    BigInteger mcd = n.gcd(d);
+    BigInteger rn = n.divide(mcd);
+    BigInteger rd = d.divide(mcd);
+    if (rd.signum() < 0) {
+      rn = rn.negate();
+      rd = rd.negate();
     }
+    return new BigInteger[] {rn, rd};
+  }
+
+  /**
+   * Returns the given fraction if it has to be represented with arbitrary precision.
+   *
+   * @param n the numerator
+   * @param d the denominator
+   * @return {@code null} if both {@code n} and {@code d} fit in the {@code long} fields, otherwise
+   *     an array containing {@code n} and {@code d}
+   */
+  private static BigInteger[] grandi(BigInteger n, BigInteger d) {
+    return staInLong(n) && staInLong(d) ? null : new BigInteger[] {n, d};
+  }
+
+  /**
+   * Checks whether a number can be stored in the {@code long} fields.
+   *
+   * @param b the number to check
+   * @return {@code true} if {@code b} is in (Long.MIN_VALUE, Long.MAX_VALUE]
+   */
+  private static boolean staInLong(BigInteger b) {
+    return b.bitLength() < 64 && b.longValue() != Long.MIN_VALUE;
   }
 
   /**
    * Calculates the greatest common divisor of two numbers.
    *
-   * @param a the first number
-   * @param b the second number
+   * @param a the first number, not negative
+   * @param b the second number, not negative
    * @return the GCD of {@code a} and {@code b}
    */
-  private long mcd(long a, long b) {
-    if (b == 0) return a;
-    return mcd(b, a % b);
+  private static long mcd(long a, long b) {
+    long x = a;
+    long y = b;
+    while (y != 0) {
+      long r = x % y;
+      x = y;
+      y = r;
+    }
+    return x;
+  }
+
+  /**
+   * Adds two numbers if the sum fits in the {@code long} fields.
+   *
+   * @param a the first addend
+   * @param b the second addend
+   * @return the sum, or {@code Long.MIN_VALUE} if it does not fit
+   */
+  private static long sommaEsatta(long a, long b) {
+    long r = a + b;
+    if (((a ^ r) & (b ^ r)) < 0) return Long.MIN_VALUE;
+    return r;
+  }
+
+  /**
+   * Tells whether this number is stored in the {@code long} fields.
+   *
+   * @return {@code true} if both the numerator and the denominator fit in a {@code long}
+   */
+  public boolean isLong() {
+    return grandeNum == null;
+  }
+
+  /**
+   * Returns the numerator as a {@code long}.
+   *
+   * @return the numerator
+   * @throws ArithmeticException if the numerator does not fit in a {@code long}
+   */
+  public long num() {
+    if (grandeNum != null) return grandeNum.longValueExact();
+    return num;
+  }
+
+  /**
+   * Returns the denominator as a {@code long}.
+   *
+   * @return the denominator
+   * @throws ArithmeticException if the denominator does not fit in a {@code long}
+   */
+  public long den() {
+    if (grandeDen != null) return grandeDen.longValueExact();
+    return den;
+  }
+
+  /**
+   * Returns the numerator with arbitrary precision.
+   *
+   * @return the numerator
+   */
+  public BigInteger getNumeratore() {
+    return grandeNum != null ? grandeNum : BigInteger.valueOf(num);
+  }
+
+  /**
+   * Returns the denominator with arbitrary precision.
+   *
+   * @return the denominator
+   */
+  public BigInteger getDenominatore() {
+    return grandeDen != null ? grandeDen : BigInteger.valueOf(den);
+  }
+
+  /**
+   * Returns the sign of this number.
+   *
+   * @return -1, 0 or 1 if this number is negative, zero or positive
+   */
+  public int signum() {
+    return grandeNum != null ? grandeNum.signum() : Long.signum(num);
+  }
+
+  /**
+   * Tells whether this number is zero.
+   *
+   * @return {@code true} if this number is 0
+   */
+  public boolean isZero() {
+    return grandeNum == null && num == 0;
+  }
+
+  /**
+   * Tells whether this number is one.
+   *
+   * @return {@code true} if this number is 1
+   */
+  public boolean isUno() {
+    return grandeNum == null && num == 1 && den == 1;
+  }
+
+  /**
+   * Tells whether this number is an integer.
+   *
+   * @return {@code true} if the denominator is 1
+   */
+  public boolean isIntero() {
+    return grandeNum == null ? den == 1 : BigInteger.ONE.equals(grandeDen);
+  }
+
+  /**
+   * Returns the reciprocal of this number.
+   *
+   * @return the reciprocal of this {@code Razionale}
+   * @throws IllegalArgumentException if this number is zero
+   */
+  public Razionale inverso() {
+    if (grandeNum != null) return new Razionale(grandeDen, grandeNum);
+    return of(den, num);
   }
 
   /**
@@ -78,12 +425,20 @@ public class Razionale implements Nodo {
    * @return the moltiplication of the two {@code Razionale} numbers
    */
   public Razionale moltRazionale(Razionale otherF) {
-    if (this.num == 0 || otherF.num == 0) return new Razionale();
-    if (this.num == this.den) return otherF;
-    if (otherF.num == otherF.den) return this;
-    long mn = this.num * otherF.num;
-    long md = this.den * otherF.den;
-    return new Razionale(mn, md);
+    if (this.isZero() || otherF.isZero()) return ZERO;
+    if (this.isUno()) return otherF;
+    if (otherF.isUno()) return this;
+    if (this.grandeNum == null && otherF.grandeNum == null) {
+      // semplifico in croce, così il risultato è già ridotto e i fattori restano piccoli
+      long g1 = mcd(Math.abs(this.num), otherF.den);
+      long g2 = mcd(Math.abs(otherF.num), this.den);
+      long mn = Aritmetica.prodottoEsatto(this.num / g1, otherF.num / g2);
+      long md = Aritmetica.prodottoEsatto(this.den / g2, otherF.den / g1);
+      if (mn != Aritmetica.NESSUNO && md != Aritmetica.NESSUNO) return of(mn, md);
+    }
+    return new Razionale(
+        this.getNumeratore().multiply(otherF.getNumeratore()),
+        this.getDenominatore().multiply(otherF.getDenominatore()));
   }
 
   /**
@@ -93,62 +448,94 @@ public class Razionale implements Nodo {
    * @return the sum of the two {@code Razionale}
    */
   public Razionale somma(Razionale otherF) {
-    if (this.num == 0) return new Razionale(otherF.num, otherF.den * this.den);
-    if (otherF.num == 0) return new Razionale(this.num, otherF.den * this.den);
-    long sd = otherF.den * this.den;
-    long sn = (this.num * otherF.den) + (this.den * otherF.num);
-    return new Razionale(sn, sd);
+    if (this.isZero()) return otherF;
+    if (otherF.isZero()) return this;
+    if (this.grandeNum == null && otherF.grandeNum == null) {
+      // uso il minimo comune multiplo dei denominatori
+      long g = mcd(this.den, otherF.den);
+      long sd = Aritmetica.prodottoEsatto(this.den, otherF.den / g);
+      long a = Aritmetica.prodottoEsatto(this.num, otherF.den / g);
+      long b = Aritmetica.prodottoEsatto(otherF.num, this.den / g);
+      if (sd != Aritmetica.NESSUNO && a != Aritmetica.NESSUNO && b != Aritmetica.NESSUNO) {
+        long sn = sommaEsatta(a, b);
+        if (sn != Aritmetica.NESSUNO) return of(sn, sd);
+      }
+    }
+    return new Razionale(
+        this.getNumeratore()
+            .multiply(otherF.getDenominatore())
+            .add(otherF.getNumeratore().multiply(this.getDenominatore())),
+        this.getDenominatore().multiply(otherF.getDenominatore()));
   }
 
   /**
-   * Calculates the r-th root of the rational number.
+   * Compares the value of this {@code Razionale} with the value of another one.
+   *
+   * @param otherF the {@code Razionale} to compare with
+   * @return a negative integer, zero, or a positive integer if this number is less than, equal to,
+   *     or greater than {@code otherF}
+   */
+  @Override
+  public int compareTo(Razionale otherF) {
+    if (this.grandeNum == null && otherF.grandeNum == null) {
+      // confronto i prodotti in croce su 128 bit
+      long a = this.num * otherF.den;
+      long b = otherF.num * this.den;
+      long aAlto = Math.multiplyHigh(this.num, otherF.den);
+      long bAlto = Math.multiplyHigh(otherF.num, this.den);
+      if (aAlto != bAlto) return Long.compare(aAlto, bAlto);
+      return Long.compareUnsigned(a, b);
+    }
+    return this.getNumeratore()
+        .multiply(otherF.getDenominatore())
+        .compareTo(otherF.getNumeratore().multiply(this.getDenominatore()));
+  }
+
+  /**
+   * Calculates the r-th root of the rational number, using exact integer arithmetic.
    *
    * @param r The root to calculate.
    * @return The r-th root of the {@code Razionale} number if it exists, otherwise {@code null}.
-   * @throws IllegalArgumentException If attempting to find an even root of a negative number.
+   * @throws IllegalArgumentException If attempting to find an even root of a negative number, or
+   *     if {@code r} is not positive.
    */
   public Razionale radice(long r) {
-    if (this.num < 0 && r % 2 == 0) {
+    if (this.signum() < 0 && r % 2 == 0) {
       throw new IllegalArgumentException("Non esiste una radice reale di un numero negativo");
     }
-
-    double rootNum = Math.pow(Math.abs(this.num), 1.0 / r);
-    double rootDen = Math.pow(this.den, 1.0 / r);
-
-    long intRootNum = Math.round(rootNum);
-    long intRootDen = Math.round(rootDen);
-
-    double epsilon = 1e-9; // tolleranza per il confronto delle radici
-
-    if (Math.abs(Math.pow(intRootNum, r) - Math.abs(this.num)) < epsilon
-        && Math.abs(Math.pow(intRootDen, r) - this.den) < epsilon) {
-      if (this.num < 0 && r % 2 != 0) {
-        intRootNum = -intRootNum; // radice dispari di un numero negativo
-      }
-      return new Razionale(intRootNum, intRootDen);
+    if (grandeNum == null) {
+      long rootNum = Aritmetica.radiceEsatta(Math.abs(num), r);
+      if (rootNum == Aritmetica.NESSUNO) return null; // Indica che non esiste una radice intera
+      long rootDen = Aritmetica.radiceEsatta(den, r);
+      if (rootDen == Aritmetica.NESSUNO) return null;
+      return of(num < 0 ? -rootNum : rootNum, rootDen); // radice dispari di un negativo
     }
-    return null; // Indica che non esiste una radice intera
+    BigInteger rootNum = Aritmetica.radiceEsatta(grandeNum.abs(), r);
+    if (rootNum == null) return null;
+    BigInteger rootDen = Aritmetica.radiceEsatta(grandeDen, r);
+    if (rootDen == null) return null;
+    return new Razionale(grandeNum.signum() < 0 ? rootNum.negate() : rootNum, rootDen);
   }
 
   /**
-   * Raises the {@code Razionale} number to the power of the given exponent.
+   * Raises the {@code Razionale} number to the power of the given exponent, by repeated squaring.
    *
    * @param exponent Exponent to raise the rational number to.
    * @return Result of raising the {@code Razionale} number to the exponent as a simplified rational
    *     number.
+   * @throws ArithmeticException if the result is too large to be represented
    */
   public Razionale power(Razionale exponent) {
-    long oldNum = this.num;
-    long oldDen = this.den;
-
-    if (exponent.num < 0) {
-      oldNum = this.den;
-      oldDen = this.num;
+    Razionale base = exponent.signum() < 0 ? this.inverso() : this;
+    long k = exponent.getNumeratore().divide(exponent.getDenominatore()).abs().longValueExact();
+    if (base.grandeNum == null) {
+      // numeratore e denominatore sono coprimi, quindi lo sono anche le loro potenze
+      long pn = Aritmetica.potenzaEsatta(base.num, k);
+      long pd = Aritmetica.potenzaEsatta(base.den, k);
+      if (pn != Aritmetica.NESSUNO && pd != Aritmetica.NESSUNO) return of(pn, pd);
     }
-
-    long newNum = (long) Math.pow(oldNum, Math.abs(exponent.num / exponent.den));
-    long newDen = (long) Math.pow(oldDen, Math.abs(exponent.num / exponent.den));
-    return new Razionale(newNum, newDen);
+    return new Razionale(
+        Aritmetica.potenza(base.getNumeratore(), k), Aritmetica.potenza(base.getDenominatore(), k));
   }
 
   /**
@@ -171,13 +558,81 @@ public class Razionale implements Nodo {
     return visitor.visit(this);
   }
 
+  @Override
+  public <R> R accept(VisitorGenerico<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public int accept(VisitorInt visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long accept(VisitorLong visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public double accept(VisitorDouble visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long impronta() {
+    return impronta;
+  }
+
+  /**
+   * Returns the depth of the node; leaves have depth 1.
+   *
+   * @return 1
+   */
+  @Override
+  public int profondita() {
+    return 1;
+  }
+
+  /**
+   * Tells whether the node is known to be in canonical form; leaves always are.
+   *
+   * @return {@code true}
+   */
+  @Override
+  public boolean isCanonico() {
+    return true;
+  }
+
+  /**
+   * Computes the fingerprint of this number from its numerator and denominator.
+   *
+   * @return the fingerprint of this number
+   */
+  private long calcolaImpronta() {
+    if (grandeNum == null) {
+      return Impronta.combina(Impronta.combina(Impronta.RAZIONALE, num), den);
+    }
+    return Impronta.combina(
+        Impronta.combina(Impronta.RAZIONALE, piega(grandeNum)), piega(grandeDen));
+  }
+
+  /**
+   * Folds the two's complement representation of an arbitrary precision number into 64 bits.
+   *
+   * @param b the number to fold
+   * @return the fingerprint of {@code b}
+   */
+  private static long piega(BigInteger b) {
+    long h = b.bitLength();
+    for (int i = 0; i < b.bitLength(); i += 64) {
+      h = Impronta.combina(h, b.shiftRight(i).longValue());
+    }
+    return h;
+  }
+
   @Override
   public int hashCode() {
-    final int prime = 35;
-    int result = 1;
-    result = prime * result + Long.hashCode(num);
-    result = prime * result + Long.hashCode(den);
-    return result;
+    return Long.hashCode(impronta);
   }
 
   @Override
@@ -185,12 +640,19 @@ public class Razionale implements Nodo {
     if (other == null) return false;
     if (!(other instanceof Razionale)) return false;
     Razionale otherNodo = (Razionale) other;
-    if (num != otherNodo.num || den != otherNodo.den) return false;
-    return true;
+    if (impronta != otherNodo.impronta) return false;
+    if (grandeNum == null || otherNodo.grandeNum == null) {
+      // la rappresentazione è unica: un valore grande non è mai uguale a uno piccolo
+      return grandeNum == otherNodo.grandeNum && num == otherNodo.num && den == otherNodo.den;
+    }
+    return grandeNum.equals(otherNodo.grandeNum) && grandeDen.equals(otherNodo.grandeDen);
   }
 
   @Override
   public String toString() {
+    if (grandeNum != null) {
+      return grandeNum + (BigInteger.ONE.equals(grandeDen) ? "" : "/" + grandeDen);
+    }
     return String.valueOf(num) + (den == 1 ? "" : "/" + String.valueOf(den));
   }
 }
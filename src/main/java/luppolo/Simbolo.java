@@ -1,6 +1,9 @@
 package luppolo;
 
-/** An immutable concrete class, represents a symbolic node in an expression tree. */
+/**
+ * An immutable concrete class, represents a symbolic node in an expression tree. The 26 symbols are
+ * preallocated and shared through the static factory {@link #of(char)}.
+ */
 public class Simbolo implements Nodo {
 
   /*
@@ -11,6 +14,16 @@ public class Simbolo implements Nodo {
   /** The character symbol represented by this node. */
   public final char x;
 
+  /** The structural fingerprint of the symbol. */
+  private final long impronta;
+
+  /** The preallocated symbols, indexed by {@code x - 'a'}. */
+  private static final Simbolo[] SIMBOLI = new Simbolo['z' - 'a' + 1];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) SIMBOLI[c - 'a'] = new Simbolo(c);
+  }
+
   /**
    * Constructs a new {@code Simbolo} with the specified character symbol.
    *
@@ -21,6 +34,21 @@ public class Simbolo implements Nodo {
     if (simbolo > 'z' || simbolo < 'a')
       throw new IllegalArgumentException("Simbolo charachter must be between 'a' and 'z'");
     this.x = simbolo;
+    impronta = Impronta.combina(Impronta.SIMBOLO, simbolo);
+  }
+
+  /**
+   * Returns the {@code Simbolo} with the specified character symbol. The instances are
+   * preallocated, hence this method should be preferred to the constructor.
+   *
+   * @param simbolo the character symbol
+   * @return the shared node representing {@code simbolo}
+   * @throws IllegalArgumentException if simbolo is not a charachter between 'a' and 'z'
+   */
+  public static Simbolo of(char simbolo) {
+    if (simbolo > 'z' || simbolo < 'a')
+      throw new IllegalArgumentException("Simbolo charachter must be between 'a' and 'z'");
+    return SIMBOLI[simbolo - 'a'];
   }
 
   @Override
@@ -48,9 +76,54 @@ public class Simbolo implements Nodo {
     return visitor.visit(this);
   }
 
+  @Override
+  public <R> R accept(VisitorGenerico<R> visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public int accept(VisitorInt visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long accept(VisitorLong visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public double accept(VisitorDouble visitor) {
+    return visitor.visit(this);
+  }
+
+  @Override
+  public long impronta() {
+    return impronta;
+  }
+
+  /**
+   * Returns the depth of the node; leaves have depth 1.
+   *
+   * @return 1
+   */
+  @Override
+  public int profondita() {
+    return 1;
+  }
+
+  /**
+   * Tells whether the node is known to be in canonical form; leaves always are.
+   *
+   * @return {@code true}
+   */
+  @Override
+  public boolean isCanonico() {
+    return true;
+  }
+
   @Override
   public int hashCode() {
-    return Character.hashCode(x);
+    return Long.hashCode(impronta);
   }
 
   @Override
@@ -0,0 +1,54 @@
+package luppolo;
+
+/**
+ * The VisitorDouble interface represents a visitor pattern for nodes whose visits return a {@code
+ * double}. Implementations of this interface can evaluate an expression numerically without boxing
+ * the results.
+ */
+public interface VisitorDouble {
+
+  /**
+   * Visits a rational number node
+   *
+   * @param razionale the rational number node to visit
+   * @return the resulting number of the visit
+   * @throws NullPointerException if {@code razionale} is {@code null}
+   */
+  double visit(Razionale razionale) throws NullPointerException;
+
+  /**
+   * Visits a symbol node
+   *
+   * @param simbolo the symbol node to visit
+   * @return the resulting number of the visit
+   * @throws NullPointerException if {@code simbolo} is {@code null}
+   */
+  double visit(Simbolo simbolo) throws NullPointerException;
+
+  /**
+   * Visits an addition node
+   *
+   * @param addizione the addition node to visit
+   * @return the resulting number of the visit
+   * @throws NullPointerException if {@code addizione} is {@code null}
+   */
+  double visit(Addizione addizione) throws NullPointerException;
+
+  /**
+   * Visits a multiplication node
+   *
+   * @param moltiplicazione the multiplication node to visit
+   * @return the resulting number of the visit
+   * @throws NullPointerException if {@code moltiplicazione} is {@code null}
+   */
+  double visit(Moltiplicazione moltiplicazione) throws NullPointerException;
+
+  /**
+   * Visits a power node
+   *
+   * @param potenza the power node to visit
+   * @return the resulting number of the visit
+   * @throws NullPointerException if {@code potenza} is {@code null}
+   */
+  double visit(Potenza potenza) throws NullPointerException;
+}
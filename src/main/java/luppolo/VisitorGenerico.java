@@ -0,0 +1,56 @@
+package luppolo;
+
+/**
+ * The VisitorGenerico interface represents a visitor pattern for nodes whose visits return a value
+ * of any type. Implementations of this interface can compute results specific to each node type,
+ * such as a collection of the symbols of an expression, without encoding them as strings or nodes.
+ *
+ * @param <R> the type of the result of the visits
+ */
+public interface VisitorGenerico<R> {
+
+  /**
+   * Visits a rational number node
+   *
+   * @param razionale the rational number node to visit
+   * @return the result of the visit
+   * @throws NullPointerException if {@code razionale} is {@code null}
+   */
+  R visit(Razionale razionale) throws NullPointerException;
+
+  /**
+   * Visits a symbol node
+   *
+   * @param simbolo the symbol node to visit
+   * @return the result of the visit
+   * @throws NullPointerException if {@code simbolo} is {@code null}
+   */
+  R visit(Simbolo simbolo) throws NullPointerException;
+
+  /**
+   * Visits an addition node
+   *
+   * @param addizione the addition node to visit
+   * @return the result of the visit
+   * @throws NullPointerException if {@code addizione} is {@code null}
+   */
+  R visit(Addizione addizione) throws NullPointerException;
+
+  /**
+   * Visits a multiplication node
+   *
+   * @param moltiplicazione the multiplication node to visit
+   * @return the result of the visit
+   * @throws NullPointerException if {@code moltiplicazione} is {@code null}
+   */
+  R visit(Moltiplicazione moltiplicazione) throws NullPointerException;
+
+  /**
+   * Visits a power node
+   *
+   * @param potenza the power node to visit
+   * @return the result of the visit
+   * @throws NullPointerException if {@code potenza} is {@code null}
+   */
+  R visit(Potenza potenza) throws NullPointerException;
+}
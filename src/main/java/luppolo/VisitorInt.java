@@ -0,0 +1,54 @@
+package luppolo;
+
+/**
+ * The VisitorInt interface represents a visitor pattern for nodes whose visits return an {@code
+ * int}. Implementations of this interface can compute counts and measures specific to each node
+ * type, such as the number of nodes or the depth of an expression, without boxing the results.
+ */
+public interface VisitorInt {
+
+  /**
+   * Visits a rational number node
+   *
+   * @param razionale the rational number node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code razionale} is {@code null}
+   */
+  int visit(Razionale razionale) throws NullPointerException;
+
+  /**
+   * Visits a symbol node
+   *
+   * @param simbolo the symbol node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code simbolo} is {@code null}
+   */
+  int visit(Simbolo simbolo) throws NullPointerException;
+
+  /**
+   * Visits an addition node
+   *
+   * @param addizione the addition node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code addizione} is {@code null}
+   */
+  int visit(Addizione addizione) throws NullPointerException;
+
+  /**
+   * Visits a multiplication node
+   *
+   * @param moltiplicazione the multiplication node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code moltiplicazione} is {@code null}
+   */
+  int visit(Moltiplicazione moltiplicazione) throws NullPointerException;
+
+  /**
+   * Visits a power node
+   *
+   * @param potenza the power node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code potenza} is {@code null}
+   */
+  int visit(Potenza potenza) throws NullPointerException;
+}
@@ -0,0 +1,55 @@
+package luppolo;
+
+/**
+ * The VisitorLong interface represents a visitor pattern for nodes whose visits return a {@code
+ * long}. Implementations of this interface can compute counts and measures that may exceed the
+ * range of an {@code int}, such as the size of the representation of an expression, without boxing
+ * the results.
+ */
+public interface VisitorLong {
+
+  /**
+   * Visits a rational number node
+   *
+   * @param razionale the rational number node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code razionale} is {@code null}
+   */
+  long visit(Razionale razionale) throws NullPointerException;
+
+  /**
+   * Visits a symbol node
+   *
+   * @param simbolo the symbol node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code simbolo} is {@code null}
+   */
+  long visit(Simbolo simbolo) throws NullPointerException;
+
+  /**
+   * Visits an addition node
+   *
+   * @param addizione the addition node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code addizione} is {@code null}
+   */
+  long visit(Addizione addizione) throws NullPointerException;
+
+  /**
+   * Visits a multiplication node
+   *
+   * @param moltiplicazione the multiplication node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code moltiplicazione} is {@code null}
+   */
+  long visit(Moltiplicazione moltiplicazione) throws NullPointerException;
+
+  /**
+   * Visits a power node
+   *
+   * @param potenza the power node to visit
+   * @return the resulting integer of the visit
+   * @throws NullPointerException if {@code potenza} is {@code null}
+   */
+  long visit(Potenza potenza) throws NullPointerException;
+}
@@ -0,0 +1,263 @@
+package luppolo.costruzione;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.*;
+import luppolo.*;
+
+/**
+ * A reader of expressions in the compact binary format described by {@link FormatoBinario}. Every
+ * call of {@link #leggi()} reads the next expression from the source, a stream or a buffer, and
+ * builds its nodes through a {@link NodoFactory}; a back-reference is resolved to the very node
+ * built for the subexpression it refers to, so that repeated subexpressions are shared. The
+ * expression is read with an explicit stack.
+ *
+ * <p>The stream is read one byte at a time, hence it should be buffered. Instances are not
+ * thread-safe.
+ */
+public final class LetturaBinaria {
+
+  /*
+   * AF: the expressions are read from sorgente if it is not null, from buffer otherwise, and built
+   * through factory.
+   *
+   * RI: exactly one of sorgente and buffer is not null, factory not null.
+   */
+
+  /** The stream the expressions are read from, or {@code null}. */
+  private final InputStream sorgente;
+
+  /** The buffer the expressions are read from, or {@code null}. */
+  private final ByteBuffer buffer;
+
+  /** The factory used to build the nodes. */
+  private final NodoFactory factory;
+
+  /**
+   * A node whose children are being read.
+   *
+   * @param codice the opcode of the node
+   * @param figli the children read so far
+   * @param numeroFigli the number of children of the node
+   */
+  private record Cornice(int codice, List<Nodo> figli, int numeroFigli) {}
+
+  /**
+   * Constructs a reader that reads the expressions from a stream.
+   *
+   * @param sorgente the stream
+   * @param factory the factory used to build the nodes
+   * @throws NullPointerException if {@code sorgente} or {@code factory} is {@code null}
+   */
+  public LetturaBinaria(InputStream sorgente, NodoFactory factory) {
+    this.sorgente = Objects.requireNonNull(sorgente, "the stream cannot be null");
+    this.buffer = null;
+    this.factory = Objects.requireNonNull(factory, "the factory cannot be null");
+  }
+
+  /**
+   * Constructs a reader that reads the expressions from a buffer, starting from its position.
+   *
+   * @param buffer the buffer
+   * @param factory the factory used to build the nodes
+   * @throws NullPointerException if {@code buffer} or {@code factory} is {@code null}
+   */
+  public LetturaBinaria(ByteBuffer buffer, NodoFactory factory) {
+    this.sorgente = null;
+    this.buffer = Objects.requireNonNull(buffer, "the buffer cannot be null");
+    this.factory = Objects.requireNonNull(factory, "the factory cannot be null");
+  }
+
+  /**
+   * Builds the expression encoded by the given bytes.
+   *
+   * @param codifica the encoding of an expression
+   * @return the expression
+   * @throws NullPointerException if {@code codifica} is {@code null}
+   * @throws IllegalArgumentException if {@code codifica} is not the encoding of exactly one
+   *     expression
+   */
+  public static Nodo decodifica(byte[] codifica) {
+    Objects.requireNonNull(codifica, "the bytes cannot be null");
+    ByteBuffer buffer = ByteBuffer.wrap(codifica);
+    try {
+      Nodo nodo = new LetturaBinaria(buffer, new NodoFactory()).leggi();
+      if (nodo == null || buffer.hasRemaining()) {
+        throw new IllegalArgumentException("the bytes do not encode exactly one expression");
+      }
+      return nodo;
+    } catch (IOException e) {
+      throw new IllegalArgumentException("the encoding is truncated", e);
+    }
+  }
+
+  /**
+   * Reads the next expression.
+   *
+   * @return the expression, or {@code null} if the source has no more bytes
+   * @throws IOException if the stream cannot be read
+   * @throws EOFException if the source ends in the middle of an expression
+   * @throws IllegalArgumentException if the bytes are not a valid encoding
+   */
+  public Nodo leggi() throws IOException {
+    int codice =
+        sorgente != null ? sorgente.read() : buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    if (codice < 0) return null;
+    List<NodoInterno> completati = new ArrayList<>();
+    Deque<Cornice> pila = new ArrayDeque<>();
+    Nodo nodo = null;
+    while (nodo == null) {
+      nodo = leggiNodo(codice, completati, pila);
+      // un nodo letto completa i genitori di cui è l'ultimo figlio
+      while (nodo != null && !pila.isEmpty()) {
+        Cornice genitore = pila.peek();
+        genitore.figli().add(nodo);
+        if (genitore.figli().size() < genitore.numeroFigli()) {
+          nodo = null;
+        } else {
+          pila.pop();
+          NodoInterno interno = costruisci(genitore);
+          completati.add(interno);
+          nodo = interno;
+        }
+      }
+      if (nodo == null) codice = leggiByte();
+    }
+    return nodo;
+  }
+
+  /**
+   * Reads the operands of a node with the given opcode.
+   *
+   * @param codice the opcode
+   * @param completati the internal nodes completed so far
+   * @param pila the nodes whose children are being read
+   * @return the node, or {@code null} if it is an internal node whose children have to be read
+   * @throws IOException if the stream cannot be read
+   */
+  private Nodo leggiNodo(int codice, List<NodoInterno> completati, Deque<Cornice> pila)
+      throws IOException {
+    if (codice >= FormatoBinario.SIMBOLO && codice < FormatoBinario.SIMBOLO + 26) {
+      return factory.simbolo((char) ('a' + codice - FormatoBinario.SIMBOLO));
+    }
+    switch (codice) {
+      case FormatoBinario.INTERO:
+        return factory.razionale(zigzag(leggiVarint()));
+      case FormatoBinario.FRAZIONE:
+        long n = zigzag(leggiVarint());
+        long d = leggiVarint();
+        if (d <= 0) throw new IllegalArgumentException("Invalid denominator: " + d);
+        return factory.razionale(n, d);
+      case FormatoBinario.GRANDE:
+        BigInteger num = leggiIntero();
+        return factory.razionale(num, leggiIntero());
+      case FormatoBinario.RIFERIMENTO:
+        long indice = leggiVarint();
+        if (indice < 0 || indice >= completati.size()) {
+          throw new IllegalArgumentException("Invalid back-reference: " + indice);
+        }
+        return completati.get((int) indice);
+      case FormatoBinario.POTENZA:
+        pila.push(new Cornice(codice, new ArrayList<>(2), 2));
+        return null;
+      case FormatoBinario.ADDIZIONE:
+      case FormatoBinario.MOLTIPLICAZIONE:
+        long numeroFigli = leggiVarint();
+        if (numeroFigli < 2 || numeroFigli > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Invalid number of children: " + numeroFigli);
+        }
+        pila.push(new Cornice(codice, new ArrayList<>(), (int) numeroFigli));
+        return null;
+      default:
+        throw new IllegalArgumentException("Invalid opcode: " + codice);
+    }
+  }
+
+  /**
+   * Builds an internal node whose children have all been read.
+   *
+   * @param cornice the node
+   * @return the internal node
+   */
+  private NodoInterno costruisci(Cornice cornice) {
+    switch (cornice.codice()) {
+      case FormatoBinario.ADDIZIONE:
+        return factory.addizione(cornice.figli());
+      case FormatoBinario.MOLTIPLICAZIONE:
+        return factory.moltiplicazione(cornice.figli());
+      default:
+        if (!(cornice.figli().get(1) instanceof Razionale)) {
+          throw new IllegalArgumentException("The exponent of a power must be rational");
+        }
+        return factory.potenza(cornice.figli().get(0), (Razionale) cornice.figli().get(1));
+    }
+  }
+
+  /**
+   * Reads an integer of arbitrary precision written as its length and its two's complement bytes.
+   *
+   * @return the integer
+   * @throws IOException if the stream cannot be read
+   */
+  private BigInteger leggiIntero() throws IOException {
+    long lunghezza = leggiVarint();
+    if (lunghezza <= 0 || lunghezza > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid integer length: " + lunghezza);
+    }
+    byte[] byteIntero;
+    if (sorgente != null) {
+      byteIntero = sorgente.readNBytes((int) lunghezza);
+      if (byteIntero.length < lunghezza) throw new EOFException("Truncated expression");
+    } else {
+      if (buffer.remaining() < lunghezza) throw new EOFException("Truncated expression");
+      byteIntero = new byte[(int) lunghezza];
+      buffer.get(byteIntero);
+    }
+    return new BigInteger(byteIntero);
+  }
+
+  /**
+   * Reads an unsigned varint.
+   *
+   * @return the value, interpreted as unsigned
+   * @throws IOException if the stream cannot be read
+   */
+  private long leggiVarint() throws IOException {
+    long v = 0;
+    for (int spostamento = 0; spostamento < 64; spostamento += 7) {
+      int b = leggiByte();
+      v |= (long) (b & 0x7F) << spostamento;
+      if ((b & 0x80) == 0) return v;
+    }
+    throw new IllegalArgumentException("Varint too long");
+  }
+
+  /**
+   * Reads a byte that must be present.
+   *
+   * @return the byte, between 0 and 255
+   * @throws IOException if the stream cannot be read
+   */
+  private int leggiByte() throws IOException {
+    if (sorgente != null) {
+      int b = sorgente.read();
+      if (b < 0) throw new EOFException("Truncated expression");
+      return b;
+    }
+    if (!buffer.hasRemaining()) throw new EOFException("Truncated expression");
+    return buffer.get() & 0xFF;
+  }
+
+  /**
+   * Maps an unsigned value back to the signed one it encodes.
+   *
+   * @param n the zigzag encoding of a value
+   * @return the signed value
+   */
+  private static long zigzag(long n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+}
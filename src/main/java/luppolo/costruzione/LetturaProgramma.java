@@ -0,0 +1,212 @@
+package luppolo.costruzione;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import luppolo.*;
+
+/**
+ * A reader of linear programs, in the format of {@link ProgrammaLineara#fromLinearProgram(String[],
+ * NodoFactory)}, that consumes the instructions one line at a time from a stream instead of
+ * requiring them all in memory.
+ *
+ * <p>Since any instruction can refer to any previous one, by default the reader retains the
+ * expressions of all the instructions read. If the last uses of the instructions are known, for
+ * instance computed by {@link #ultimiUsi(Reader)} in a first pass over the same program, the reader
+ * retains only the expressions that are still going to be referred to, and the memory it needs is
+ * bounded by the largest set of live expressions rather than by the length of the program.
+ * Instances are not thread-safe.
+ */
+public final class LetturaProgramma {
+
+  /*
+   * AF: the instructions are the lines of sorgente, their expressions are built through factory;
+   * letti instructions have been read so far and valore is the expression of the last one. If
+   * ultimiUsi is null the expression of the i-th instruction is tutte.get(i), otherwise it is
+   * vive.get(i) as long as ultimiUsi[i] > i and fewer than ultimiUsi[i] + 1 instructions have been
+   * read.
+   *
+   * RI: sorgente, factory not null; exactly one of tutte and vive is not null, vive not null iff
+   * ultimiUsi not null; every key of vive is less than letti.
+   */
+
+  /** The stream the instructions are read from. */
+  private final BufferedReader sorgente;
+
+  /** The factory used to build the nodes. */
+  private final NodoFactory factory;
+
+  /** The index of the last instruction using each instruction, or {@code null} if unknown. */
+  private final int[] ultimiUsi;
+
+  /** The expressions of all the instructions read, if the last uses are unknown. */
+  private final List<Nodo> tutte;
+
+  /** The expressions still to be used, by index, if the last uses are known. */
+  private final Map<Integer, Nodo> vive;
+
+  /** The indices of the operands of the instruction being read. */
+  private final List<Integer> usati = new ArrayList<>();
+
+  /** The number of instructions read so far. */
+  private int letti;
+
+  /** The expression of the last instruction read, or {@code null}. */
+  private Nodo valore;
+
+  /**
+   * Constructs a reader of a linear program that retains the expressions of all the instructions.
+   *
+   * @param sorgente the stream of the instructions, one per line
+   * @param factory the factory used to build the nodes
+   * @throws NullPointerException if {@code sorgente} or {@code factory} is {@code null}
+   */
+  public LetturaProgramma(Reader sorgente, NodoFactory factory) {
+    this(sorgente, factory, null);
+  }
+
+  /**
+   * Constructs a reader of a linear program that releases the expression of every instruction
+   * after its last use.
+   *
+   * @param sorgente the stream of the instructions, one per line
+   * @param factory the factory used to build the nodes
+   * @param ultimiUsi the index of the last instruction using each instruction, or a value not
+   *     greater than the index of the instruction if it is never used, as returned by {@link
+   *     #ultimiUsi(Reader)}; {@code null} if unknown
+   * @throws NullPointerException if {@code sorgente} or {@code factory} is {@code null}
+   */
+  public LetturaProgramma(Reader sorgente, NodoFactory factory, int[] ultimiUsi) {
+    Objects.requireNonNull(sorgente, "the stream cannot be null");
+    this.sorgente =
+        sorgente instanceof BufferedReader
+            ? (BufferedReader) sorgente
+            : new BufferedReader(sorgente);
+    this.factory = Objects.requireNonNull(factory, "the factory cannot be null");
+    this.ultimiUsi = ultimiUsi == null ? null : ultimiUsi.clone();
+    this.tutte = ultimiUsi == null ? new ArrayList<>() : null;
+    this.vive = ultimiUsi == null ? null : new HashMap<>();
+  }
+
+  /**
+   * Constructs a reader of a linear program encoded in UTF-8 that retains the expressions of all
+   * the instructions.
+   *
+   * @param sorgente the stream of the instructions, one per line
+   * @param factory the factory used to build the nodes
+   * @throws NullPointerException if {@code sorgente} or {@code factory} is {@code null}
+   */
+  public LetturaProgramma(InputStream sorgente, NodoFactory factory) {
+    this(
+        new InputStreamReader(
+            Objects.requireNonNull(sorgente, "the stream cannot be null"),
+            StandardCharsets.UTF_8),
+        factory);
+  }
+
+  /**
+   * Computes the last use of every instruction of a linear program, reading it to the end. Invalid
+   * instructions are not reported: they are left to the reader of the program.
+   *
+   * @param sorgente the stream of the instructions, one per line
+   * @return the index of the last instruction using each instruction, or 0 for the instructions
+   *     that are never used
+   * @throws NullPointerException if {@code sorgente} is {@code null}
+   * @throws IOException if the stream cannot be read
+   */
+  public static int[] ultimiUsi(Reader sorgente) throws IOException {
+    BufferedReader righe =
+        new BufferedReader(Objects.requireNonNull(sorgente, "the stream cannot be null"));
+    int[] usi = new int[1024];
+    int n = 0;
+    for (String riga = righe.readLine(); riga != null; riga = righe.readLine()) {
+      Tokenizzatore token = new Tokenizzatore(riga);
+      if (token.prossimo() && token.tipo() == Tokenizzatore.Tipo.OPERATORE) {
+        while (token.prossimo()) {
+          // un indice non valido verrà segnalato dalla lettura vera e propria
+          if (token.tipo() == Tokenizzatore.Tipo.NUMERO
+              && !token.isFrazione()
+              && !token.isGrande()
+              && token.numeratore() >= 0
+              && token.numeratore() < n) {
+            usi[(int) token.numeratore()] = n;
+          }
+        }
+      }
+      if (++n == usi.length) usi = Arrays.copyOf(usi, 2 * n);
+    }
+    return Arrays.copyOf(usi, n);
+  }
+
+  /**
+   * Reads the next instruction.
+   *
+   * @return the expression computed by the instruction, or {@code null} if the stream is over
+   * @throws IOException if the stream cannot be read
+   * @throws IllegalArgumentException if the instruction is invalid, refers to an expression
+   *     already released, or goes beyond the last uses given to the constructor
+   */
+  public Nodo prossima() throws IOException {
+    String istruzione = sorgente.readLine();
+    if (istruzione == null) return null;
+    if (ultimiUsi == null) {
+      valore =
+          ProgrammaLineara.esegui(
+              istruzione, i -> i < tutte.size() ? tutte.get(i) : null, factory);
+      tutte.add(valore);
+    } else {
+      if (letti >= ultimiUsi.length) {
+        throw new IllegalArgumentException("The program is longer than its last uses");
+      }
+      usati.clear();
+      valore = ProgrammaLineara.esegui(istruzione, this::viva, factory);
+      // gli operandi usati qui per l'ultima volta non servono più
+      for (int i : usati) {
+        if (ultimiUsi[i] <= letti) vive.remove(i);
+      }
+      if (ultimiUsi[letti] > letti) vive.put(letti, valore);
+    }
+    letti++;
+    return valore;
+  }
+
+  /**
+   * Reads the instructions up to the end of the stream.
+   *
+   * @return the expression computed by the last instruction of the program
+   * @throws IOException if the stream cannot be read
+   * @throws IllegalArgumentException if an instruction is invalid or if the program is empty
+   */
+  public Nodo leggi() throws IOException {
+    Nodo nodo = prossima();
+    while (nodo != null) nodo = prossima(); // ogni istruzione aggiorna valore
+    if (valore == null) {
+      throw new IllegalArgumentException("No expressions generated from instructions");
+    }
+    return valore;
+  }
+
+  /**
+   * Returns the number of expressions currently retained by this reader.
+   *
+   * @return the number of expressions that can still be referred to
+   */
+  public int trattenute() {
+    return ultimiUsi == null ? tutte.size() : vive.size();
+  }
+
+  /**
+   * Returns the expression of a live instruction, recording its use.
+   *
+   * @param indice the index of the instruction
+   * @return the expression, or {@code null} if it has not been read or has been released
+   */
+  private Nodo viva(int indice) {
+    usati.add(indice);
+    return vive.get(indice);
+  }
+}
@@ -2,12 +2,13 @@ package luppolo.costruzione;
 
 import java.util.*;
 import luppolo.*;
+import luppolo.eventi.Lettura;
 
 /**
  * The NotazionePolaccaEspressione class provides functionality to parse and construct mathematical
  * expressions in Reverse Polish Notation (RPN) into expressions (Nodo objects). It supports basic
  * arithmetic operations (+, -, *, ^, /) and handles operands such as integers and single-letter
- * symbols.
+ * symbols. Every parsed expression is recorded as a {@link Lettura} event.
  */
 public class NotazionePolaccaEspressione {
 
@@ -23,66 +24,96 @@ public class NotazionePolaccaEspressione {
    * @throws IllegalArgumentException if the input contains an unrecognized operator or operand
    */
   public static Nodo fromPolocaa(String input) {
-    Stack<Nodo> stack = new Stack<>();
-    // Split the string by spaces
-    String[] inputArray = input.split(" ");
+    return fromPolocaa(input, new NodoFactory());
+  }
+
+  /**
+   * Parses a mathematical expression in Reverse Polish Notation (RPN) and constructs a
+   * corresponding expression tree (Nodo object) building its nodes through the given factory.
+   *
+   * @param input the RPN expression as a string, with elements separated by spaces
+   * @param factory the factory used to build the nodes
+   * @return the root Nodo of the constructed expression tree
+   * @throws NullPointerException if any element in the input array or {@code factory} is {@code
+   *     null}
+   * @throws IllegalStateException if there are not enough operands for an operator
+   * @throws IllegalArgumentException if the input contains an unrecognized operator or operand
+   */
+  public static Nodo fromPolocaa(String input, NodoFactory factory) {
+    Objects.requireNonNull(factory, "the factory cannot be null");
+    Objects.requireNonNull(input, "input cannot contian null");
+    Lettura evento = new Lettura();
+    evento.begin();
+    // la pila degli operandi: un array semplice al posto della Stack sincronizzata
+    Nodo[] stack = new Nodo[16];
+    int size = 0;
     Nodo second;
     Nodo first;
 
-    // Use a for-each loop to iterate over the input array
-    for (int i = inputArray.length - 1; i >= 0; i--) {
-
-      String elem = Objects.requireNonNull(inputArray[i], "input cannot contian null");
-      if (UtilityClass.isNumeric(elem)) {
-        stack.push(new Razionale(Long.parseLong(elem)));
+    // gli elementi vengono letti da destra a sinistra, senza dividere la stringa
+    Tokenizzatore token = new Tokenizzatore(input);
+    while (token.precedente()) {
+      Nodo nodo;
+      if (token.tipo() == Tokenizzatore.Tipo.NUMERO && !token.isFrazione()) {
+        nodo =
+            token.isGrande()
+                ? factory.razionale(token.testo())
+                : factory.razionale(token.numeratore());
 
-      } else if (UtilityClass.isSmallLetter(elem)) {
-        stack.push(new Simbolo(elem.charAt(0)));
+      } else if (token.tipo() == Tokenizzatore.Tipo.SIMBOLO) {
+        nodo = factory.simbolo(token.carattere());
 
-      } else if (UtilityClass.isOperator(elem)) {
-        if (stack.size() >= 2) {
-          second = stack.pop();
-          first = stack.pop();
+      } else if (token.tipo() == Tokenizzatore.Tipo.OPERATORE) {
+        if (size >= 2) {
+          second = stack[--size];
+          first = stack[--size];
         } else {
           throw new IllegalStateException("Not enought operands");
         }
 
-        switch (elem) {
-          case "+":
-            stack.push(new Addizione(Arrays.asList(second, first)));
+        switch (token.carattere()) {
+          case '+':
+            nodo = factory.addizione(Arrays.asList(second, first));
             break;
 
-          case "*":
-            stack.push(new Moltiplicazione(Arrays.asList(second, first)));
+          case '*':
+            nodo = factory.moltiplicazione(Arrays.asList(second, first));
             break;
 
-          case "^":
+          case '^':
             // caso in cui l'esponente non è razionale
             if (!(first instanceof Razionale)) {
-              Razionale e = (Razionale) (first.accept(new luppolo.manipolazione.Semplificazione()));
-              stack.push(new Potenza(second, e));
+              Razionale e =
+                  (Razionale) new luppolo.manipolazione.Semplificazione(factory).semplifica(first);
+              nodo = factory.potenza(second, e);
             } else {
               // caso esponente razionale
-              stack.push(new Potenza(second, (Razionale) first));
+              nodo = factory.potenza(second, (Razionale) first);
             }
             break;
 
-          case "-":
-            stack.push(
-                new Addizione(
+          case '-':
+            nodo =
+                factory.addizione(
                     Arrays.asList(
-                        second, new Moltiplicazione(Arrays.asList(new Razionale(-1), first)))));
+                        second,
+                        factory.moltiplicazione(Arrays.asList(factory.razionale(-1), first))));
             break;
 
-          case "/":
-            stack.push(
-                new Moltiplicazione(Arrays.asList(second, new Potenza(first, new Razionale(-1)))));
+          default: // '/'
+            nodo =
+                factory.moltiplicazione(
+                    Arrays.asList(second, factory.potenza(first, factory.razionale(-1))));
             break;
         }
       } else {
         throw new IllegalArgumentException("input not identified");
       }
+      if (size == stack.length) stack = Arrays.copyOf(stack, 2 * size);
+      stack[size++] = nodo;
     }
-    return stack.firstElement();
+    if (size == 0) throw new NoSuchElementException();
+    evento.fine("polacca", input.length(), stack[0]);
+    return stack[0];
   }
 }
@@ -1,13 +1,19 @@
 package luppolo.costruzione;
 
 import java.util.*;
+import java.util.function.IntFunction;
 import luppolo.*;
+import luppolo.eventi.Lettura;
 
 /**
  * A concrete class that provides functionalities to interpret and construct mathematical
  * expressions using linear programming instructions. It supports basic arithmetic operations (+, -,
- * *, /, ^) and manages operands such as integers, single-letter symbols, and complex expressions
- * defined through operand indices.
+ * *, /, ^) and manages operands such as integers, fractions written as {@code p/q}, single-letter
+ * symbols, and complex expressions defined through operand indices.
+ *
+ * <p>Every program built is recorded as a {@link Lettura} event. {@link LetturaProgramma} reads a
+ * linear program one instruction at a time from a stream, and {@link
+ * luppolo.rappresentazione.FormaProgramma} writes an expression back as a linear program.
  */
 public class ProgrammaLineara {
 
@@ -21,93 +27,229 @@ public class ProgrammaLineara {
    * @throws NullPointerException If any string in instructions is {@code null};
    */
   public static Nodo fromLinearProgram(String[] instructions) {
+    return fromLinearProgram(instructions, new NodoFactory());
+  }
+
+  /**
+   * Constructs a mathematical expression represented by a linear program instruction, building its
+   * nodes through the given factory.
+   *
+   * @param instructions The array of instructions defining the linear program.
+   * @param factory The factory used to build the nodes.
+   * @return The constructed mathematical expression as a Nodo object.
+   * @throws IllegalArgumentException If any instruction is invalid, if a fraction has a zero
+   *     denominator or if no expressions are generated.
+   * @throws NullPointerException If any string in instructions or {@code factory} is {@code null};
+   */
+  public static Nodo fromLinearProgram(String[] instructions, NodoFactory factory) {
+    Objects.requireNonNull(factory, "the factory cannot be null");
+    Lettura evento = new Lettura();
+    evento.begin();
     ArrayList<Nodo> expressions = new ArrayList<>();
-    String firstPart;
-    String[] parts;
     for (String instruction : instructions) {
-      Objects.requireNonNull(instruction, "input not valid");
-
-      parts = instruction.split(" ");
-      firstPart = parts[0];
-
-      if (firstPart.equals(".")) {
-        String symbolOrNumber = parts[1];
-        if (UtilityClass.isNumeric(symbolOrNumber)) {
-          expressions.add(new Razionale(Long.parseLong(symbolOrNumber)));
-        } else if (UtilityClass.isSmallLetter(symbolOrNumber)) {
-          expressions.add(new Simbolo(symbolOrNumber.charAt(0)));
-        } else {
-          throw new IllegalArgumentException("Invalid symbol or number: " + symbolOrNumber);
-        }
-      } else if (UtilityClass.isOperator(firstPart)) {
-
-        // recupero tutte le espressioni menzionate dopo l'operatore
-        ArrayList<Nodo> operands = new ArrayList<>();
-        for (int i = 1; i < parts.length; i++) {
-          int index = Integer.parseInt(parts[i]);
-          if (index < 0 || index >= expressions.size()) {
-            throw new IllegalArgumentException("Invalid operand index: " + index);
+      expressions.add(
+          esegui(
+              instruction,
+              index -> index < expressions.size() ? expressions.get(index) : null,
+              factory));
+    }
+    if (expressions.isEmpty()) {
+      throw new IllegalArgumentException("No expressions generated from instructions");
+    }
+    Nodo res = expressions.get(expressions.size() - 1);
+    evento.fine("programma", instructions.length, res);
+    return res;
+  }
+
+  /**
+   * Constructs a mathematical expression represented by a linear program instruction, building
+   * only the instructions the last one depends on. The operand indices of all the instructions are
+   * scanned first, then the instructions reachable from the last one are built in order: the cost
+   * of construction grows with the reachable part of the program, and the instructions that are
+   * not reachable are neither built nor checked.
+   *
+   * @param instructions The array of instructions defining the linear program.
+   * @param factory The factory used to build the nodes.
+   * @param soloRaggiungibili Whether to build only the instructions reachable from the last one;
+   *     if {@code false} this method is {@link #fromLinearProgram(String[], NodoFactory)}.
+   * @return The constructed mathematical expression as a Nodo object.
+   * @throws IllegalArgumentException If any built instruction is invalid, if a fraction has a zero
+   *     denominator or if no expressions are generated.
+   * @throws NullPointerException If any string in instructions or {@code factory} is {@code null};
+   */
+  public static Nodo fromLinearProgram(
+      String[] instructions, NodoFactory factory, boolean soloRaggiungibili) {
+    if (!soloRaggiungibili) return fromLinearProgram(instructions, factory);
+    Objects.requireNonNull(factory, "the factory cannot be null");
+    int n = instructions.length;
+    if (n == 0) throw new IllegalArgumentException("No expressions generated from instructions");
+    Lettura evento = new Lettura();
+    evento.begin();
+
+    // gli operandi dell'istruzione i sono riferimenti[primo[i]] ... riferimenti[primo[i + 1] - 1]
+    int[] primo = new int[n + 1];
+    int[] riferimenti = new int[n];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      Tokenizzatore token =
+          new Tokenizzatore(Objects.requireNonNull(instructions[i], "input not valid"));
+      if (token.prossimo() && token.tipo() == Tokenizzatore.Tipo.OPERATORE) {
+        while (token.prossimo()) {
+          // gli indici non validi vengono segnalati solo se l'istruzione viene costruita
+          if (token.tipo() == Tokenizzatore.Tipo.NUMERO
+              && !token.isFrazione()
+              && !token.isGrande()
+              && token.numeratore() >= 0
+              && token.numeratore() < i) {
+            if (m == riferimenti.length) riferimenti = Arrays.copyOf(riferimenti, 2 * m);
+            riferimenti[m++] = (int) token.numeratore();
           }
-          operands.add(expressions.get(index));
         }
+      }
+      primo[i + 1] = m;
+    }
 
-        // creo l'espressione
-        Nodo newExpression;
-        switch (firstPart) {
-          case "+":
-            newExpression = new Addizione(operands);
-            break;
-
-          case "-":
-            for (int i = 1; i < operands.size(); i++) {
-              operands.set(
-                  i, new Moltiplicazione(Arrays.asList(new Razionale((long) -1), operands.get(i))));
-            }
-            newExpression = new Addizione(operands);
-            break;
-
-          case "*":
-            newExpression = new Moltiplicazione(operands);
-            break;
-
-          case "/":
-            // il numeratore che è il primo nodo di operands rimane lo stesso, gli altri devono
-            // diventare nodi potenza ^(x,-1) e poi questi saranno i fattori della moltiplicazione
-            for (int i = 1; i < operands.size(); i++) {
-              operands.set(i, new Potenza(operands.get(i), new Razionale((long) -1)));
-            }
-            newExpression = new Moltiplicazione(operands);
-            break;
-
-          case "^":
-            Potenza c =
-                new Potenza(
-                    operands.get(operands.size() - 2),
-                    (Razionale)
-                        (operands
-                            .get(operands.size() - 1)
-                            .accept(new luppolo.manipolazione.Semplificazione())));
-            // calcolo la potenza tra ogni 2 operandi a partire dagli ultimi
-            for (int i = operands.size() - 3; i >= 0; i--) {
-              c =
-                  new Potenza(
-                      operands.get(i),
-                      (Razionale) (c.accept(new luppolo.manipolazione.Semplificazione())));
-            }
-            newExpression = c;
-            break;
-
-          default:
-            throw new IllegalArgumentException("Unknown operator: " + firstPart);
+    // marco le istruzioni raggiungibili dall'ultima
+    boolean[] raggiungibile = new boolean[n];
+    int[] pila = new int[n];
+    int cima = 0;
+    raggiungibile[n - 1] = true;
+    pila[cima++] = n - 1;
+    while (cima > 0) {
+      int i = pila[--cima];
+      for (int k = primo[i]; k < primo[i + 1]; k++) {
+        if (!raggiungibile[riferimenti[k]]) {
+          raggiungibile[riferimenti[k]] = true;
+          pila[cima++] = riferimenti[k];
         }
-        expressions.add(newExpression);
-      } else {
+      }
+    }
+
+    // costruisco in ordine le sole istruzioni raggiungibili: i loro operandi lo sono tutti
+    Nodo[] expressions = new Nodo[n];
+    for (int i = 0; i < n; i++) {
+      if (raggiungibile[i]) {
+        int limite = i;
+        expressions[i] =
+            esegui(
+                instructions[i],
+                index -> index < limite ? expressions[index] : null,
+                factory);
+      }
+    }
+    evento.fine("programma", n, expressions[n - 1]);
+    return expressions[n - 1];
+  }
+
+  /**
+   * Builds the expression computed by a single instruction.
+   *
+   * @param instruction The instruction.
+   * @param operandi The function returning the expression introduced by the instruction with a
+   *     given non-negative index, or {@code null} if the index cannot be referred to.
+   * @param factory The factory used to build the nodes.
+   * @return The expression computed by the instruction.
+   * @throws IllegalArgumentException If the instruction is invalid.
+   * @throws NullPointerException If {@code instruction} is {@code null}.
+   */
+  static Nodo esegui(String instruction, IntFunction<Nodo> operandi, NodoFactory factory) {
+    Objects.requireNonNull(instruction, "input not valid");
+
+    // le istruzioni vengono lette token per token, senza dividere la stringa
+    Tokenizzatore token = new Tokenizzatore(instruction);
+    if (!token.prossimo()) {
+      throw new IllegalArgumentException("Invalid instruction: " + instruction);
+    }
+
+    if (token.tipo() == Tokenizzatore.Tipo.PUNTO) {
+      if (!token.prossimo()) {
         throw new IllegalArgumentException("Invalid instruction: " + instruction);
       }
+      if (token.tipo() == Tokenizzatore.Tipo.NUMERO) {
+        if (token.isGrande()) return factory.razionale(token.testo());
+        if (!token.isFrazione()) return factory.razionale(token.numeratore());
+        return factory.razionale(token.numeratore(), token.denominatore());
+      }
+      if (token.tipo() == Tokenizzatore.Tipo.SIMBOLO) return factory.simbolo(token.carattere());
+      throw new IllegalArgumentException("Invalid symbol or number: " + token.testo());
     }
-    if (expressions.isEmpty()) {
-      throw new IllegalArgumentException("No expressions generated from instructions");
+    if (token.tipo() != Tokenizzatore.Tipo.OPERATORE) {
+      throw new IllegalArgumentException("Invalid instruction: " + instruction);
+    }
+    char operator = token.carattere();
+
+    // recupero tutte le espressioni menzionate dopo l'operatore
+    ArrayList<Nodo> operands = new ArrayList<>();
+    while (token.prossimo()) {
+      int index = indice(token);
+      Nodo operand = index < 0 ? null : operandi.apply(index);
+      if (operand == null) {
+        throw new IllegalArgumentException("Invalid operand index: " + index);
+      }
+      operands.add(operand);
+    }
+
+    // creo l'espressione
+    switch (operator) {
+      case '+':
+        return factory.addizione(operands);
+
+      case '-':
+        for (int i = 1; i < operands.size(); i++) {
+          operands.set(
+              i,
+              factory.moltiplicazione(
+                  Arrays.asList(factory.razionale((long) -1), operands.get(i))));
+        }
+        return factory.addizione(operands);
+
+      case '*':
+        return factory.moltiplicazione(operands);
+
+      case '/':
+        // il numeratore che è il primo nodo di operands rimane lo stesso, gli altri devono
+        // diventare nodi potenza ^(x,-1) e poi questi saranno i fattori della moltiplicazione
+        for (int i = 1; i < operands.size(); i++) {
+          operands.set(i, factory.potenza(operands.get(i), factory.razionale((long) -1)));
+        }
+        return factory.moltiplicazione(operands);
+
+      case '^':
+        Potenza c =
+            factory.potenza(
+                operands.get(operands.size() - 2),
+                (Razionale)
+                    new luppolo.manipolazione.Semplificazione(factory)
+                        .semplifica(operands.get(operands.size() - 1)));
+        // calcolo la potenza tra ogni 2 operandi a partire dagli ultimi
+        for (int i = operands.size() - 3; i >= 0; i--) {
+          c =
+              factory.potenza(
+                  operands.get(i),
+                  (Razionale) new luppolo.manipolazione.Semplificazione(factory).semplifica(c));
+        }
+        return c;
+
+      default:
+        throw new IllegalArgumentException("Unknown operator: " + operator);
+    }
+  }
+
+  /**
+   * Returns the operand index written by a token, with the same rules as {@link
+   * Integer#parseInt(String)}.
+   *
+   * @param token the tokenizer, positioned on the operand
+   * @return the index
+   * @throws NumberFormatException if the token is not an integer that fits in an {@code int}
+   */
+  private static int indice(Tokenizzatore token) {
+    if (token.tipo() != Tokenizzatore.Tipo.NUMERO
+        || token.isFrazione()
+        || token.isGrande()
+        || token.numeratore() != (int) token.numeratore()) {
+      throw new NumberFormatException("For input string: \"" + token.testo() + "\"");
     }
-    return expressions.get(expressions.size() - 1);
+    return (int) token.numeratore();
   }
 }
@@ -0,0 +1,307 @@
+package luppolo.costruzione;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A tokenizer for the textual formats of the expressions: Polish notation and the instructions of
+ * linear programs. The text, a {@link CharSequence} or the bytes of an ASCII {@link ByteBuffer}, is
+ * split at every single space exactly as {@code String.split(" ")} would do (empty tokens between
+ * two consecutive spaces included, trailing spaces ignored) but without allocating: the tokens are
+ * found and classified by scanning their characters, and numbers are parsed in place.
+ *
+ * <p>A tokenizer is read in one direction only, forward with {@link #prossimo()} or backward with
+ * {@link #precedente()}; after a successful call the accessors describe the current token. Numbers
+ * of up to 18 digits are parsed into their numerator and denominator; longer ones are marked as
+ * {@linkplain #isGrande() big} and have to be parsed from their {@linkplain #testo() text}.
+ * Instances are not thread-safe.
+ */
+public final class Tokenizzatore {
+
+  /** The kinds of tokens. */
+  public enum Tipo {
+    /** An integer or a fraction {@code p/q}, each part with an optional sign. */
+    NUMERO,
+    /** A single letter. */
+    SIMBOLO,
+    /** One of the operators {@code + - * / ^}. */
+    OPERATORE,
+    /** A single dot, introducing a value in a linear program. */
+    PUNTO,
+    /** Anything else, including the empty token. */
+    ALTRO
+  }
+
+  /*
+   * AF: the tokens are the maximal runs of characters other than space of the first fine
+   * characters of the text (testo, or the bytes of buffer from its position), separated by single
+   * spaces; if the text is empty it has a single empty token. The current token spans the
+   * characters from inizio (included) to termine (excluded) and its kind is tipo.
+   *
+   * RI: exactly one of testo and buffer is not null, 0 <= inizio <= termine <= fine, fine is 0 or
+   * the index following a character other than space.
+   */
+
+  /** The text, or {@code null} if the tokens are read from a buffer. */
+  private final CharSequence testo;
+
+  /** The buffer, or {@code null} if the tokens are read from a character sequence. */
+  private final ByteBuffer buffer;
+
+  /** The index of the first byte of the text in the buffer. */
+  private final int base;
+
+  /** The length of the text without its trailing spaces. */
+  private final int fine;
+
+  /** Whether the text has no characters at all. */
+  private final boolean vuoto;
+
+  /** The index of the first character of the current token, or -1 before the first token. */
+  private int inizio = -1;
+
+  /** The index following the last character of the current token, or -1 before the first one. */
+  private int termine = -1;
+
+  /** The kind of the current token. */
+  private Tipo tipo;
+
+  /** The numerator of the current number. */
+  private long numeratore;
+
+  /** The denominator of the current number. */
+  private long denominatore;
+
+  /** Whether the current number is a fraction. */
+  private boolean frazione;
+
+  /** Whether the current number is too long to be parsed in place. */
+  private boolean grande;
+
+  /**
+   * Constructs a tokenizer over a character sequence.
+   *
+   * @param testo the text
+   * @throws NullPointerException if {@code testo} is {@code null}
+   */
+  public Tokenizzatore(CharSequence testo) {
+    this.testo = Objects.requireNonNull(testo, "the text cannot be null");
+    this.buffer = null;
+    this.base = 0;
+    this.vuoto = testo.length() == 0;
+    this.fine = fine(testo.length());
+  }
+
+  /**
+   * Constructs a tokenizer over the bytes of a buffer, from its position to its limit, read as
+   * ASCII characters. The buffer is not modified.
+   *
+   * @param buffer the buffer
+   * @throws NullPointerException if {@code buffer} is {@code null}
+   */
+  public Tokenizzatore(ByteBuffer buffer) {
+    this.testo = null;
+    this.buffer = Objects.requireNonNull(buffer, "the buffer cannot be null");
+    this.base = buffer.position();
+    this.vuoto = buffer.remaining() == 0;
+    this.fine = fine(buffer.remaining());
+  }
+
+  /**
+   * Moves to the next token.
+   *
+   * @return {@code true} if there is a next token, {@code false} if the text is over
+   */
+  public boolean prossimo() {
+    int da;
+    if (termine < 0) {
+      if (fine == 0 && !vuoto) return false; // solo spazi: nessun token
+      da = 0;
+    } else {
+      if (termine >= fine) return false;
+      da = termine + 1;
+    }
+    int a = da;
+    while (a < fine && carattere(a) != ' ') a++;
+    classifica(da, a);
+    return true;
+  }
+
+  /**
+   * Moves to the previous token; the first call moves to the last token of the text.
+   *
+   * @return {@code true} if there is a previous token, {@code false} if the text is over
+   */
+  public boolean precedente() {
+    int a;
+    if (inizio < 0) {
+      if (fine == 0 && !vuoto) return false; // solo spazi: nessun token
+      a = fine;
+    } else {
+      if (inizio == 0) return false;
+      a = inizio - 1;
+    }
+    int da = a;
+    while (da > 0 && carattere(da - 1) != ' ') da--;
+    classifica(da, a);
+    return true;
+  }
+
+  /**
+   * Returns the kind of the current token.
+   *
+   * @return the kind of the current token
+   */
+  public Tipo tipo() {
+    return tipo;
+  }
+
+  /**
+   * Returns the first character of the current token, that is the letter of a symbol or the sign
+   * of an operator.
+   *
+   * @return the first character of the current token, or {@code 0} if the token is empty
+   */
+  public char carattere() {
+    return inizio == termine ? 0 : carattere(inizio);
+  }
+
+  /**
+   * Returns the numerator of the current number.
+   *
+   * @return the numerator, meaningful only if the token is a number that is not big
+   */
+  public long numeratore() {
+    return numeratore;
+  }
+
+  /**
+   * Returns the denominator of the current number, that is 1 for an integer; it is not reduced
+   * and can be zero or negative.
+   *
+   * @return the denominator, meaningful only if the token is a number that is not big
+   */
+  public long denominatore() {
+    return denominatore;
+  }
+
+  /**
+   * Tells whether the current token is a fraction.
+   *
+   * @return {@code true} if the token is a number written as {@code p/q}
+   */
+  public boolean isFrazione() {
+    return tipo == Tipo.NUMERO && frazione;
+  }
+
+  /**
+   * Tells whether the current number has too many digits to be parsed in place.
+   *
+   * @return {@code true} if the token is a number that has to be parsed from its text
+   */
+  public boolean isGrande() {
+    return tipo == Tipo.NUMERO && grande;
+  }
+
+  /**
+   * Returns the text of the current token. This is the only method that allocates.
+   *
+   * @return the text of the current token
+   */
+  public String testo() {
+    StringBuilder res = new StringBuilder(termine - inizio);
+    for (int i = inizio; i < termine; i++) res.append(carattere(i));
+    return res.toString();
+  }
+
+  /**
+   * Returns the length of a text without its trailing spaces.
+   *
+   * @param lunghezza the length of the text
+   * @return the index following the last character other than space, or 0
+   */
+  private int fine(int lunghezza) {
+    int f = lunghezza;
+    while (f > 0 && carattere(f - 1) == ' ') f--;
+    return f;
+  }
+
+  /**
+   * Returns a character of the text.
+   *
+   * @param i the index of the character
+   * @return the i-th character of the text
+   */
+  private char carattere(int i) {
+    return testo != null ? testo.charAt(i) : (char) (buffer.get(base + i) & 0xFF);
+  }
+
+  /**
+   * Makes the given span the current token and classifies it, parsing it if it is a number.
+   *
+   * @param da the index of the first character of the token
+   * @param a the index following the last character of the token
+   */
+  private void classifica(int da, int a) {
+    inizio = da;
+    termine = a;
+    if (a - da == 1) {
+      char c = carattere(da);
+      if (c >= '0' && c <= '9') {
+        tipo = Tipo.NUMERO;
+        numeratore = c - '0';
+        denominatore = 1;
+        frazione = false;
+        grande = false;
+      } else if (c == '+' || c == '-' || c == '*' || c == '/' || c == '^') {
+        tipo = Tipo.OPERATORE;
+      } else if (c == '.') {
+        tipo = Tipo.PUNTO;
+      } else {
+        tipo = Character.isLetter(c) ? Tipo.SIMBOLO : Tipo.ALTRO;
+      }
+      return;
+    }
+    grande = false;
+    int barra = da;
+    while (barra < a && carattere(barra) != '/') barra++;
+    if (!intero(da, barra)) {
+      tipo = Tipo.ALTRO;
+      return;
+    }
+    long n = numeratore;
+    frazione = barra < a;
+    if (!frazione) {
+      denominatore = 1;
+    } else if (intero(barra + 1, a)) {
+      denominatore = numeratore;
+      numeratore = n;
+    } else {
+      tipo = Tipo.ALTRO;
+      return;
+    }
+    tipo = Tipo.NUMERO;
+  }
+
+  /**
+   * Parses an integer with an optional sign into {@code numeratore}, marking it as big if it has
+   * more than 18 digits.
+   *
+   * @param da the index of the first character
+   * @param a the index following the last character
+   * @return {@code true} if the characters are an integer
+   */
+  private boolean intero(int da, int a) {
+    int i = da < a && (carattere(da) == '-' || carattere(da) == '+') ? da + 1 : da;
+    if (i == a) return false;
+    if (a - i > 18) grande = true; // fino a 18 cifre il valore sta sicuramente in un long
+    long v = 0;
+    for (int j = i; j < a; j++) {
+      char c = carattere(j);
+      if (c < '0' || c > '9') return false;
+      v = v * 10 + (c - '0');
+    }
+    numeratore = i > da && carattere(da) == '-' ? -v : v;
+    return true;
+  }
+}
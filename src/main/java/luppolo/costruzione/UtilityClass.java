@@ -5,7 +5,8 @@ import java.util.Objects;
 /** A utility class with static methods */
 public class UtilityClass {
   /**
-   * Checks if a given string represents a numeric value.
+   * Checks if a given string represents an integer value, of any length, made of an optional sign
+   * followed by decimal digits.
    *
    * @param str The string to check.
    * @return {@code true} if the string is numeric, {@code false} otherwise.
@@ -13,12 +14,27 @@ public class UtilityClass {
    */
   public static boolean isNumeric(String str) {
     Objects.requireNonNull(str);
-    try {
-      Integer.parseInt(str);
-      return true;
-    } catch (NumberFormatException e) {
-      return false;
+    int inizio = !str.isEmpty() && (str.charAt(0) == '-' || str.charAt(0) == '+') ? 1 : 0;
+    if (str.length() == inizio) return false;
+    for (int i = inizio; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < '0' || c > '9') return false;
     }
+    return true;
+  }
+
+  /**
+   * Checks if a given string represents a fraction, made of two integer values (as checked by
+   * {@link #isNumeric(String)}) separated by a slash.
+   *
+   * @param str The string to check.
+   * @return {@code true} if the string is a fraction, {@code false} otherwise.
+   * @throws NullPointerException if {@code str} is {@code null}
+   */
+  public static boolean isFrazione(String str) {
+    Objects.requireNonNull(str);
+    int barra = str.indexOf('/');
+    return barra >= 0 && isNumeric(str.substring(0, barra)) && isNumeric(str.substring(barra + 1));
   }
 
   /**
@@ -0,0 +1,59 @@
+package luppolo.eventi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import luppolo.*;
+
+/**
+ * A Flight Recorder event for the construction of an expression from its text, emitted by {@link
+ * luppolo.costruzione.NotazionePolaccaEspressione} and {@link
+ * luppolo.costruzione.ProgrammaLineara}.
+ */
+@Name("luppolo.Lettura")
+@Label("Lettura")
+@Category("Luppolo")
+@Description("The construction of an expression from its text")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class Lettura extends jdk.jfr.Event {
+
+  /** The format of the text. */
+  @Label("Formato")
+  public String formato;
+
+  /** The size of the text: its characters, or its instructions for a linear program. */
+  @Label("Dimensione")
+  public long dimensione;
+
+  /** The distinct nodes of the expression built. */
+  @Label("Nodi")
+  public long nodi;
+
+  /** The depth of the expression built. */
+  @Label("Profondità")
+  public int profondita;
+
+  /**
+   * Ends the event and commits it if it is enabled and lasted beyond its threshold; only then the
+   * expression built is measured.
+   *
+   * @param formato the format of the text
+   * @param dimensione the size of the text
+   * @param espressione the expression built
+   */
+  public void fine(String formato, long dimensione, Nodo espressione) {
+    end();
+    if (shouldCommit()) {
+      Misura misura = Misura.di(espressione);
+      this.formato = formato;
+      this.dimensione = dimensione;
+      this.nodi = misura.nodi();
+      this.profondita = misura.profondita();
+      commit();
+    }
+  }
+}
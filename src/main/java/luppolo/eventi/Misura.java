@@ -0,0 +1,40 @@
+package luppolo.eventi;
+
+import java.util.*;
+import luppolo.*;
+
+/**
+ * The size of an expression, measured when an event is committed: the distinct nodes, recognized
+ * by identity, and the depth. The expression is walked once, in post-order and with an explicit
+ * stack, hence the measure of an expression built from a linear program costs time linear in its
+ * distinct nodes even if they are shared by exponentially many paths.
+ *
+ * @param nodi the number of distinct internal nodes plus the number of leaves among their children
+ * @param profondita the number of nodes on the longest path from the root to a leaf
+ */
+record Misura(long nodi, int profondita) {
+
+  /**
+   * Measures an expression.
+   *
+   * @param radice the root of the expression
+   * @return the size of {@code radice}
+   */
+  static Misura di(Nodo radice) {
+    if (!(radice instanceof NodoInterno)) return new Misura(1, 1);
+    Map<Nodo, Integer> profondita = new IdentityHashMap<>();
+    long nodi = 0;
+    for (NodoInterno nodo : Condivisione.postordine(radice)) {
+      int massima = 0;
+      nodi++;
+      for (Nodo figlio : nodo) {
+        // i figli interni precedono il padre nel postordine
+        Integer p = profondita.get(figlio);
+        if (p == null) nodi++;
+        massima = Math.max(massima, p == null ? 1 : p);
+      }
+      profondita.put(nodo, massima + 1);
+    }
+    return new Misura(nodi, profondita.get(radice));
+  }
+}
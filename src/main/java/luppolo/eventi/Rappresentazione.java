@@ -0,0 +1,72 @@
+package luppolo.eventi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import luppolo.*;
+
+/**
+ * A Flight Recorder event for the representation of an expression as text by one of the renderers
+ * of {@link luppolo.rappresentazione}.
+ */
+@Name("luppolo.Rappresentazione")
+@Label("Rappresentazione")
+@Category("Luppolo")
+@Description("The representation of an expression as text")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class Rappresentazione extends jdk.jfr.Event {
+
+  /** The name of the renderer. */
+  @Label("Forma")
+  public String forma;
+
+  /** The characters of the text written. */
+  @Label("Dimensione")
+  @DataAmount(DataAmount.BYTES)
+  public long dimensione;
+
+  /** The distinct nodes of the expression represented. */
+  @Label("Nodi")
+  public long nodi;
+
+  /** The depth of the expression represented. */
+  @Label("Profondità")
+  public int profondita;
+
+  /**
+   * Ends the event and commits it if it is enabled and lasted beyond its threshold; only then the
+   * expression is measured.
+   *
+   * @param forma the name of the renderer
+   * @param espressione the expression represented
+   * @param testo the text written
+   */
+  public void fine(String forma, Nodo espressione, String testo) {
+    fine(forma, espressione, testo.length());
+  }
+
+  /**
+   * Ends the event and commits it if it is enabled and lasted beyond its threshold; only then the
+   * expression is measured.
+   *
+   * @param forma the name of the renderer
+   * @param espressione the expression represented
+   * @param caratteri the characters of the text written
+   */
+  public void fine(String forma, Nodo espressione, long caratteri) {
+    end();
+    if (shouldCommit()) {
+      Misura misura = Misura.di(espressione);
+      this.forma = forma;
+      this.dimensione = caratteri;
+      this.nodi = misura.nodi();
+      this.profondita = misura.profondita();
+      commit();
+    }
+  }
+}
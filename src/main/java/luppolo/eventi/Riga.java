@@ -0,0 +1,47 @@
+package luppolo.eventi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event for the transformation of a line of a batch. The events of the stages
+ * of the line are emitted by the same thread within its duration, so that they can be attributed
+ * to the line.
+ */
+@Name("luppolo.Riga")
+@Label("Riga")
+@Category("Luppolo")
+@Description("The transformation of a line of a batch")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class Riga extends jdk.jfr.Event {
+
+  /** The number of the line, starting from 1. */
+  @Label("Numero")
+  public long numero;
+
+  /** The characters of the line. */
+  @Label("Dimensione")
+  @DataAmount(DataAmount.BYTES)
+  public long dimensione;
+
+  /**
+   * Ends the event and commits it if it is enabled and lasted beyond its threshold.
+   *
+   * @param numero the number of the line, starting from 1
+   * @param riga the line
+   */
+  public void fine(long numero, String riga) {
+    end();
+    if (shouldCommit()) {
+      this.numero = numero;
+      this.dimensione = riga.length();
+      commit();
+    }
+  }
+}
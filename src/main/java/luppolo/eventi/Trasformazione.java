@@ -0,0 +1,58 @@
+package luppolo.eventi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import luppolo.*;
+
+/**
+ * A Flight Recorder event for the transformation of an expression by one of the engines of {@link
+ * luppolo.manipolazione}: simplification, expansion or derivation.
+ */
+@Name("luppolo.Trasformazione")
+@Label("Trasformazione")
+@Category("Luppolo")
+@Description("The transformation of an expression by an engine")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class Trasformazione extends jdk.jfr.Event {
+
+  /** The name of the engine. */
+  @Label("Visitatore")
+  public String visitatore;
+
+  /** The distinct nodes of the expression transformed. */
+  @Label("Dimensione")
+  public long dimensione;
+
+  /** The distinct nodes of the result. */
+  @Label("Nodi")
+  public long nodi;
+
+  /** The depth of the result. */
+  @Label("Profondità")
+  public int profondita;
+
+  /**
+   * Ends the event and commits it if it is enabled and lasted beyond its threshold; only then the
+   * expressions are measured.
+   *
+   * @param visitatore the name of the engine
+   * @param ingresso the expression transformed
+   * @param risultato the result
+   */
+  public void fine(String visitatore, Nodo ingresso, Nodo risultato) {
+    end();
+    if (shouldCommit()) {
+      Misura misura = Misura.di(risultato);
+      this.visitatore = visitatore;
+      this.dimensione = Misura.di(ingresso).nodi();
+      this.nodi = misura.nodi();
+      this.profondita = misura.profondita();
+      commit();
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package luppolo.manipolazione;
+
+import java.util.*;
+
+/**
+ * A thread-safe cache with a bounded number of entries. When the cache is full, adding a new entry
+ * evicts the least recently used one. The cache counts the lookups that found an entry (hits) and
+ * the ones that did not (misses), so that its effectiveness can be measured.
+ *
+ * <p>A single cache can be shared by several visitors, possibly running on different threads, for
+ * instance to reuse the simplified subexpressions across a whole batch of expressions.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class CacheLRU<K, V> {
+
+  /*
+   * AF: the entries of `mappa`, from the least to the most recently used; `successi` and
+   * `fallimenti` are the number of hits and misses of `get`.
+   *
+   * RI: capacita > 0, mappa not null, mappa.size() <= capacita, no null keys or values,
+   * successi >= 0, fallimenti >= 0. All the fields but capacita are guarded by `this`.
+   */
+
+  /** The maximum number of entries. */
+  private final int capacita;
+
+  /** The entries, in access order. */
+  private final LinkedHashMap<K, V> mappa;
+
+  /** The number of lookups that found an entry. */
+  private long successi;
+
+  /** The number of lookups that did not find an entry. */
+  private long fallimenti;
+
+  /**
+   * Constructs an empty cache with the given capacity.
+   *
+   * @param capacita the maximum number of entries
+   * @throws IllegalArgumentException if {@code capacita} is not positive
+   */
+  public CacheLRU(int capacita) {
+    if (capacita <= 0) throw new IllegalArgumentException("the capacity must be positive");
+    this.capacita = capacita;
+    // la capacità iniziale è limitata, così una cache molto grande non alloca subito la tabella
+    this.mappa =
+        new LinkedHashMap<>(Math.min(capacita, 1024), 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > CacheLRU.this.capacita;
+          }
+        };
+  }
+
+  /**
+   * Returns the value associated with a key, marking the entry as the most recently used.
+   *
+   * @param chiave the key
+   * @return the value associated with {@code chiave}, or {@code null} if there is none
+   * @throws NullPointerException if {@code chiave} is {@code null}
+   */
+  public synchronized V get(K chiave) {
+    Objects.requireNonNull(chiave, "the key cannot be null");
+    V valore = mappa.get(chiave);
+    if (valore == null) fallimenti++;
+    else successi++;
+    return valore;
+  }
+
+  /**
+   * Associates a value with a key, evicting the least recently used entry if the cache is full.
+   *
+   * @param chiave the key
+   * @param valore the value
+   * @throws NullPointerException if {@code chiave} or {@code valore} is {@code null}
+   */
+  public synchronized void put(K chiave, V valore) {
+    Objects.requireNonNull(chiave, "the key cannot be null");
+    Objects.requireNonNull(valore, "the value cannot be null");
+    mappa.put(chiave, valore);
+  }
+
+  /**
+   * Returns the maximum number of entries of this cache.
+   *
+   * @return the capacity
+   */
+  public int capacita() {
+    return capacita;
+  }
+
+  /**
+   * Returns the number of entries currently held by this cache.
+   *
+   * @return the number of entries
+   */
+  public synchronized int dimensione() {
+    return mappa.size();
+  }
+
+  /**
+   * Returns the number of lookups that found an entry.
+   *
+   * @return the number of hits
+   */
+  public synchronized long successi() {
+    return successi;
+  }
+
+  /**
+   * Returns the number of lookups that did not find an entry.
+   *
+   * @return the number of misses
+   */
+  public synchronized long fallimenti() {
+    return fallimenti;
+  }
+
+  /**
+   * Returns the fraction of the lookups that found an entry.
+   *
+   * @return the hit rate, between 0 and 1, or 0 if no lookup has been performed
+   */
+  public synchronized double tassoSuccesso() {
+    long totale = successi + fallimenti;
+    return totale == 0 ? 0 : (double) successi / totale;
+  }
+
+  /** Removes all the entries and resets the statistics. */
+  public synchronized void svuota() {
+    mappa.clear();
+    successi = 0;
+    fallimenti = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        Locale.ROOT,
+        "CacheLRU[dimensione=%d, capacita=%d, successi=%d, fallimenti=%d, tasso=%.3f]",
+        mappa.size(),
+        capacita,
+        successi,
+        fallimenti,
+        tassoSuccesso());
+  }
+}
@@ -2,19 +2,36 @@ package luppolo.manipolazione;
 
 import java.util.*;
 import luppolo.*;
+import luppolo.eventi.Trasformazione;
 
 /**
- * An immutable concrete class designed to compute derivatives using the Visitor pattern
- * (VisitorNodo interface). It ensures that derivatives are computed correctly based on the type of
- * mathematical expression node.
+ * A concrete class designed to compute derivatives using the Visitor pattern (VisitorNodo
+ * interface). It ensures that derivatives are computed correctly based on the type of mathematical
+ * expression node.
+ *
+ * <p>Expressions built from a linear program can share a subexpression among several parents. In
+ * <em>sharing</em> mode the derivatives of the internal nodes are cached by identity, so that every
+ * shared subexpression is differentiated once and its derivative is shared in the result as well:
+ * the cost is linear in the number of distinct nodes instead of in the number of paths, and deep
+ * expressions do not overflow the call stack (see {@link Condivisione}). The cache lives as long as
+ * the instance, which is then mutable and not thread-safe; a new instance should be used for every
+ * run. Without sharing mode instances are immutable.
  */
 public class Derivazione implements VisitorNodo {
   /** derivation variable */
   private final char var;
 
+  /** the factory used to build the derivative */
+  private final NodoFactory factory;
+
+  /** the derivatives of the internal nodes, by identity, or {@code null} without sharing mode */
+  private final Condivisione<Nodo> derivate;
+
   /*
-   * AF:  The derivation will be performed with respect to the variable {@code var}
-   * RI: 'a'<=var<='z'
+   * AF:  The derivation will be performed with respect to the variable {@code var}, building the
+   * nodes through {@code factory}; if derivate is not null it remembers the derivatives of the
+   * internal nodes already differentiated
+   * RI: 'a'<=var<='z', factory not {@code null}
    */
 
   /**
@@ -25,10 +42,78 @@ public class Derivazione implements VisitorNodo {
    * @throws IllegalArgumentException if the variable is not a lowercase letter between 'a' and 'z'
    */
   public Derivazione(char v) {
+    this(v, new NodoFactory());
+  }
+
+  /**
+   * Constructs a Derivazione object with the specified variable that builds the derivative through
+   * the given factory.
+   *
+   * @param v the variable on which to perform the derivation, must be a lowercase letter between
+   *     'a' and 'z'
+   * @param factory the factory used to build the derivative
+   * @throws IllegalArgumentException if the variable is not a lowercase letter between 'a' and 'z'
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Derivazione(char v, NodoFactory factory) {
+    this(v, factory, false);
+  }
+
+  /**
+   * Constructs a Derivazione object with the specified variable that builds the derivative through
+   * the given factory, possibly in sharing mode.
+   *
+   * @param v the variable on which to perform the derivation, must be a lowercase letter between
+   *     'a' and 'z'
+   * @param factory the factory used to build the derivative
+   * @param condivisione whether the derivatives of the shared subexpressions are computed once and
+   *     shared
+   * @throws IllegalArgumentException if the variable is not a lowercase letter between 'a' and 'z'
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Derivazione(char v, NodoFactory factory, boolean condivisione) {
     if (v > 'z' || v < 'a')
       throw new IllegalArgumentException(
           "The variable on which to perform derivation must be a between 'a' and 'z'");
     var = v;
+    this.factory =
+        Metriche.conta(
+            Objects.requireNonNull(factory, "the factory cannot be null"),
+            Metriche.Visitatore.DERIVAZIONE);
+    this.derivate = condivisione ? Condivisione.di(this) : null;
+  }
+
+  /**
+   * Differentiates an expression, looking the derivatives of its subexpressions up in the cache in
+   * sharing mode. The result is the same as the one of {@code nodo.accept(this)}; the derivation
+   * is recorded as a {@link Trasformazione} event. An expression deeper than {@link
+   * Condivisione#PROFONDITA_RICORSIVA} is differentiated in sharing mode, with an explicit stack,
+   * even if this Derivazione is not in sharing mode.
+   *
+   * @param nodo the expression to differentiate
+   * @return the derivative of {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public Nodo deriva(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Trasformazione evento = new Trasformazione();
+    evento.begin();
+    Nodo res =
+        derivate == null && nodo.profondita() > Condivisione.PROFONDITA_RICORSIVA
+            ? new Derivazione(var, factory, true).figlio(nodo)
+            : figlio(nodo);
+    evento.fine("derivazione", nodo, res);
+    return res;
+  }
+
+  /**
+   * Differentiates a child node, looking its derivative up in the cache in sharing mode.
+   *
+   * @param nodo the node to differentiate
+   * @return the derivative of {@code nodo}
+   */
+  private Nodo figlio(Nodo nodo) {
+    return derivate == null ? nodo.accept(this) : derivate.visita(nodo);
   }
 
   /**
@@ -40,8 +125,9 @@ public class Derivazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Razionale razionale) {
+    Metriche.visitato(Metriche.Visitatore.DERIVAZIONE);
     Objects.requireNonNull(razionale);
-    return new Razionale(0);
+    return factory.razionale(0);
   }
 
   /**
@@ -54,11 +140,12 @@ public class Derivazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Simbolo simbolo) {
+    Metriche.visitato(Metriche.Visitatore.DERIVAZIONE);
     Objects.requireNonNull(simbolo);
     if (simbolo.x == var) {
-      return new Razionale(1);
+      return factory.razionale(1);
     }
-    return new Razionale(0);
+    return factory.razionale(0);
   }
 
   /**
@@ -71,15 +158,16 @@ public class Derivazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Addizione addizione) {
+    Metriche.visitato(Metriche.Visitatore.DERIVAZIONE);
     Objects.requireNonNull(addizione);
 
     ArrayList<Nodo> d = new ArrayList<Nodo>();
     Iterator<Nodo> it = addizione.iterator();
     while (it.hasNext()) {
-      d.add(it.next().accept(this));
+      d.add(figlio(it.next()));
     }
 
-    return new Addizione(d);
+    return factory.addizione(d);
   }
 
   /**
@@ -92,6 +180,7 @@ public class Derivazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Moltiplicazione moltiplicazione) {
+    Metriche.visitato(Metriche.Visitatore.DERIVAZIONE);
     ArrayList<Nodo> ds = new ArrayList<Nodo>();
     ArrayList<Nodo> arr = new ArrayList<Nodo>();
     Iterator<Nodo> it = moltiplicazione.iterator();
@@ -105,12 +194,12 @@ public class Derivazione implements VisitorNodo {
         if (j != i) {
           dm.add(arr.get(j));
         } else { // caso i=j voglio derivata
-          dm.add(arr.get(j).accept(this));
+          dm.add(figlio(arr.get(j)));
         }
       }
-      ds.add(new Moltiplicazione(dm));
+      ds.add(factory.moltiplicazione(dm));
     }
-    return new Addizione(ds);
+    return factory.addizione(ds);
   }
 
   /**
@@ -123,13 +212,14 @@ public class Derivazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Potenza potenza) {
+    Metriche.visitato(Metriche.Visitatore.DERIVAZIONE);
     Objects.requireNonNull(potenza);
     Nodo base = potenza.getBase();
     Razionale esp = potenza.getEsponente();
     ArrayList<Nodo> d = new ArrayList<Nodo>();
     d.add(esp);
-    d.add(new Potenza(base, esp.somma(new Razionale(-1))));
-    d.add(base.accept(this));
-    return new Moltiplicazione(d);
+    d.add(factory.potenza(base, esp.somma(Razionale.MENO_UNO)));
+    d.add(figlio(base));
+    return factory.moltiplicazione(d);
   }
 }
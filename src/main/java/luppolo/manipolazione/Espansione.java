@@ -2,15 +2,170 @@ package luppolo.manipolazione;
 
 import java.util.*;
 import luppolo.*;
+import luppolo.eventi.Trasformazione;
 
 /**
  * A concrete class that aims to simplify and transform complex expressions into their expanded
  * forms, It utilizes the Visitor pattern (VisitorNodo interface) to traverse different types of
  * nodes (Razionale, Simbolo, Addizione, Moltiplicazione, Potenza) and applies expanding rules
  * accordingly
+ *
+ * <p>By default a power with integer exponent n is expanded as the product of n copies of its
+ * base. In <em>multinomial</em> mode the power of a polynomial base is expanded through a {@link
+ * Polinomio} by the multinomial theorem, while the power of any other base is expanded by repeated
+ * squaring; the result is equal but generally smaller, and its size does not depend on the
+ * exponent times the size of the intermediate products.
+ *
+ * <p>In <em>sharing</em> mode the expansions of the internal nodes are remembered by identity (see
+ * {@link Condivisione}), so that every shared subexpression is expanded once and the depth of the
+ * expression does not overflow the call stack; the instance is then mutable and not thread-safe.
  */
 public class Espansione implements VisitorNodo {
 
+  /*
+   * AF: the expansion builds its nodes through {@code factory}, expanding the powers by the
+   * multinomial theorem if multinomiale holds or as repeated products otherwise; if espansi is not
+   * null it remembers the expansions of the internal nodes already met, by identity
+   * RI: factory not {@code null}
+   */
+
+  /** the factory used to build the expanded nodes */
+  private final NodoFactory factory;
+
+  /** whether the powers are expanded by the multinomial theorem */
+  private final boolean multinomiale;
+
+  /** the expanded internal nodes, by identity, or {@code null} without sharing mode */
+  private final Condivisione<Nodo> espansi;
+
+  /** Constructs an Espansione that allocates a new node for every expanded subtree. */
+  public Espansione() {
+    this(new NodoFactory());
+  }
+
+  /**
+   * Constructs an Espansione that builds its nodes through the given factory.
+   *
+   * @param factory the factory used to build the expanded nodes
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Espansione(NodoFactory factory) {
+    this(factory, false);
+  }
+
+  /**
+   * Constructs an Espansione that builds its nodes through the given factory, possibly in
+   * multinomial mode.
+   *
+   * @param factory the factory used to build the expanded nodes
+   * @param multinomiale whether the powers are expanded by the multinomial theorem
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Espansione(NodoFactory factory, boolean multinomiale) {
+    this(factory, multinomiale, false);
+  }
+
+  /**
+   * Constructs an Espansione that builds its nodes through the given factory, possibly in
+   * multinomial and in sharing mode.
+   *
+   * @param factory the factory used to build the expanded nodes
+   * @param multinomiale whether the powers are expanded by the multinomial theorem
+   * @param condivisione whether the shared subexpressions are expanded once
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Espansione(NodoFactory factory, boolean multinomiale, boolean condivisione) {
+    this.factory =
+        Metriche.conta(
+            Objects.requireNonNull(factory, "the factory cannot be null"),
+            Metriche.Visitatore.ESPANSIONE);
+    this.multinomiale = multinomiale;
+    this.espansi = condivisione ? Condivisione.di(this) : null;
+  }
+
+  /**
+   * Expands an expression. The result is the same as the one of {@code nodo.accept(this)}; the
+   * expansion is recorded as a {@link Trasformazione} event. An expression deeper than {@link
+   * Condivisione#PROFONDITA_RICORSIVA} is expanded in sharing mode, with an explicit stack, even if
+   * this Espansione is not in sharing mode.
+   *
+   * @param nodo the expression to expand
+   * @return the expanded expression
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public Nodo espandi(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Trasformazione evento = new Trasformazione();
+    evento.begin();
+    Nodo res = radice(nodo);
+    evento.fine("espansione", nodo, res);
+    return res;
+  }
+
+  /**
+   * Expands and simplifies an expression. Polynomial expressions (see {@link
+   * Polinomio#fromNodo(Nodo)}) are expanded through a {@link Polinomio}, which combines the like
+   * terms as soon as they are generated instead of building the whole expanded tree; the other
+   * expressions are expanded by a visitor in multinomial mode. The result is simplified with the
+   * given Semplificazione in both cases; the expansion and the simplification are recorded as two
+   * {@link Trasformazione} events.
+   *
+   * @param nodo the expression to expand and simplify
+   * @param semplificazione the Semplificazione applied to the expanded expression
+   * @return the expanded and simplified expression
+   * @throws NullPointerException if {@code nodo} or {@code semplificazione} is {@code null}
+   * @throws ArithmeticException if the expanded expression contains an indeterminate form
+   */
+  public Nodo espandiESemplifica(Nodo nodo, Semplificazione semplificazione) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Objects.requireNonNull(semplificazione, "the Semplificazione cannot be null");
+    Trasformazione evento = new Trasformazione();
+    evento.begin();
+    Polinomio polinomio = Polinomio.fromNodo(nodo);
+    Nodo espanso =
+        polinomio != null
+            ? polinomio.toNodo(factory)
+            : (multinomiale ? this : new Espansione(factory, true, espansi != null)).radice(nodo);
+    evento.fine("espansione", nodo, espanso);
+    return semplificazione.semplifica(espanso);
+  }
+
+  /**
+   * Expands an expression, in sharing mode if it is too deep to be expanded recursively.
+   *
+   * @param nodo the expression to expand
+   * @return the expanded expression
+   */
+  private Nodo radice(Nodo nodo) {
+    if (espansi != null || nodo.profondita() <= Condivisione.PROFONDITA_RICORSIVA) {
+      return figlio(nodo);
+    }
+    return new Espansione(factory, multinomiale, true).figlio(nodo);
+  }
+
+  /**
+   * Expands a subexpression met during an expansion.
+   *
+   * @param nodo the node to expand
+   * @return the expanded node
+   */
+  private Nodo figlio(Nodo nodo) {
+    return espansi == null ? nodo.accept(this) : espansi.visita(nodo);
+  }
+
+  /**
+   * Expands and simplifies an expression, simplifying with a Semplificazione that uses the same
+   * factory as this Espansione.
+   *
+   * @param nodo the expression to expand and simplify
+   * @return the expanded and simplified expression
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   * @throws ArithmeticException if the expanded expression contains an indeterminate form
+   */
+  public Nodo espandiESemplifica(Nodo nodo) {
+    return espandiESemplifica(nodo, new Semplificazione(factory));
+  }
+
   /**
    * Visits and returns the given rational node without any modifications.
    *
@@ -20,6 +175,7 @@ public class Espansione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Razionale razionale) {
+    Metriche.visitato(Metriche.Visitatore.ESPANSIONE);
     Objects.requireNonNull(razionale);
     return razionale;
   }
@@ -33,6 +189,7 @@ public class Espansione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Simbolo simbolo) {
+    Metriche.visitato(Metriche.Visitatore.ESPANSIONE);
     Objects.requireNonNull(simbolo);
     return simbolo;
   }
@@ -46,14 +203,15 @@ public class Espansione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Addizione addizione) {
+    Metriche.visitato(Metriche.Visitatore.ESPANSIONE);
     Objects.requireNonNull(addizione);
 
     ArrayList<Nodo> arr = new ArrayList<Nodo>();
     Iterator<Nodo> it = addizione.iterator();
     while (it.hasNext()) {
-      arr.add((it.next()).accept(this));
+      arr.add(figlio(it.next()));
     }
-    return new Addizione(arr);
+    return factory.addizione(arr);
   }
 
   /**
@@ -84,7 +242,7 @@ public class Espansione implements VisitorNodo {
     } else if (f1 instanceof Moltiplicazione && !isF2Addizione && !first) {
       return handleMoltiplicazioneWithNonAddizione((Moltiplicazione) f1, f2);
     } else {
-      return new Moltiplicazione(Arrays.asList(f1, f2));
+      return factory.moltiplicazione(Arrays.asList(f1, f2));
     }
   }
 
@@ -101,9 +259,9 @@ public class Espansione implements VisitorNodo {
     Iterator<Nodo> it = addizione.iterator();
     while (it.hasNext()) {
       Nodo next = it.next();
-      figliAdd.add(new Moltiplicazione(Arrays.asList(next, other)));
+      figliAdd.add(factory.moltiplicazione(Arrays.asList(next, other)));
     }
-    return new Addizione(figliAdd);
+    return factory.addizione(figliAdd);
   }
 
   /**
@@ -121,10 +279,10 @@ public class Espansione implements VisitorNodo {
       Nodo next1 = it1.next();
       Iterator<Nodo> it2 = add2.iterator();
       while (it2.hasNext()) {
-        figliAdd.add(new Moltiplicazione(Arrays.asList(next1, it2.next())));
+        figliAdd.add(factory.moltiplicazione(Arrays.asList(next1, it2.next())));
       }
     }
-    return new Addizione(figliAdd);
+    return factory.addizione(figliAdd);
   }
 
   /**
@@ -143,7 +301,7 @@ public class Espansione implements VisitorNodo {
       fattoriSottoespressioni.add(it1.next());
     }
     fattoriSottoespressioni.add(other);
-    return new Moltiplicazione(fattoriSottoespressioni);
+    return factory.moltiplicazione(fattoriSottoespressioni);
   }
 
   /**
@@ -164,13 +322,14 @@ public class Espansione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Moltiplicazione moltiplicazione) {
+    Metriche.visitato(Metriche.Visitatore.ESPANSIONE);
     Objects.requireNonNull(moltiplicazione);
 
     ArrayList<Nodo> arr = new ArrayList<Nodo>();
     Iterator<Nodo> it = moltiplicazione.iterator();
 
     while (it.hasNext()) {
-      arr.add(it.next().accept(this));
+      arr.add(figlio(it.next()));
     }
 
     Nodo f1 = controlli(arr.get(0), arr.get(1), true);
@@ -190,7 +349,8 @@ public class Espansione implements VisitorNodo {
    * exponent in the form p/q are expanded as the product of the base itself |p| times, raised to
    * the power of p/|p|q: For example, (x+y)^(-2/3) is expanded as (x*x + x*y + x*y + y*y)^(-1/3).
    * If the exponent is 0, the power is expanded as 1. If the exponent is 1, it is expanded as the
-   * base itself.
+   * base itself. In multinomial mode the power of the base to |p| is expanded by {@link
+   * #potenzaIntera(Nodo, long)} instead.
    *
    * @param potenza The power node to visit and expand.
    * @return the expanded node.
@@ -198,34 +358,88 @@ public class Espansione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Potenza potenza) {
+    Metriche.visitato(Metriche.Visitatore.ESPANSIONE);
     Objects.requireNonNull(potenza);
 
     ArrayList<Nodo> MoltBase = new ArrayList<Nodo>();
 
-    Nodo base = potenza.getBase().accept(this);
+    Nodo base = figlio(potenza.getBase());
     Razionale esponente = potenza.getEsponente();
-    long esponenteNum = esponente.num;
-    long esponenteDen = esponente.den;
-    Nodo res = new Potenza(base, potenza.getEsponente());
+    long esponenteNum = esponente.num();
+    long esponenteDen = esponente.den();
+    Nodo res = factory.potenza(base, potenza.getEsponente());
 
-    if (esponente.equals(new Razionale(1))) {
+    if (esponente.isUno()) {
       return base;
-    } else if (esponente.equals(new Razionale(0))) {
-      res = new Razionale(1);
+    } else if (esponente.isZero()) {
+      res = factory.razionale(1);
     } else if (Math.abs(esponenteNum) > 1) {
-      for (int i = 0; i < (int) Math.abs(esponenteNum); i++) {
-        MoltBase.add(base);
+      Nodo newBase;
+      if (multinomiale) {
+        newBase = potenzaIntera(base, Math.abs(esponenteNum));
+      } else {
+        for (int i = 0; i < (int) Math.abs(esponenteNum); i++) {
+          MoltBase.add(base);
+        }
+        newBase = figlio(factory.moltiplicazione(MoltBase));
       }
-
-      Nodo newBase = new Moltiplicazione(MoltBase).accept(this);
       if (esponenteDen == 1 && esponenteNum > 1) {
         res = newBase;
       } else {
         res =
-            new Potenza(
-                newBase, new Razionale(Math.abs(esponenteNum) / esponenteNum, esponenteDen));
+            factory.potenza(
+                newBase, factory.razionale(Math.abs(esponenteNum) / esponenteNum, esponenteDen));
       }
     }
     return res;
   }
+
+  /**
+   * Expands the power of an expanded base to an integer exponent greater than 1. A polynomial base
+   * is raised through a {@link Polinomio}, by the multinomial theorem; any other base is raised by
+   * repeated squaring, distributing each product as {@link #visit(Moltiplicazione)} does.
+   *
+   * @param base the expanded base
+   * @param k the exponent, greater than 1
+   * @return the expansion of {@code base} raised to {@code k}
+   */
+  private Nodo potenzaIntera(Nodo base, long k) {
+    Polinomio polinomio = Polinomio.fromNodo(base);
+    // k viene confrontato da solo prima del prodotto, che così non può traboccare
+    if (polinomio != null
+        && (polinomio.grado() == 0
+            || k <= Polinomio.MASSIMO_ESPONENTE
+                && polinomio.grado() * k <= Polinomio.MASSIMO_ESPONENTE)) {
+      return polinomio.potenza(k).toNodo(factory);
+    }
+    Nodo res = null;
+    Nodo quadrato = base;
+    for (long e = k; e != 0; e >>= 1) {
+      if ((e & 1) != 0) res = res == null ? quadrato : prodotto(res, quadrato);
+      if (e > 1) quadrato = prodotto(quadrato, quadrato);
+    }
+    return res;
+  }
+
+  /**
+   * Multiplies two expanded nodes for {@link #potenzaIntera(Nodo, long)}. If one of them is an
+   * addition the product is distributed; otherwise the factors of both are collected in a single
+   * flat multiplication, as in the product of n copies of the base.
+   *
+   * @param f1 the first node
+   * @param f2 the second node
+   * @return the expanded product
+   */
+  private Nodo prodotto(Nodo f1, Nodo f2) {
+    if (f1 instanceof Addizione || f2 instanceof Addizione) return controlli(f1, f2, true);
+    ArrayList<Nodo> fattori = new ArrayList<>();
+    for (Nodo f : Arrays.asList(f1, f2)) {
+      if (f instanceof Moltiplicazione) {
+        for (Nodo fattore : (Moltiplicazione) f) fattori.add(fattore);
+      } else {
+        fattori.add(f);
+      }
+    }
+    return factory.moltiplicazione(fattori);
+  }
 }
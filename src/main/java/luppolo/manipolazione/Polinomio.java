@@ -0,0 +1,587 @@
+package luppolo.manipolazione;
+
+import java.util.*;
+import luppolo.*;
+
+/**
+ * An immutable sparse multivariate polynomial with rational coefficients in the symbols 'a'..'z'.
+ * It is the backend used by {@link Espansione} to expand polynomial expressions without building
+ * the intermediate trees.
+ *
+ * <p>Every monomial is a packed vector of exponents: the exponent of each symbol takes 8 bits,
+ * hence a monomial fits in {@value #PAROLE} {@code long} words and the product of two monomials is
+ * computed with a few additions on the words. The monomials are the keys of an open-addressing
+ * hash table held in two arrays, one of primitive words and one of coefficients.
+ */
+public final class Polinomio {
+
+  /*
+   * AF: the sum, for every slot i such that coefficienti[i] is not null, of coefficienti[i] times
+   * the product of the symbols (char) ('a' + v) raised to the exponent stored in the bits
+   * [8 * (v % 8), 8 * (v % 8) + 8) of monomi[PAROLE * i + v / 8].
+   *
+   * RI: monomi.length == PAROLE * coefficienti.length, coefficienti.length is a power of two,
+   * 2 * dimensione <= coefficienti.length, dimensione is the number of not null coefficients,
+   * no coefficient is zero (once the polynomial has been built), the monomials of the not null
+   * slots are distinct and each of them can be reached from its home slot by linear probing
+   * through not null slots only.
+   */
+
+  /** The number of {@code long} words of a monomial. */
+  static final int PAROLE = 4;
+
+  /** The largest exponent of a symbol in a monomial. */
+  static final int MASSIMO_ESPONENTE = 255;
+
+  /** The mask of the highest bit of each exponent in a word. */
+  private static final long ALTI = 0x8080808080808080L;
+
+  /** The rows of Pascal's triangle computed so far, shared by all the expansions. */
+  private static volatile Razionale[][] triangolo = {{Razionale.UNO}};
+
+  /** The packed exponents of the monomials, {@code PAROLE} words per slot. */
+  private long[] monomi;
+
+  /** The coefficients of the monomials, {@code null} for the empty slots. */
+  private Razionale[] coefficienti;
+
+  /** The number of monomials. */
+  private int dimensione;
+
+  /**
+   * Constructs an empty polynomial with room for the given number of monomials.
+   *
+   * @param attesi the expected number of monomials
+   */
+  private Polinomio(int attesi) {
+    int capacita = Integer.highestOneBit(Math.max(4, attesi) * 2 - 1) << 1;
+    monomi = new long[capacita * PAROLE];
+    coefficienti = new Razionale[capacita];
+  }
+
+  /**
+   * Returns the polynomial with a single constant term.
+   *
+   * @param c the constant
+   * @return the constant polynomial {@code c}
+   * @throws NullPointerException if {@code c} is {@code null}
+   */
+  public static Polinomio costante(Razionale c) {
+    Objects.requireNonNull(c, "the constant cannot be null");
+    Polinomio p = new Polinomio(1);
+    if (!c.isZero()) p.aggiungi(new long[PAROLE], 0, c);
+    return p;
+  }
+
+  /**
+   * Returns the polynomial made of a single symbol.
+   *
+   * @param simbolo the symbol
+   * @return the polynomial {@code simbolo}
+   * @throws IllegalArgumentException if simbolo is not a charachter between 'a' and 'z'
+   */
+  public static Polinomio variabile(char simbolo) {
+    if (simbolo > 'z' || simbolo < 'a')
+      throw new IllegalArgumentException("Simbolo charachter must be between 'a' and 'z'");
+    long[] monomio = new long[PAROLE];
+    int v = simbolo - 'a';
+    monomio[v / 8] = 1L << (8 * (v % 8));
+    Polinomio p = new Polinomio(1);
+    p.aggiungi(monomio, 0, Razionale.UNO);
+    return p;
+  }
+
+  /**
+   * Converts an expression to a polynomial. An expression is a polynomial if it only contains
+   * rationals, symbols, additions, multiplications and powers with a non negative integer exponent,
+   * and if no symbol can get an exponent larger than {@value #MASSIMO_ESPONENTE}. The expression is
+   * walked with an explicit stack, visiting every distinct subexpression once, so that its depth
+   * and the sharing of its subexpressions cost nothing.
+   *
+   * @param nodo the expression
+   * @return the polynomial equal to the expansion of {@code nodo}, or {@code null} if {@code nodo}
+   *     is not a polynomial
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public static Polinomio fromNodo(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    if (!(nodo instanceof NodoInterno)) return foglia(nodo);
+    List<NodoInterno> ordine = Condivisione.postordine(nodo);
+    // i gradi di tutti i sottoalberi vengono controllati prima di convertirne qualcuno
+    Map<Nodo, Long> gradi = new IdentityHashMap<>();
+    for (NodoInterno n : ordine) {
+      long grado = grado(n, gradi);
+      if (grado < 0 || grado > MASSIMO_ESPONENTE) return null;
+      gradi.put(n, grado);
+    }
+    // il polinomio di un sottoalbero viene dimenticato dopo la conversione del suo ultimo padre
+    Map<Nodo, Integer> occorrenze = Condivisione.occorrenze(nodo);
+    Map<Nodo, Polinomio> polinomi = new IdentityHashMap<>();
+    for (NodoInterno n : ordine) polinomi.put(n, converti(n, polinomi, occorrenze));
+    return polinomi.get(nodo);
+  }
+
+  /**
+   * Computes an upper bound of the total degree of an internal node.
+   *
+   * @param nodo the node
+   * @param gradi the degrees of the internal children of {@code nodo}
+   * @return an upper bound of the degree, saturated at {@code Integer.MAX_VALUE}, or -1 if {@code
+   *     nodo} is not a polynomial
+   */
+  private static long grado(NodoInterno nodo, Map<Nodo, Long> gradi) {
+    if (nodo instanceof Potenza) {
+      Potenza p = (Potenza) nodo;
+      Razionale e = p.getEsponente();
+      if (!e.isIntero() || e.signum() < 0) return -1;
+      if (!e.isLong() || e.num() > Integer.MAX_VALUE) return -1;
+      long g = grado(p.getBase(), gradi);
+      if (g <= 0) return g;
+      return Math.min(Integer.MAX_VALUE, g * e.num());
+    }
+    boolean somma = nodo instanceof Addizione;
+    long res = 0;
+    for (Nodo figlio : nodo) {
+      long g = grado(figlio, gradi);
+      res = somma ? Math.max(res, g) : Math.min(Integer.MAX_VALUE, res + g);
+    }
+    return res;
+  }
+
+  /**
+   * Returns the degree of a child, already computed if it is an internal node.
+   *
+   * @param figlio the child
+   * @param gradi the degrees of the internal nodes computed so far
+   * @return the degree of {@code figlio}
+   */
+  private static long grado(Nodo figlio, Map<Nodo, Long> gradi) {
+    if (figlio instanceof Razionale) return 0;
+    if (figlio instanceof Simbolo) return 1;
+    return gradi.get(figlio);
+  }
+
+  /**
+   * Converts an internal node of a polynomial expression whose degree is at most {@value
+   * #MASSIMO_ESPONENTE}.
+   *
+   * @param nodo the node
+   * @param polinomi the polynomials of the internal children of {@code nodo}
+   * @param occorrenze the occurrences of the internal nodes not converted yet
+   * @return the polynomial equal to the expansion of {@code nodo}
+   */
+  private static Polinomio converti(
+      NodoInterno nodo, Map<Nodo, Polinomio> polinomi, Map<Nodo, Integer> occorrenze) {
+    if (nodo instanceof Potenza) {
+      Potenza p = (Potenza) nodo;
+      Nodo base = p.getBase();
+      // una base costante può avere un esponente qualsiasi
+      if (base instanceof Razionale) return costante(((Razionale) base).power(p.getEsponente()));
+      return figlio(base, polinomi, occorrenze).potenza(Math.toIntExact(p.getEsponente().num()));
+    }
+    Iterator<Nodo> it = nodo.iterator();
+    Polinomio res = figlio(it.next(), polinomi, occorrenze);
+    while (it.hasNext()) {
+      Polinomio figlio = figlio(it.next(), polinomi, occorrenze);
+      res = nodo instanceof Addizione ? res.somma(figlio) : res.prodotto(figlio);
+    }
+    return res;
+  }
+
+  /**
+   * Returns the polynomial of a child, already converted if it is an internal node, forgetting it
+   * after its last occurrence.
+   *
+   * @param figlio the child
+   * @param polinomi the polynomials of the internal nodes converted so far
+   * @param occorrenze the occurrences of the internal nodes not converted yet
+   * @return the polynomial of {@code figlio}
+   */
+  private static Polinomio figlio(
+      Nodo figlio, Map<Nodo, Polinomio> polinomi, Map<Nodo, Integer> occorrenze) {
+    if (!(figlio instanceof NodoInterno)) return foglia(figlio);
+    int restanti = occorrenze.merge(figlio, -1, Integer::sum);
+    return restanti == 0 ? polinomi.remove(figlio) : polinomi.get(figlio);
+  }
+
+  /**
+   * Converts a leaf.
+   *
+   * @param foglia the leaf, a rational or a symbol
+   * @return the polynomial equal to {@code foglia}
+   */
+  private static Polinomio foglia(Nodo foglia) {
+    if (foglia instanceof Razionale) return costante((Razionale) foglia);
+    return variabile(((Simbolo) foglia).x);
+  }
+
+  /**
+   * Returns the number of monomials of this polynomial.
+   *
+   * @return the number of terms with a non zero coefficient
+   */
+  public int dimensione() {
+    return dimensione;
+  }
+
+  /**
+   * Tells whether this polynomial is zero.
+   *
+   * @return {@code true} if this polynomial has no terms
+   */
+  public boolean isZero() {
+    return dimensione == 0;
+  }
+
+  /**
+   * Adds this polynomial to another one.
+   *
+   * @param altro the other polynomial
+   * @return the sum of the two polynomials
+   * @throws NullPointerException if {@code altro} is {@code null}
+   */
+  public Polinomio somma(Polinomio altro) {
+    Objects.requireNonNull(altro, "the polynomial cannot be null");
+    Polinomio res = new Polinomio(dimensione + altro.dimensione);
+    for (int i = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] != null) res.aggiungi(monomi, i * PAROLE, coefficienti[i]);
+    }
+    for (int i = 0; i < altro.coefficienti.length; i++) {
+      if (altro.coefficienti[i] != null) {
+        res.aggiungi(altro.monomi, i * PAROLE, altro.coefficienti[i]);
+      }
+    }
+    return res.compatta();
+  }
+
+  /**
+   * Multiplies this polynomial by another one.
+   *
+   * @param altro the other polynomial
+   * @return the product of the two polynomials
+   * @throws NullPointerException if {@code altro} is {@code null}
+   * @throws ArithmeticException if a symbol gets an exponent larger than {@value
+   *     #MASSIMO_ESPONENTE}
+   */
+  public Polinomio prodotto(Polinomio altro) {
+    Objects.requireNonNull(altro, "the polynomial cannot be null");
+    Polinomio res = new Polinomio(Math.min(dimensione * altro.dimensione, 1 << 20));
+    long[] monomio = new long[PAROLE];
+    for (int i = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] == null) continue;
+      for (int j = 0; j < altro.coefficienti.length; j++) {
+        if (altro.coefficienti[j] == null) continue;
+        for (int w = 0; w < PAROLE; w++) {
+          monomio[w] = sommaEsponenti(monomi[i * PAROLE + w], altro.monomi[j * PAROLE + w]);
+        }
+        res.aggiungi(monomio, 0, coefficienti[i].moltRazionale(altro.coefficienti[j]));
+      }
+    }
+    return res.compatta();
+  }
+
+  /**
+   * Raises this polynomial to a non negative integer power. The terms of the result are generated
+   * directly by the multinomial theorem: for every way of writing {@code k = k1 + ... + km}, where
+   * {@code m} is the number of terms of this polynomial, the product of the i-th term raised to
+   * {@code ki} is added with the multinomial coefficient {@code k! / (k1! ... km!)}. The powers of
+   * the single terms are computed once, and the binomial coefficients are cached across calls.
+   *
+   * @param k the exponent
+   * @return this polynomial raised to {@code k}
+   * @throws IllegalArgumentException if {@code k} is negative
+   * @throws ArithmeticException if a symbol gets an exponent larger than {@value
+   *     #MASSIMO_ESPONENTE}, or if this polynomial is a constant whose power is too large to be
+   *     represented
+   */
+  public Polinomio potenza(long k) {
+    if (k < 0) throw new IllegalArgumentException("the exponent cannot be negative");
+    if (k == 0) return costante(Razionale.UNO);
+    if (k == 1 || dimensione == 0) return this;
+    // raccolgo i termini in array compatti
+    int m = dimensione;
+    long[] termini = new long[m * PAROLE];
+    Razionale[] coeff = new Razionale[m];
+    for (int i = 0, t = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] == null) continue;
+      System.arraycopy(monomi, i * PAROLE, termini, t * PAROLE, PAROLE);
+      coeff[t++] = coefficienti[i];
+    }
+    if (m == 1 && grado() == 0) return costante(coeff[0].power(Razionale.of(k)));
+    // almeno un termine contiene un simbolo, che avrebbe un esponente maggiore di k
+    if (k > MASSIMO_ESPONENTE) throw new ArithmeticException("the exponent is too large");
+    int n = (int) k;
+    // potenze dei singoli termini, da 0 a n
+    long[][] potenzeMonomi = new long[m][(n + 1) * PAROLE];
+    Razionale[][] potenzeCoeff = new Razionale[m][n + 1];
+    for (int i = 0; i < m; i++) {
+      potenzeCoeff[i][0] = Razionale.UNO;
+      for (int e = 1; e <= n; e++) {
+        for (int w = 0; w < PAROLE; w++) {
+          potenzeMonomi[i][e * PAROLE + w] =
+              sommaEsponenti(potenzeMonomi[i][(e - 1) * PAROLE + w], termini[i * PAROLE + w]);
+        }
+        potenzeCoeff[i][e] = potenzeCoeff[i][e - 1].moltRazionale(coeff[i]);
+      }
+    }
+    Polinomio res = new Polinomio(stimaTermini(m, n));
+    multinomio(res, potenzeMonomi, potenzeCoeff, binomiali(n), n);
+    return res.compatta();
+  }
+
+  /**
+   * Adds to a polynomial the terms of a multinomial expansion. The ways of writing the exponent as
+   * a sum of the exponents of the terms are enumerated like an odometer, from the largest exponent
+   * of the first term down, with an explicit stack of the exponents chosen so far, so that the
+   * depth of the calls does not grow with the number of terms.
+   *
+   * @param res the polynomial being built
+   * @param potenzeMonomi the powers of the monomials of the terms
+   * @param potenzeCoeff the powers of the coefficients of the terms
+   * @param binomiali the binomial coefficients
+   * @param k the exponent
+   */
+  private static void multinomio(
+      Polinomio res,
+      long[][] potenzeMonomi,
+      Razionale[][] potenzeCoeff,
+      Razionale[][] binomiali,
+      int k) {
+    int m = potenzeMonomi.length;
+    // al livello i: l'esponente scelto per il termine i, quello rimasto per i termini da i in poi,
+    // il prodotto dei monomi e dei coefficienti scelti per i termini prima di i
+    int[] esponenti = new int[m];
+    int[] resti = new int[m];
+    long[] parziali = new long[(m + 1) * PAROLE];
+    Razionale[] coefficienti = new Razionale[m];
+    esponenti[0] = k;
+    resti[0] = k;
+    coefficienti[0] = Razionale.UNO;
+    int i = 0;
+    while (i >= 0) {
+      int e = esponenti[i];
+      int resto = resti[i];
+      // l'ultimo termine prende tutto l'esponente rimasto
+      if (e < (i == m - 1 ? resto : 0)) {
+        if (--i >= 0) esponenti[i]--;
+        continue;
+      }
+      int da = i * PAROLE;
+      for (int w = 0; w < PAROLE; w++) {
+        parziali[da + PAROLE + w] =
+            sommaEsponenti(parziali[da + w], potenzeMonomi[i][e * PAROLE + w]);
+      }
+      Razionale ce =
+          coefficienti[i].moltRazionale(potenzeCoeff[i][e]).moltRazionale(binomiali[resto][e]);
+      if (i == m - 1 || e == resto) {
+        // i termini successivi hanno esponente 0
+        res.aggiungi(parziali, da + PAROLE, ce);
+        esponenti[i]--;
+      } else {
+        i++;
+        esponenti[i] = resto - e;
+        resti[i] = resto - e;
+        coefficienti[i] = ce;
+      }
+    }
+  }
+
+  /**
+   * Estimates the number of terms generated by the multinomial expansion.
+   *
+   * @param m the number of terms of the base
+   * @param k the exponent
+   * @return the binomial coefficient {@code (k + m - 1, m - 1)}, bounded to {@code 1 << 20}
+   */
+  private static int stimaTermini(int m, int k) {
+    double stima = 1;
+    for (int j = 1; j < m && stima < (1 << 20); j++) stima = stima * (k + j) / j;
+    return (int) Math.min(stima, 1 << 20);
+  }
+
+  /**
+   * Returns the binomial coefficients up to the given row.
+   *
+   * @param n the last row needed
+   * @return an array whose row {@code r}, for every {@code r <= n}, holds the binomial coefficients
+   *     {@code (r, 0) ... (r, r)}
+   */
+  private static Razionale[][] binomiali(int n) {
+    Razionale[][] t = triangolo;
+    if (t.length > n) return t;
+    synchronized (Polinomio.class) {
+      t = triangolo;
+      if (t.length > n) return t;
+      Razionale[][] nuovo = Arrays.copyOf(t, n + 1);
+      for (int r = t.length; r <= n; r++) {
+        nuovo[r] = new Razionale[r + 1];
+        nuovo[r][0] = Razionale.UNO;
+        nuovo[r][r] = Razionale.UNO;
+        for (int j = 1; j < r; j++) nuovo[r][j] = nuovo[r - 1][j - 1].somma(nuovo[r - 1][j]);
+      }
+      triangolo = nuovo;
+      return nuovo;
+    }
+  }
+
+  /**
+   * Returns the total degree of this polynomial.
+   *
+   * @return the largest sum of the exponents of a monomial, or 0 if this polynomial is zero
+   */
+  public int grado() {
+    int res = 0;
+    for (int i = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] == null) continue;
+      int g = 0;
+      for (int w = 0; w < PAROLE; w++) {
+        for (int b = 0; b < 64; b += 8) g += (int) (monomi[i * PAROLE + w] >>> b) & 0xFF;
+      }
+      res = Math.max(res, g);
+    }
+    return res;
+  }
+
+  /**
+   * Converts this polynomial to an expression, with a term for every monomial. The terms are
+   * {@code Moltiplicazione} nodes made of the coefficient (omitted if it is one) and of the symbols
+   * raised to their exponent.
+   *
+   * @param factory the factory used to build the nodes
+   * @return the expression representing this polynomial
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Nodo toNodo(NodoFactory factory) {
+    Objects.requireNonNull(factory, "the factory cannot be null");
+    List<Nodo> termini = new ArrayList<>(dimensione);
+    for (int i = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] == null) continue;
+      Razionale c = coefficiente(factory, coefficienti[i]);
+      List<Nodo> fattori = new ArrayList<>();
+      if (!c.isUno()) fattori.add(c);
+      for (int v = 0; v < 26; v++) {
+        int e = (int) (monomi[i * PAROLE + v / 8] >>> (8 * (v % 8))) & 0xFF;
+        if (e == 0) continue;
+        Simbolo s = factory.simbolo((char) ('a' + v));
+        fattori.add(e == 1 ? s : factory.potenza(s, factory.razionale(e)));
+      }
+      if (fattori.isEmpty()) termini.add(c);
+      else termini.add(fattori.size() == 1 ? fattori.get(0) : factory.moltiplicazione(fattori));
+    }
+    if (termini.isEmpty()) return factory.razionale(0);
+    return termini.size() == 1 ? termini.get(0) : factory.addizione(termini);
+  }
+
+  /**
+   * Hands a coefficient to a factory, so that it can be replaced by a shared instance.
+   *
+   * @param factory the factory
+   * @param c the coefficient
+   * @return the coefficient built by {@code factory}
+   */
+  private static Razionale coefficiente(NodoFactory factory, Razionale c) {
+    if (c.isLong()) return factory.razionale(c.num(), c.den());
+    return factory.razionale(c.getNumeratore(), c.getDenominatore());
+  }
+
+  /**
+   * Adds two packed vectors of exponents.
+   *
+   * @param a the first word
+   * @param b the second word
+   * @return the word holding the sums of the exponents
+   * @throws ArithmeticException if an exponent gets larger than {@value #MASSIMO_ESPONENTE}
+   */
+  private static long sommaEsponenti(long a, long b) {
+    // somma byte per byte senza propagare il riporto tra un esponente e il successivo
+    long s = ((a & ~ALTI) + (b & ~ALTI)) ^ ((a ^ b) & ALTI);
+    long riporto = ((a & b) | ((a | b) & ~s)) & ALTI;
+    if (riporto != 0) throw new ArithmeticException("the exponent of a symbol is too large");
+    return s;
+  }
+
+  /**
+   * Adds a term to this polynomial while it is being built.
+   *
+   * @param monomio the array holding the monomial
+   * @param da the index of the first word of the monomial in {@code monomio}
+   * @param c the coefficient
+   */
+  private void aggiungi(long[] monomio, int da, Razionale c) {
+    if (2 * (dimensione + 1) > coefficienti.length) ingrandisci();
+    int maschera = coefficienti.length - 1;
+    int i = hash(monomio, da) & maschera;
+    while (coefficienti[i] != null && !uguale(monomio, da, i)) i = (i + 1) & maschera;
+    if (coefficienti[i] == null) {
+      System.arraycopy(monomio, da, monomi, i * PAROLE, PAROLE);
+      coefficienti[i] = c;
+      dimensione++;
+    } else {
+      // i coefficienti nulli restano nella tabella finché non viene compattata
+      coefficienti[i] = coefficienti[i].somma(c);
+    }
+  }
+
+  /** Doubles the capacity of the table. */
+  private void ingrandisci() {
+    long[] vecchiMonomi = monomi;
+    Razionale[] vecchiCoefficienti = coefficienti;
+    monomi = new long[vecchiMonomi.length * 2];
+    coefficienti = new Razionale[vecchiCoefficienti.length * 2];
+    dimensione = 0;
+    for (int i = 0; i < vecchiCoefficienti.length; i++) {
+      if (vecchiCoefficienti[i] != null) aggiungi(vecchiMonomi, i * PAROLE, vecchiCoefficienti[i]);
+    }
+  }
+
+  /**
+   * Removes the terms whose coefficient became zero.
+   *
+   * @return this polynomial, if it has no null terms, or a new polynomial without them
+   */
+  private Polinomio compatta() {
+    int nulli = 0;
+    for (Razionale c : coefficienti) if (c != null && c.isZero()) nulli++;
+    if (nulli == 0) return this;
+    Polinomio res = new Polinomio(dimensione - nulli);
+    for (int i = 0; i < coefficienti.length; i++) {
+      if (coefficienti[i] != null && !coefficienti[i].isZero()) {
+        res.aggiungi(monomi, i * PAROLE, coefficienti[i]);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Tells whether a monomial is the one stored in a slot.
+   *
+   * @param monomio the array holding the monomial
+   * @param da the index of the first word of the monomial in {@code monomio}
+   * @param i the slot
+   * @return {@code true} if the monomial is stored in slot {@code i}
+   */
+  private boolean uguale(long[] monomio, int da, int i) {
+    for (int w = 0; w < PAROLE; w++) {
+      if (monomio[da + w] != monomi[i * PAROLE + w]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Computes the hash of a monomial.
+   *
+   * @param monomio the array holding the monomial
+   * @param da the index of the first word of the monomial in {@code monomio}
+   * @return the hash of the monomial
+   */
+  private static int hash(long[] monomio, int da) {
+    long h = 0;
+    for (int w = 0; w < PAROLE; w++) h = (h ^ monomio[da + w]) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return toNodo(new NodoFactory()).toString();
+  }
+}
@@ -3,14 +3,157 @@ package luppolo.manipolazione;
 import java.util.*;
 import java.util.Map.Entry;
 import luppolo.*;
+import luppolo.Metriche.Regola;
+import luppolo.eventi.Trasformazione;
 
 /**
  * A concrete class, provids functionality to simplify mathematical expressions It utilizes the
  * Visitor pattern (VisitorNodo interface) to traverse different types of nodes (Razionale, Simbolo,
  * Addizione, Moltiplicazione, Potenza) and applies semplification rules accordingly
+ *
+ * <p>A Semplificazione can be given a {@link CacheLRU} of the simplified subtrees: every internal
+ * node is then looked up in the cache before being simplified, so that repeated subexpressions are
+ * simplified only once. The cache can be shared by several instances, also across threads, to
+ * reuse the results over a whole batch of expressions.
+ *
+ * <p>In <em>sharing</em> mode a Semplificazione also remembers, by identity, the simplified form of
+ * every internal node it meets (see {@link Condivisione}), so that an expression whose
+ * subexpressions are shared, as the ones built from a linear program, is simplified in time linear
+ * in its distinct nodes and its depth does not overflow the call stack. The instance is then
+ * mutable and not thread-safe.
+ *
+ * <p>The nodes built by a Semplificazione are marked as canonical (see {@link Nodo#isCanonico()})
+ * and are returned unchanged, in constant time, when they are simplified again.
+ *
+ * <p>If the {@link Metriche} are collected, a Semplificazione counts the firings of its rules, the
+ * nodes it visits and builds and its lookups in the cache.
  */
 public class Semplificazione implements VisitorNodo {
 
+  /*
+   * AF: the simplification builds its nodes through {@code factory}; if cache is not null it maps
+   * internal nodes to their simplified form; if condivisione is not null it remembers the
+   * simplified form of the internal nodes already met, by identity
+   * RI: factory not {@code null}
+   */
+
+  /** the factory used to build the simplified nodes */
+  private final NodoFactory factory;
+
+  /** the cache of the simplified internal nodes, or {@code null} if memoization is disabled */
+  private final CacheLRU<Nodo, Nodo> cache;
+
+  /** the simplified internal nodes, by identity, or {@code null} without sharing mode */
+  private final Condivisione<Nodo> condivisione;
+
+  /** Constructs a Semplificazione that allocates a new node for every simplified subtree. */
+  public Semplificazione() {
+    this(new NodoFactory());
+  }
+
+  /**
+   * Constructs a Semplificazione that builds its nodes through the given factory.
+   *
+   * @param factory the factory used to build the simplified nodes
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Semplificazione(NodoFactory factory) {
+    this(factory, false);
+  }
+
+  /**
+   * Constructs a Semplificazione that builds its nodes through the given factory, possibly in
+   * sharing mode.
+   *
+   * @param factory the factory used to build the simplified nodes
+   * @param condivisione whether the shared subexpressions are simplified once
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  public Semplificazione(NodoFactory factory, boolean condivisione) {
+    this(factory, null, condivisione);
+  }
+
+  /**
+   * Constructs a Semplificazione that remembers the simplified subtrees in the given cache. The
+   * cache should only be shared among instances using equivalent factories, since the cached
+   * results are returned as they are.
+   *
+   * @param factory the factory used to build the simplified nodes
+   * @param cache the cache of the simplified subtrees
+   * @throws NullPointerException if {@code factory} or {@code cache} is {@code null}
+   */
+  public Semplificazione(NodoFactory factory, CacheLRU<Nodo, Nodo> cache) {
+    this(factory, Objects.requireNonNull(cache, "the cache cannot be null"), false);
+  }
+
+  /**
+   * Constructs a Semplificazione with the given factory and cache, possibly in sharing mode.
+   *
+   * @param factory the factory used to build the simplified nodes
+   * @param cache the cache of the simplified subtrees, or {@code null}
+   * @param condivisione whether the shared subexpressions are simplified once
+   * @throws NullPointerException if {@code factory} is {@code null}
+   */
+  private Semplificazione(NodoFactory factory, CacheLRU<Nodo, Nodo> cache, boolean condivisione) {
+    this.factory =
+        Metriche.conta(
+            Objects.requireNonNull(factory, "the factory cannot be null"),
+            Metriche.Visitatore.SEMPLIFICAZIONE);
+    this.cache = cache;
+    this.condivisione = condivisione ? new Condivisione<>(this::calcola) : null;
+  }
+
+  /**
+   * Simplifies a node, looking it up first among the nodes already met in sharing mode and in the
+   * cache of this Semplificazione (if any). The result is the same as the one of {@code
+   * nodo.accept(this)}; the simplification is recorded as a {@link Trasformazione} event. A node
+   * deeper than {@link Condivisione#PROFONDITA_RICORSIVA} is simplified in sharing mode, with an
+   * explicit stack, even if this Semplificazione is not in sharing mode.
+   *
+   * @param nodo the node to simplify
+   * @return the simplified node
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   * @throws ArithmeticException if the node contains an indeterminate form
+   */
+  public Nodo semplifica(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Trasformazione evento = new Trasformazione();
+    evento.begin();
+    Nodo res =
+        condivisione == null && nodo.profondita() > Condivisione.PROFONDITA_RICORSIVA
+            ? new Semplificazione(factory, cache, true).figlio(nodo)
+            : figlio(nodo);
+    evento.fine("semplificazione", nodo, res);
+    return res;
+  }
+
+  /**
+   * Simplifies a subexpression met during a simplification.
+   *
+   * @param nodo the node to simplify
+   * @return the simplified node
+   */
+  private Nodo figlio(Nodo nodo) {
+    return condivisione == null ? calcola(nodo) : condivisione.visita(nodo);
+  }
+
+  /**
+   * Simplifies a node, looking it up first in the cache (if any).
+   *
+   * @param nodo the node to simplify
+   * @return the simplified node
+   */
+  private Nodo calcola(Nodo nodo) {
+    if (cache == null || nodo.isCanonico()) return nodo.accept(this);
+    Nodo res = cache.get(nodo);
+    Metriche.cache(res != null);
+    if (res == null) {
+      res = nodo.accept(this);
+      cache.put(nodo, res);
+    }
+    return res;
+  }
+
   /**
    * Visits a rational number node and ensures it's not {@code null}.
    *
@@ -20,6 +163,7 @@ public class Semplificazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Razionale razionale) {
+    Metriche.visitato(Metriche.Visitatore.SEMPLIFICAZIONE);
     Objects.requireNonNull(razionale);
     return razionale;
   }
@@ -33,6 +177,7 @@ public class Semplificazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Simbolo simbolo) {
+    Metriche.visitato(Metriche.Visitatore.SEMPLIFICAZIONE);
     Objects.requireNonNull(simbolo);
     return simbolo;
   }
@@ -45,6 +190,7 @@ public class Semplificazione implements VisitorNodo {
    *   <li>Substitutes nested addition nodes with their addends.
    *   <li>Collects rational terms into a single rational term (which may be omitted if zero).
    *   <li>Combines identical non-rational terms into a single Moltiplicazione term.
+   *   <li>Omits the terms whose coefficients sum to zero.
    * </ul>
    *
    * @param addizione The addition node to visit and simplify.
@@ -53,16 +199,18 @@ public class Semplificazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Addizione addizione) {
+    Metriche.visitato(Metriche.Visitatore.SEMPLIFICAZIONE);
     Objects.requireNonNull(addizione);
+    if (addizione.isCanonico()) return addizione;
 
     ArrayList<Nodo> figliSemplificati = semplificaNodiInterni(addizione);
-    Razionale resRazionale = new Razionale();
+    Razionale resRazionale = Razionale.ZERO;
     Map<Nodo, Razionale> occMap = new HashMap<>();
-    Razionale ZERO = new Razionale(0);
-    Razionale UNO = new Razionale(1);
+    int razionali = 0;
 
     for (Nodo nodo : figliSemplificati) {
       if (nodo instanceof Razionale) {
+        razionali++;
         resRazionale = resRazionale.somma((Razionale) nodo);
 
       } else if (nodo
@@ -82,24 +230,32 @@ public class Semplificazione implements VisitorNodo {
 
           Nodo restoMolt;
           if (figliMolt.size() > 1) {
-            restoMolt = new Moltiplicazione(figliMolt);
+            restoMolt = factory.moltiplicazioneCanonica(figliMolt);
           } else {
             restoMolt = figliMolt.get(0);
           }
-          occMap.put(restoMolt, occMap.getOrDefault(restoMolt, ZERO).somma((Razionale) next2));
+          occMap.put(
+              restoMolt, occMap.getOrDefault(restoMolt, Razionale.ZERO).somma((Razionale) next2));
         } else {
-          occMap.put(nodo, occMap.getOrDefault(nodo, ZERO).somma(UNO));
+          occMap.put(nodo, occMap.getOrDefault(nodo, Razionale.ZERO).somma(Razionale.UNO));
         }
       } else {
-        occMap.put(nodo, occMap.getOrDefault(nodo, ZERO).somma(UNO));
+        occMap.put(nodo, occMap.getOrDefault(nodo, Razionale.ZERO).somma(Razionale.UNO));
       }
     }
 
+    if (razionali > 1) Metriche.regola(Regola.SOMMA_RAZIONALI);
+    if (occMap.size() < figliSemplificati.size() - razionali) {
+      Metriche.regola(Regola.TERMINI_SIMILI);
+    }
+
     ArrayList<Nodo> figli = new ArrayList<>();
     for (Entry<Nodo, Razionale> entry : occMap.entrySet()) {
-      if (!entry.getValue().equals(UNO)) {
-        Moltiplicazione e =
-            new Moltiplicazione(new ArrayList<>(Arrays.asList(entry.getKey(), entry.getValue())));
+      if (entry.getValue().isZero()) { // i termini opposti si annullano
+        Metriche.regola(Regola.TERMINI_OPPOSTI);
+        continue;
+      }
+      if (!entry.getValue().isUno()) {
         if (entry.getKey() instanceof Moltiplicazione) {
           ArrayList<Nodo> figliMolt = new ArrayList<>();
           figliMolt.add(entry.getValue()); // Aggiungo il razionale
@@ -108,30 +264,43 @@ public class Semplificazione implements VisitorNodo {
           while (it.hasNext()) {
             figliMolt.add(it.next());
           }
-          figli.add(new Moltiplicazione(figliMolt));
+          figli.add(factory.moltiplicazioneCanonica(figliMolt));
           continue;
         }
-        figli.add(e);
+        figli.add(
+            factory.moltiplicazioneCanonica(
+                new ArrayList<>(Arrays.asList(entry.getKey(), entry.getValue()))));
 
       } else {
         figli.add(entry.getKey());
       }
     }
     // aggiungo alla somma il razionale totale
-    if (resRazionale.num != 0) {
+    if (!resRazionale.isZero()) {
       figli.add(resRazionale);
     }
 
     if (figli.size() > 1) {
-      Addizione add = new Addizione(figli);
+      Addizione add = factory.addizioneCanonica(figli);
       return add;
     } else if (figli.size() == 1) {
       return figli.get(0);
     } else {
-      return ZERO;
+      return factory.razionale(0);
     }
   }
 
+  /**
+   * Builds a product, marking it as canonical only if requested.
+   *
+   * @param fattori the factors of the product
+   * @param canonico whether the product is in canonical form
+   * @return the product
+   */
+  private Moltiplicazione prodotto(List<Nodo> fattori, boolean canonico) {
+    return canonico ? factory.moltiplicazioneCanonica(fattori) : factory.moltiplicazione(fattori);
+  }
+
   /**
    * Simplifies all internal nodes of a given node with children using the `Semplificazione`
    * visitor. It iterates through the children of the node, applies simplification recursively, and
@@ -152,17 +321,18 @@ public class Semplificazione implements VisitorNodo {
     ArrayList<Nodo> figliSemplificati = new ArrayList<>();
     Iterator<Nodo> it = n.iterator();
     while (it.hasNext()) {
-      Nodo next = it.next().accept(this); // semplifico tutti i figli
+      Nodo next = figlio(it.next()); // semplifico tutti i figli
       if (next.getClass()
           == n.getClass()) { // aggiungo i figli semplificati dei nodi che appartengono alla stessa
         // classe di n
+        Metriche.regola(Regola.APPIATTIMENTO);
         Iterator<Nodo> it1 = ((NodoInterno) next).iterator();
         while (it1.hasNext()) {
           Nodo next1 = it1.next();
-          figliSemplificati.add(next1.accept(this));
+          figliSemplificati.add(figlio(next1));
         }
       } else {
-        figliSemplificati.add(next.accept(this));
+        figliSemplificati.add(figlio(next));
       }
     }
     return figliSemplificati;
@@ -174,7 +344,8 @@ public class Semplificazione implements VisitorNodo {
    *
    * <ul>
    *   <li>Substitutes nested multiplication nodes with their factors.
-   *   <li>Combines identical non-rational factors by summing their exponents.
+   *   <li>Combines identical non-rational factors by summing their exponents, omitting the ones
+   *       whose exponents sum to zero.
    *   <li>Collects rational factors into a single rational factor (which may be omitted if one).
    * </ul>
    *
@@ -185,60 +356,70 @@ public class Semplificazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Moltiplicazione mult) {
+    Metriche.visitato(Metriche.Visitatore.SEMPLIFICAZIONE);
     Objects.requireNonNull(mult);
+    if (mult.isCanonico()) return mult;
     ArrayList<Nodo> figliMul = semplificaNodiInterni(mult);
     // Razionali sum che verra aggiunto alla fine
-    Razionale rProd = new Razionale(1);
+    Razionale rProd = Razionale.UNO;
     Map<Nodo, Razionale> occMap = new HashMap<>();
 
-    Razionale ZERO = new Razionale(0);
-    Razionale UNO = new Razionale(1);
     boolean usedRazionale =
         false; // per sapere se aggiungere un eventuale razionale di valore 1 oppure no
+    int razionali = 0;
     for (Nodo nodo : figliMul) {
       if (nodo instanceof Razionale) {
         usedRazionale = true;
+        razionali++;
         rProd = rProd.moltRazionale((Razionale) nodo);
 
       } else if (nodo instanceof Potenza) {
         Potenza p = (Potenza) (nodo);
-        occMap.put(p.getBase(), occMap.getOrDefault(p.getBase(), ZERO).somma(p.getEsponente()));
+        occMap.put(
+            p.getBase(), occMap.getOrDefault(p.getBase(), Razionale.ZERO).somma(p.getEsponente()));
 
       } else {
-        occMap.put(nodo, occMap.getOrDefault(nodo, ZERO).somma(UNO));
+        occMap.put(nodo, occMap.getOrDefault(nodo, Razionale.ZERO).somma(Razionale.UNO));
       }
     }
 
+    if (razionali > 1) Metriche.regola(Regola.PRODOTTO_RAZIONALI);
+    if (occMap.size() < figliMul.size() - razionali) Metriche.regola(Regola.FATTORI_SIMILI);
+
     ArrayList<Nodo> figli = new ArrayList<>();
     for (Entry<Nodo, Razionale> entry : occMap.entrySet()) {
       Nodo n = entry.getKey();
-      if (entry.getValue().num != 0) {
+      if (!entry.getValue().isZero()) {
 
-        Nodo e = new Potenza(n, entry.getValue()).accept(this);
+        Nodo e = figlio(factory.potenza(n, entry.getValue()));
         if (e instanceof Razionale) {
           rProd = rProd.moltRazionale((Razionale) e);
           continue;
         }
-        figli.add(e.accept(this));
+        figli.add(figlio(e));
 
       } else {
-        figli.add(n);
+        // gli esponenti si annullano: il fattore vale 1
+        Metriche.regola(Regola.ESPONENTI_OPPOSTI);
+        usedRazionale = true;
       }
     }
 
-    if (rProd.equals(ZERO)) {
+    if (rProd.isZero()) {
+      Metriche.regola(Regola.PRODOTTO_NULLO);
       figli = new ArrayList<>();
-    } else if (!rProd.equals(UNO)) {
+    } else if (!rProd.isUno()) {
       figli.add(rProd);
     }
 
     if (figli.size() > 1) {
-      return new Moltiplicazione(figli);
+      // un fattore ridotto a prodotto dalla seconda semplificazione non viene appiattito
+      return prodotto(figli, figli.stream().noneMatch(f -> f instanceof Moltiplicazione));
     } else if (figli.size() == 0) {
       if (usedRazionale) {
         return rProd;
       } else {
-        return ZERO;
+        return factory.razionale(0);
       }
     } else {
       return figli.get(0);
@@ -273,48 +454,55 @@ public class Semplificazione implements VisitorNodo {
    */
   @Override
   public Nodo visit(Potenza potenza) {
+    Metriche.visitato(Metriche.Visitatore.SEMPLIFICAZIONE);
     Objects.requireNonNull(potenza);
+    if (potenza.isCanonico()) return potenza;
 
-    Nodo base = potenza.getBase().accept(this);
-    Razionale esponente = (Razionale) potenza.getEsponente().accept(this);
+    Nodo base = figlio(potenza.getBase());
+    Razionale esponente = (Razionale) figlio(potenza.getEsponente());
 
-    Razionale ZERO = new Razionale(0);
-    Razionale UNO = new Razionale(1);
 
     if (base instanceof Potenza) { // Potenza(base.base, esponente 1 *esponente 2)
+      Metriche.regola(Regola.POTENZA_DI_POTENZA);
       Potenza p1 = (Potenza) base;
       base = p1.getBase();
       esponente = (esponente).moltRazionale(p1.getEsponente());
     }
 
-    if (esponente.num == esponente.den) { // se potenza è 1 allora il risultato è la base
+    if (esponente.isUno()) { // se potenza è 1 allora il risultato è la base
+      Metriche.regola(Regola.ESPONENTE_UNO);
       return base;
     }
 
     if (base instanceof Razionale) {
-      if (((Razionale) base).num == 0) {
-        if (esponente.num == 0) { // 0^0
+      if (((Razionale) base).isZero()) {
+        if (esponente.isZero()) { // 0^0
           throw new ArithmeticException("0^0 non è permesso");
         } else { // caso 0^qualcosa
-          return ZERO;
+          Metriche.regola(Regola.BASE_ZERO);
+          return factory.razionale(0);
         }
       } else { // base diversa da 0
-        if (esponente.num == 0) {
-          return UNO;
-        } else if (esponente.num < 0) {
-          base = new Razionale(((Razionale) base).den, ((Razionale) base).num);
-          esponente = esponente.moltRazionale(new Razionale(-1));
+        if (esponente.isZero()) {
+          Metriche.regola(Regola.ESPONENTE_ZERO);
+          return factory.razionale(1);
+        } else if (esponente.signum() < 0) {
+          Metriche.regola(Regola.ESPONENTE_NEGATIVO);
+          base = ((Razionale) base).inverso();
+          esponente = esponente.moltRazionale(Razionale.MENO_UNO);
         }
       }
 
-      if ((((Razionale) base).num > 0 || esponente.den % 2 != 0)
-          && ((Razionale) base).radice(esponente.den)
-              != null) { // caso in cui si può semplificare la base razionale
-        return ((Razionale) base).radice(esponente.den).power(new Razionale(esponente.num));
+      if (((Razionale) base).signum() > 0 || esponente.den() % 2 != 0) {
+        Razionale radice = ((Razionale) base).radice(esponente.den());
+        if (radice != null) { // caso in cui si può semplificare la base razionale
+          Metriche.regola(Regola.RADICE_RAZIONALE);
+          return radice.power(Razionale.of(esponente.num()));
+        }
       }
     }
-    if (esponente.num == 0)
+    if (esponente.isZero())
       throw new ArithmeticException("l'esponenete dopo la semplificazine è 0");
-    return new Potenza(base, esponente);
+    return factory.potenzaCanonica(base, esponente);
   }
 }
@@ -2,6 +2,7 @@ package luppolo.rappresentazione;
 
 import java.util.*;
 import luppolo.*;
+import luppolo.eventi.Rappresentazione;
 
 /**
  * A visitor implementation designed to convert mathematical expressions represented by various
@@ -9,9 +10,56 @@ import luppolo.*;
  * visualization and understanding of complex expressions, such as additions, multiplications,
  * powers, rational numbers, and symbols. genreally for internal nodes the FormaLineare will return
  * "(type(child1, child2, ...))". for leaf nodes it will simplly return its string representation
+ *
+ * <p>An expression built from a linear program can share a subexpression among several parents;
+ * written as a tree, its representation grows with the number of paths from the root, that can be
+ * exponential in the depth of the sharing. With back-references enabled the first occurrence of a
+ * shared internal node is written as {@code #n=type(...)} and every later occurrence as {@code #n},
+ * so that the representation is linear in the number of distinct nodes; for instance a sum whose
+ * two addends are the same product is written {@code +(#1=*(x, y), #1)}. The expression is always
+ * walked with an explicit stack, hence its depth does not overflow the call stack.
  */
 public class FormaLineare implements Visitor {
 
+  /*
+   * AF: the visitor writes the shared subexpressions as back-references iff riferimenti is true.
+   * RI: none.
+   */
+
+  /** Whether the shared subexpressions are written as back-references. */
+  private final boolean riferimenti;
+
+  /** Constructs a FormaLineare that writes every subexpression in full. */
+  public FormaLineare() {
+    this(false);
+  }
+
+  /**
+   * Constructs a FormaLineare, possibly writing the shared subexpressions as back-references.
+   *
+   * @param riferimenti whether the shared subexpressions are written as back-references
+   */
+  public FormaLineare(boolean riferimenti) {
+    this.riferimenti = riferimenti;
+  }
+
+  /**
+   * Returns the linear representation of an expression. The result is the same as the one of
+   * {@code nodo.accept(this)}; the representation is recorded as a {@link Rappresentazione} event.
+   *
+   * @param nodo the expression
+   * @return the linear representation of {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public String rappresenta(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Rappresentazione evento = new Rappresentazione();
+    evento.begin();
+    String res = nodo.accept(this);
+    evento.fine("lineare", nodo, res);
+    return res;
+  }
+
   /**
    * Visits a {@code Razionale} node and returns its string representation.
    *
@@ -81,26 +129,46 @@ public class FormaLineare implements Visitor {
   }
 
   /**
-   * Constructs a linear string representation of a node and its children in a nested format. This
-   * method recursively traverses the children of the given node to build a linear string that
-   * represents the nested structure of the node and its children.
+   * Constructs a linear string representation of a node and its children in a nested format,
+   * formatted as "(type(child1, child2, ...))". With back-references the shared internal nodes are
+   * written in full only at their first occurrence and as back-references afterwards. The
+   * expression is walked in pre-order with an explicit stack, hence its depth does not consume the
+   * call stack.
    *
-   * @param n The node for which to construct the linear string representation.
-   * @return A linear string representation of the node and its children, formatted as
-   *     "(type(child1, child2, ...))".
+   * @param radice The node for which to construct the linear string representation.
+   * @return A linear string representation of the node and its children.
    */
-  private String fl(NodoInterno n) {
+  private String fl(NodoInterno radice) {
+    Riferimenti rif = riferimenti ? new Riferimenti(radice) : null;
     StringBuilder res = new StringBuilder();
-    Iterator<Nodo> it = n.iterator();
-    res.append(n.tipo() + "(");
-    while (it.hasNext()) {
+    Deque<Iterator<Nodo>> figli = new ArrayDeque<>();
+    if (rif != null) res.append(rif.definizione(radice));
+    res.append(radice.tipo()).append("(");
+    figli.push(radice.iterator());
+    while (!figli.isEmpty()) {
+      Iterator<Nodo> it = figli.peek();
+      if (!it.hasNext()) {
+        res.append(")");
+        figli.pop();
+        continue;
+      }
       Nodo figlio = it.next();
-      res.append(figlio.accept(this));
-      if (it.hasNext()) {
-        res.append(", ");
+      // nessuna rappresentazione termina con "(", che quindi precede solo il primo figlio
+      if (res.charAt(res.length() - 1) != '(') res.append(", ");
+      if (!(figlio instanceof NodoInterno)) {
+        res.append(figlio.accept(this));
+        continue;
+      }
+      String riferimento = rif == null ? null : rif.riferimento(figlio);
+      if (riferimento != null) {
+        res.append(riferimento);
+      } else {
+        NodoInterno interno = (NodoInterno) figlio;
+        if (rif != null) res.append(rif.definizione(interno));
+        res.append(interno.tipo()).append("(");
+        figli.push(interno.iterator());
       }
     }
-    res.append(")");
     return res.toString();
   }
 }
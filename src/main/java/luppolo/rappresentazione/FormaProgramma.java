@@ -0,0 +1,69 @@
+package luppolo.rappresentazione;
+
+import java.util.*;
+import luppolo.*;
+
+/**
+ * A utility class that writes an expression as a linear program, in the format read by {@link
+ * luppolo.costruzione.ProgrammaLineara#fromLinearProgram(String[])}: a sequence of instructions,
+ * where {@code . v} introduces a rational number or a symbol and {@code + i j ...}, {@code * i j
+ * ...} and {@code ^ i j} combine the expressions introduced by the instructions with the given
+ * indices; the value of the program is the one of its last instruction.
+ *
+ * <p>Structurally equal subexpressions, recognized through their hash code and equality, are
+ * written once and referred to by index (common subexpression elimination): the program has one
+ * instruction for every distinct subexpression, hence its length grows with the number of distinct
+ * subexpressions and not with the size of the tree, that can be exponentially larger. Reading the
+ * program back builds an expression equal to the original one.
+ */
+public final class FormaProgramma {
+
+  /** This class only has static methods, hence it cannot be instantiated. */
+  private FormaProgramma() {}
+
+  /**
+   * Writes an expression as a linear program without repeated instructions.
+   *
+   * @param nodo the expression
+   * @return the instructions of the linear program computing {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public static String[] toLinearProgram(Nodo nodo) {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Map<Nodo, Integer> indici = new HashMap<>();
+    List<String> istruzioni = new ArrayList<>();
+    if (nodo instanceof NodoInterno) {
+      // i figli di ogni nodo interno sono già stati scritti quando il nodo viene raggiunto
+      for (NodoInterno n : Condivisione.postordine(nodo)) indice(n, indici, istruzioni);
+    } else {
+      indice(nodo, indici, istruzioni);
+    }
+    return istruzioni.toArray(new String[0]);
+  }
+
+  /**
+   * Returns the index of the instruction computing a node, writing the instruction if no equal
+   * node has been written yet. The internal children of the node must have been written already.
+   *
+   * @param nodo the node
+   * @param indici the indices of the instructions computing the nodes already written
+   * @param istruzioni the instructions written so far
+   * @return the index of the instruction computing {@code nodo}
+   */
+  private static int indice(Nodo nodo, Map<Nodo, Integer> indici, List<String> istruzioni) {
+    Integer indice = indici.get(nodo);
+    if (indice != null) return indice;
+    StringBuilder istruzione = new StringBuilder();
+    if (nodo instanceof NodoInterno) {
+      istruzione.append(((NodoInterno) nodo).tipo());
+      for (Nodo figlio : (NodoInterno) nodo) {
+        istruzione.append(" ").append(indice(figlio, indici, istruzioni));
+      }
+    } else {
+      istruzione.append(". ").append(nodo);
+    }
+    indici.put(nodo, istruzioni.size());
+    istruzioni.add(istruzione.toString());
+    return istruzioni.size() - 1;
+  }
+}
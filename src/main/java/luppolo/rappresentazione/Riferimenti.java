@@ -0,0 +1,61 @@
+package luppolo.rappresentazione;
+
+import java.util.*;
+import luppolo.*;
+
+/**
+ * The back-references of a representation of an expression whose subexpressions are shared. The
+ * first occurrence of a shared internal node is written in full, preceded by a definition {@code
+ * #n=}; every later occurrence is written as the reference {@code #n}. Labels are numbered from 1
+ * in order of first occurrence.
+ */
+final class Riferimenti {
+
+  /*
+   * AF: condivisi are the shared internal nodes of the expression, etichette maps the ones already
+   * written to their label.
+   *
+   * RI: condivisi and etichette not null, the keys of etichette are in condivisi and their labels
+   * are 1, 2, ..., etichette.size().
+   */
+
+  /** The shared internal nodes, by identity. */
+  private final Set<Nodo> condivisi;
+
+  /** The labels of the shared nodes already written, by identity. */
+  private final Map<Nodo, Integer> etichette = new IdentityHashMap<>();
+
+  /**
+   * Constructs the back-references of the given expression.
+   *
+   * @param radice the root of the expression
+   */
+  Riferimenti(Nodo radice) {
+    condivisi = Condivisione.condivisi(radice);
+  }
+
+  /**
+   * Returns the reference to a node already written.
+   *
+   * @param nodo the node
+   * @return the reference {@code #n} to {@code nodo}, or {@code null} if it has not been written
+   */
+  String riferimento(Nodo nodo) {
+    Integer etichetta = etichette.get(nodo);
+    return etichetta == null ? null : "#" + etichetta;
+  }
+
+  /**
+   * Returns the prefix to be written before the first occurrence of a node, assigning it a label if
+   * it is shared.
+   *
+   * @param nodo the node
+   * @return the definition {@code #n=} if {@code nodo} is shared, the empty string otherwise
+   */
+  String definizione(Nodo nodo) {
+    if (!condivisi.contains(nodo)) return "";
+    int etichetta = etichette.size() + 1;
+    etichette.put(nodo, etichetta);
+    return "#" + etichetta + "=";
+  }
+}
@@ -0,0 +1,242 @@
+package luppolo.rappresentazione;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.*;
+import luppolo.*;
+
+/**
+ * A writer of expressions in the compact binary format described by {@link FormatoBinario}. Every
+ * call of {@link #scrivi(Nodo)} appends a self-contained expression to the destination, a stream or
+ * a buffer. Repeated subexpressions, recognized through their hash code and equality, are written
+ * in full only once and then as back-references, hence the size of the encoding grows with the
+ * number of distinct subexpressions. The expression is walked with an explicit stack.
+ *
+ * <p>Every expression is first encoded in memory and then written to the destination with a single
+ * call, so that the stream does not need to be buffered and a buffer without enough room is left
+ * unchanged. Instances are not thread-safe.
+ */
+public final class ScritturaBinaria {
+
+  /*
+   * AF: the expressions are written to flusso if it is not null, to destinazione otherwise; the
+   * first dimensione bytes of codifica are the encoding of the expression being written and
+   * indici maps its internal nodes already completed to their index.
+   *
+   * RI: exactly one of flusso and destinazione is not null, codifica not null,
+   * 0 <= dimensione <= codifica.length, indici not null and empty between two calls of scrivi.
+   */
+
+  /** The stream the expressions are written to, or {@code null}. */
+  private final OutputStream flusso;
+
+  /** The buffer the expressions are written to, or {@code null}. */
+  private final ByteBuffer destinazione;
+
+  /** The encoding of the expression being written. */
+  private byte[] codifica = new byte[64];
+
+  /** The number of bytes of the encoding. */
+  private int dimensione;
+
+  /** The indices of the internal nodes completed so far, by structure. */
+  private final Map<Nodo, Integer> indici = new HashMap<>();
+
+  /**
+   * Constructs a writer that writes the expressions to a stream.
+   *
+   * @param flusso the stream
+   * @throws NullPointerException if {@code flusso} is {@code null}
+   */
+  public ScritturaBinaria(OutputStream flusso) {
+    this.flusso = Objects.requireNonNull(flusso, "the stream cannot be null");
+    this.destinazione = null;
+  }
+
+  /**
+   * Constructs a writer that writes the expressions to a buffer, starting from its position.
+   *
+   * @param destinazione the buffer
+   * @throws NullPointerException if {@code destinazione} is {@code null}
+   */
+  public ScritturaBinaria(ByteBuffer destinazione) {
+    this.flusso = null;
+    this.destinazione = Objects.requireNonNull(destinazione, "the buffer cannot be null");
+  }
+
+  /**
+   * Returns the encoding of an expression.
+   *
+   * @param nodo the expression
+   * @return the bytes encoding {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public static byte[] codifica(Nodo nodo) {
+    ScritturaBinaria scrittura = new ScritturaBinaria(OutputStream.nullOutputStream());
+    scrittura.codificaEspressione(nodo);
+    return Arrays.copyOf(scrittura.codifica, scrittura.dimensione);
+  }
+
+  /**
+   * Writes an expression to the destination of this writer.
+   *
+   * @param nodo the expression
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   * @throws IOException if the stream cannot be written
+   * @throws java.nio.BufferOverflowException if the buffer does not have enough room for the
+   *     expression; the buffer is left unchanged
+   */
+  public void scrivi(Nodo nodo) throws IOException {
+    codificaEspressione(nodo);
+    if (flusso != null) flusso.write(codifica, 0, dimensione);
+    else destinazione.put(codifica, 0, dimensione);
+  }
+
+  /**
+   * Encodes an expression in {@code codifica}, replacing its content.
+   *
+   * @param radice the expression
+   */
+  private void codificaEspressione(Nodo radice) {
+    Objects.requireNonNull(radice, "the node cannot be null");
+    dimensione = 0;
+    indici.clear();
+    // ogni nodo interno sulla pila è accompagnato dall'iteratore sui figli ancora da scrivere
+    Deque<NodoInterno> nodi = new ArrayDeque<>();
+    Deque<Iterator<Nodo>> figli = new ArrayDeque<>();
+    Nodo nodo = radice;
+    do {
+      if (nodo != null && codificaNodo(nodo)) {
+        nodi.push((NodoInterno) nodo);
+        figli.push(((NodoInterno) nodo).iterator());
+      }
+      nodo = null;
+      while (nodo == null && !figli.isEmpty()) {
+        if (figli.peek().hasNext()) {
+          nodo = figli.peek().next();
+        } else {
+          // il nodo è completo: da qui in poi gli uguali vengono scritti come riferimenti
+          figli.pop();
+          indici.put(nodi.pop(), indici.size());
+        }
+      }
+    } while (nodo != null);
+    indici.clear();
+  }
+
+  /**
+   * Writes the opcode and the operands of a node.
+   *
+   * @param nodo the node
+   * @return {@code true} if the children of the node have to be written after it
+   */
+  private boolean codificaNodo(Nodo nodo) {
+    if (nodo instanceof Razionale) {
+      codificaRazionale((Razionale) nodo);
+      return false;
+    }
+    if (nodo instanceof Simbolo) {
+      scriviByte(FormatoBinario.SIMBOLO + ((Simbolo) nodo).x - 'a');
+      return false;
+    }
+    Integer indice = indici.get(nodo);
+    if (indice != null) {
+      scriviByte(FormatoBinario.RIFERIMENTO);
+      scriviVarint(indice);
+      return false;
+    }
+    if (nodo instanceof Potenza) {
+      scriviByte(FormatoBinario.POTENZA);
+      return true;
+    }
+    int numeroFigli = 0;
+    for (Iterator<Nodo> it = ((NodoInterno) nodo).iterator(); it.hasNext(); it.next()) {
+      numeroFigli++;
+    }
+    scriviByte(
+        nodo instanceof Addizione ? FormatoBinario.ADDIZIONE : FormatoBinario.MOLTIPLICAZIONE);
+    scriviVarint(numeroFigli);
+    return true;
+  }
+
+  /**
+   * Writes the opcode and the operands of a rational number.
+   *
+   * @param razionale the rational number
+   */
+  private void codificaRazionale(Razionale razionale) {
+    if (!razionale.isLong()) {
+      scriviByte(FormatoBinario.GRANDE);
+      scriviIntero(razionale.getNumeratore());
+      scriviIntero(razionale.getDenominatore());
+    } else if (razionale.den() == 1) {
+      scriviByte(FormatoBinario.INTERO);
+      scriviVarint(zigzag(razionale.num()));
+    } else {
+      scriviByte(FormatoBinario.FRAZIONE);
+      scriviVarint(zigzag(razionale.num()));
+      scriviVarint(razionale.den());
+    }
+  }
+
+  /**
+   * Writes an integer of arbitrary precision as its length and its two's complement bytes.
+   *
+   * @param n the integer
+   */
+  private void scriviIntero(BigInteger n) {
+    byte[] byteIntero = n.toByteArray();
+    scriviVarint(byteIntero.length);
+    spazio(byteIntero.length);
+    System.arraycopy(byteIntero, 0, codifica, dimensione, byteIntero.length);
+    dimensione += byteIntero.length;
+  }
+
+  /**
+   * Writes an unsigned varint.
+   *
+   * @param v the value, interpreted as unsigned
+   */
+  private void scriviVarint(long v) {
+    spazio(10);
+    long resto = v;
+    while ((resto & ~0x7FL) != 0) {
+      codifica[dimensione++] = (byte) ((resto & 0x7F) | 0x80);
+      resto >>>= 7;
+    }
+    codifica[dimensione++] = (byte) resto;
+  }
+
+  /**
+   * Writes a byte.
+   *
+   * @param b the byte
+   */
+  private void scriviByte(int b) {
+    spazio(1);
+    codifica[dimensione++] = (byte) b;
+  }
+
+  /**
+   * Ensures that the encoding has room for the given number of bytes.
+   *
+   * @param n the number of bytes
+   */
+  private void spazio(int n) {
+    if (codifica.length - dimensione < n) {
+      codifica = Arrays.copyOf(codifica, Math.max(2 * codifica.length, dimensione + n));
+    }
+  }
+
+  /**
+   * Maps a signed value to an unsigned one, so that values of small magnitude stay small.
+   *
+   * @param n the signed value
+   * @return the zigzag encoding of {@code n}
+   */
+  private static long zigzag(long n) {
+    return (n << 1) ^ (n >> 63);
+  }
+}
@@ -1,7 +1,10 @@
 package luppolo.rappresentazione;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import luppolo.*;
+import luppolo.eventi.Rappresentazione;
 
 /**
  * Concrete class implementing a visitor pattern, responsible for generating textual representations
@@ -17,17 +20,46 @@ import luppolo.*;
  * representation would be:
  *
  * <p>f0.tipo() ├── f1 ╰── f2.tipo() ├── f3 ╰── f4
+ *
+ * <p>The representation of a subexpression depends on its position, through the indentation, hence
+ * it cannot be computed once and shared among the occurrences of a shared subexpression (see
+ * {@link Condivisione}), and the representation of an expression built from a linear program can
+ * grow exponentially with the depth of the sharing. With back-references enabled the first
+ * occurrence of a shared internal node is labelled as {@code #n=f.tipo()} and its children are
+ * written below it, while every later occurrence is written as the single line {@code #n}.
+ *
+ * <p>The tree is written by {@link #scrivi(Nodo, Appendable)} straight into its destination, line
+ * by line, walking the expression with an explicit stack and a single indentation buffer, so that
+ * the memory used depends on the depth of the expression and not on the size of the output. A tree
+ * can be cut at a maximum depth, writing every internal node at that depth as {@code f.tipo() …}
+ * without its children, and after a maximum number of lines, writing the line {@code …} in place
+ * of the rest.
  */
 public class Tree implements Visitor {
 
   /*
-   * AF: prefix is the indentation needed to visualy organize nodes withing the tree structure.
-   * RI: prefix field must consist only of spaces or "│".
+   * AF: prefix is the indentation needed to visualy organize nodes withing the tree structure;
+   * the shared nodes are written as back-references iff conRiferimenti is true; the internal nodes
+   * at depth profonditaMassima are written without their children and at most righeMassime lines
+   * of a tree are written.
+   * RI: prefix field must consist only of spaces or "│"; profonditaMassima and righeMassime > 0.
    */
 
+  /** The line written in place of the elided part of a tree. */
+  private static final String ELISIONE = "…";
+
   /** The prefix for indentation */
   public final String prefix;
 
+  /** Whether the shared subexpressions are written as back-references. */
+  private final boolean conRiferimenti;
+
+  /** The depth of the internal nodes written without their children, the root being at depth 1. */
+  private final int profonditaMassima;
+
+  /** The maximum number of lines of a tree. */
+  private final int righeMassime;
+
   /**
    * Constructs a Tree visitor with the specified prefix.
    *
@@ -36,6 +68,36 @@ public class Tree implements Visitor {
    * @throws IllegalArgumentException if the prefix contains characters other than space or "│"
    */
   public Tree(String prefix) {
+    this(prefix, false);
+  }
+
+  /**
+   * Constructs a Tree visitor with the specified prefix, possibly writing the shared subexpressions
+   * as back-references.
+   *
+   * @param prefix the prefix string used for indentation in the tree structure
+   * @param riferimenti whether the shared subexpressions are written as back-references
+   * @throws NullPointerException if the prefix is {@code null}
+   * @throws IllegalArgumentException if the prefix contains characters other than space or "│"
+   */
+  public Tree(String prefix, boolean riferimenti) {
+    this(prefix, riferimenti, Integer.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructs a Tree visitor with the specified prefix that elides the parts of a tree beyond a
+   * maximum depth and a maximum number of lines. Use {@link Integer#MAX_VALUE} for no limit.
+   *
+   * @param prefix the prefix string used for indentation in the tree structure
+   * @param riferimenti whether the shared subexpressions are written as back-references
+   * @param profonditaMassima the depth of the internal nodes written without their children, the
+   *     root being at depth 1
+   * @param righeMassime the maximum number of lines of a tree, besides the line of the elision
+   * @throws NullPointerException if the prefix is {@code null}
+   * @throws IllegalArgumentException if the prefix contains characters other than space or "│", or
+   *     if {@code profonditaMassima} or {@code righeMassime} is not positive
+   */
+  public Tree(String prefix, boolean riferimenti, int profonditaMassima, int righeMassime) {
     Objects.requireNonNull(prefix, "Prefix must not be null");
     for (int i = 0; i < prefix.length(); i++) {
       char ch = prefix.charAt(i);
@@ -43,7 +105,55 @@ public class Tree implements Visitor {
         throw new IllegalArgumentException("Invalid prefix format: " + ch);
       }
     }
+    if (profonditaMassima <= 0) {
+      throw new IllegalArgumentException("Invalid maximum depth: " + profonditaMassima);
+    }
+    if (righeMassime <= 0) {
+      throw new IllegalArgumentException("Invalid maximum number of lines: " + righeMassime);
+    }
     this.prefix = prefix;
+    this.conRiferimenti = riferimenti;
+    this.profonditaMassima = profonditaMassima;
+    this.righeMassime = righeMassime;
+  }
+
+  /**
+   * Returns the tree representation of an expression. The result is the same as the one of {@code
+   * nodo.accept(this)}; the representation is recorded as a {@link Rappresentazione} event.
+   *
+   * @param nodo the expression
+   * @return the tree representation of {@code nodo}
+   * @throws NullPointerException if {@code nodo} is {@code null}
+   */
+  public String rappresenta(Nodo nodo) {
+    StringBuilder res = new StringBuilder();
+    try {
+      scrivi(nodo, res);
+    } catch (IOException e) {
+      // un StringBuilder non solleva eccezioni
+      throw new UncheckedIOException(e);
+    }
+    return res.toString();
+  }
+
+  /**
+   * Writes the tree representation of an expression to a destination, one line at a time. The
+   * text written is the same as the one of {@code nodo.accept(this)}; the representation is
+   * recorded as a {@link Rappresentazione} event.
+   *
+   * @param nodo the expression
+   * @param uscita the destination
+   * @throws NullPointerException if {@code nodo} or {@code uscita} is {@code null}
+   * @throws IOException if the destination cannot be written
+   */
+  public void scrivi(Nodo nodo, Appendable uscita) throws IOException {
+    Objects.requireNonNull(nodo, "the node cannot be null");
+    Objects.requireNonNull(uscita, "the destination cannot be null");
+    Rappresentazione evento = new Rappresentazione();
+    evento.begin();
+    Uscita righe = new Uscita(uscita);
+    albero(nodo, righe);
+    evento.fine("albero", nodo, righe.caratteri);
   }
 
   /**
@@ -77,7 +187,7 @@ public class Tree implements Visitor {
    */
   @Override
   public String visit(Addizione addizione) {
-    return NodoInternoTree(prefix, addizione);
+    return NodoInternoTree(addizione);
   }
 
   /**
@@ -88,7 +198,7 @@ public class Tree implements Visitor {
    */
   @Override
   public String visit(Moltiplicazione moltiplicazione) {
-    return NodoInternoTree(prefix, moltiplicazione);
+    return NodoInternoTree(moltiplicazione);
   }
 
   /**
@@ -99,30 +209,137 @@ public class Tree implements Visitor {
    */
   @Override
   public String visit(Potenza potenza) {
-    return NodoInternoTree(prefix, potenza);
+    return NodoInternoTree(potenza);
   }
 
   /**
    * Generates the tree representation of a given internal node .
    *
-   * @param prefix the current prefix used for indentation
    * @param d the node to generate the tree representation for
    * @return the tree representation of the node
    */
-  private static String NodoInternoTree(final String prefix, final Nodo d) {
+  private String NodoInternoTree(final Nodo d) {
     StringBuilder res = new StringBuilder();
-    res.append(((NodoInterno) d).tipo()).append("\n");
-
-    if (d instanceof NodoInterno) {
-      Iterator<Nodo> it = ((NodoInterno) d).iterator();
-      while (it.hasNext()) {
-        final Nodo e = it.next();
-        String newPrefix = prefix + (it.hasNext() ? "│   " : "    ");
-        res.append(prefix)
-            .append(it.hasNext() ? "├── " : "╰── ")
-            .append(e.accept(new Tree(newPrefix)));
-      }
+    try {
+      albero(d, new Uscita(res));
+    } catch (IOException e) {
+      // un StringBuilder non solleva eccezioni
+      throw new UncheckedIOException(e);
     }
     return res.toString();
   }
+
+  /**
+   * Writes the tree representation of an expression, walking it with an explicit stack.
+   *
+   * @param radice the expression
+   * @param uscita the destination
+   * @throws IOException if the destination cannot be written
+   */
+  private void albero(Nodo radice, Uscita uscita) throws IOException {
+    // alla radice vengono individuati i nodi condivisi dell'intera espressione
+    Riferimenti rif =
+        conRiferimenti && radice instanceof NodoInterno ? new Riferimenti(radice) : null;
+    // i figli ancora da scrivere dei nodi aperti; il rientro dei figli del nodo in cima alla pila è
+    // il prefisso seguito da quattro caratteri per ogni altro nodo aperto
+    Deque<Iterator<Nodo>> aperti = new ArrayDeque<>();
+    StringBuilder rientro = new StringBuilder(prefix);
+    apri(radice, rif, aperti, uscita);
+    while (!aperti.isEmpty()) {
+      Iterator<Nodo> it = aperti.peek();
+      if (!it.hasNext()) {
+        aperti.pop();
+        if (!aperti.isEmpty()) rientro.setLength(rientro.length() - 4);
+        continue;
+      }
+      if (uscita.righe >= righeMassime) {
+        uscita.append(rientro).append(ELISIONE).riga();
+        return;
+      }
+      Nodo e = it.next();
+      uscita.append(rientro).append(it.hasNext() ? "├── " : "╰── ");
+      String riferimento = rif == null ? null : rif.riferimento(e);
+      if (riferimento != null) {
+        uscita.append(riferimento).riga();
+      } else {
+        rientro.append(it.hasNext() ? "│   " : "    ");
+        if (!apri(e, rif, aperti, uscita)) rientro.setLength(rientro.length() - 4);
+      }
+    }
+  }
+
+  /**
+   * Writes the line of a node, after its indentation, and opens it if its children are to be
+   * written.
+   *
+   * @param nodo the node
+   * @param rif the back-references of the expression, or {@code null}
+   * @param aperti the children still to be written of the open nodes
+   * @param uscita the destination
+   * @return whether {@code nodo} has been opened
+   * @throws IOException if the destination cannot be written
+   */
+  private boolean apri(Nodo nodo, Riferimenti rif, Deque<Iterator<Nodo>> aperti, Uscita uscita)
+      throws IOException {
+    if (!(nodo instanceof NodoInterno)) {
+      uscita.append(nodo.toString()).riga();
+      return false;
+    }
+    NodoInterno interno = (NodoInterno) nodo;
+    if (aperti.size() + 1 >= profonditaMassima) {
+      // un nodo senza figli non viene definito, così una sua occorrenza successiva può esserlo
+      uscita.append(interno.tipo()).append(" ").append(ELISIONE).riga();
+      return false;
+    }
+    if (rif != null) uscita.append(rif.definizione(nodo));
+    uscita.append(interno.tipo()).riga();
+    aperti.push(interno.iterator());
+    return true;
+  }
+
+  /** A destination that counts the characters and the lines written to it. */
+  private static final class Uscita {
+
+    /** The destination. */
+    private final Appendable destinazione;
+
+    /** The number of characters written. */
+    private long caratteri;
+
+    /** The number of lines written. */
+    private int righe;
+
+    /**
+     * Constructs a counting destination.
+     *
+     * @param destinazione the destination
+     */
+    Uscita(Appendable destinazione) {
+      this.destinazione = destinazione;
+    }
+
+    /**
+     * Writes some text, which must not contain line separators.
+     *
+     * @param testo the text
+     * @return this destination
+     * @throws IOException if the destination cannot be written
+     */
+    Uscita append(CharSequence testo) throws IOException {
+      destinazione.append(testo);
+      caratteri += testo.length();
+      return this;
+    }
+
+    /**
+     * Ends the current line.
+     *
+     * @throws IOException if the destination cannot be written
+     */
+    void riga() throws IOException {
+      destinazione.append('\n');
+      caratteri++;
+      righe++;
+    }
+  }
 }
@@ -0,0 +1,241 @@
+package utils;
+
+import java.util.*;
+import luppolo.costruzione.NotazionePolaccaEspressione;
+import luppolo.rappresentazione.FormaProgramma;
+
+/**
+ * A deterministic generator of random expressions, in Polish notation or as linear programs, for
+ * stress and regression runs. Two generators with the same parameters and the same seed produce
+ * the same sequence of expressions.
+ *
+ * <p>An expression of depth 0 is a symbol or an integer coefficient; an expression of greater
+ * depth is a sum or a product of {@link Parametri#ramificazione()} operands, a difference of two
+ * operands or a power whose base is an operand and whose exponent is a non-zero integer, every
+ * operand having depth one less. The symbols are {@code x}, {@code y}, {@code z} and then {@code
+ * a}, {@code b}, ... With probability {@link Parametri#condivisione()} an operand is an expression
+ * of the same depth already generated for the same expression, so that the expression has
+ * repeated subexpressions.
+ *
+ * <p>As a program, {@code java utils.Generatore [--opzione valore]...} writes the expressions on
+ * the standard output, one per line in Polish notation or, with {@code --formato programma}, as
+ * linear programs separated by an empty line. The options are {@code --righe}, {@code --seme},
+ * {@code --formato} and those of {@link Parametri#da(Map)}.
+ */
+public final class Generatore {
+
+  /** The symbols, in the order they are used. */
+  private static final String SIMBOLI = "xyzabcdefghijklmnopqrstuvw";
+
+  /**
+   * The parameters of a generator.
+   *
+   * @param profondita the depth of the expressions
+   * @param ramificazione the number of operands of sums and products, at least 2
+   * @param simboli the number of distinct symbols, from 0 to 26
+   * @param esponente the largest absolute value of an exponent, 0 for no powers
+   * @param coefficiente the largest absolute value of a coefficient, at least 1
+   * @param condivisione the probability that an operand repeats a subexpression, from 0 to 1
+   */
+  public record Parametri(
+      int profondita,
+      int ramificazione,
+      int simboli,
+      int esponente,
+      long coefficiente,
+      double condivisione) {
+
+    /** The default parameters. */
+    public static final Parametri PREDEFINITI = new Parametri(4, 3, 3, 3, 9, 0);
+
+    /**
+     * Constructs the parameters of a generator.
+     *
+     * @throws IllegalArgumentException if any parameter is out of its range
+     */
+    public Parametri {
+      if (profondita < 0) throw new IllegalArgumentException("Invalid depth: " + profondita);
+      if (ramificazione < 2) {
+        throw new IllegalArgumentException("Invalid fan-out: " + ramificazione);
+      }
+      if (simboli < 0 || simboli > SIMBOLI.length()) {
+        throw new IllegalArgumentException("Invalid number of symbols: " + simboli);
+      }
+      if (esponente < 0) throw new IllegalArgumentException("Invalid exponent: " + esponente);
+      if (coefficiente < 1) {
+        throw new IllegalArgumentException("Invalid coefficient: " + coefficiente);
+      }
+      if (!(condivisione >= 0 && condivisione <= 1)) {
+        throw new IllegalArgumentException("Invalid sharing: " + condivisione);
+      }
+    }
+
+    /**
+     * Returns the parameters given by a map of options, the missing ones being the default: {@code
+     * profondita}, {@code ramificazione}, {@code simboli}, {@code esponente}, {@code coefficiente}
+     * and {@code condivisione}.
+     *
+     * @param opzioni the values of the options, by name
+     * @return the parameters
+     * @throws NullPointerException if {@code opzioni} is {@code null}
+     * @throws IllegalArgumentException if a value is not a number or is out of its range
+     */
+    public static Parametri da(Map<String, String> opzioni) {
+      Objects.requireNonNull(opzioni, "the options cannot be null");
+      try {
+        return new Parametri(
+            Integer.parseInt(opzioni.getOrDefault("profondita", "" + PREDEFINITI.profondita)),
+            Integer.parseInt(
+                opzioni.getOrDefault("ramificazione", "" + PREDEFINITI.ramificazione)),
+            Integer.parseInt(opzioni.getOrDefault("simboli", "" + PREDEFINITI.simboli)),
+            Integer.parseInt(opzioni.getOrDefault("esponente", "" + PREDEFINITI.esponente)),
+            Long.parseLong(opzioni.getOrDefault("coefficiente", "" + PREDEFINITI.coefficiente)),
+            Double.parseDouble(
+                opzioni.getOrDefault("condivisione", "" + PREDEFINITI.condivisione)));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid option value: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /*
+   * AF: the generator produces the expressions determined by parametri and by the state of random.
+   *
+   * RI: parametri, random not null.
+   */
+
+  /** The parameters. */
+  private final Parametri parametri;
+
+  /** The source of randomness. */
+  private final Random random;
+
+  /**
+   * Constructs a generator.
+   *
+   * @param parametri the parameters
+   * @param seme the seed
+   * @throws NullPointerException if {@code parametri} is {@code null}
+   */
+  public Generatore(Parametri parametri, long seme) {
+    this.parametri = Objects.requireNonNull(parametri, "the parameters cannot be null");
+    this.random = new Random(seme);
+  }
+
+  /**
+   * Generates the next expression in Polish notation.
+   *
+   * @return the expression, in the format read by {@link NotazionePolaccaEspressione}
+   */
+  public String polacca() {
+    List<List<String>> generate = new ArrayList<>();
+    for (int i = 0; i < parametri.profondita(); i++) generate.add(new ArrayList<>());
+    StringBuilder res = new StringBuilder();
+    genera(res, parametri.profondita(), generate);
+    return res.toString();
+  }
+
+  /**
+   * Generates the next expression as a linear program, where repeated subexpressions are written
+   * once.
+   *
+   * @return the instructions of the program
+   */
+  public String[] programma() {
+    return FormaProgramma.toLinearProgram(NotazionePolaccaEspressione.fromPolocaa(polacca()));
+  }
+
+  /**
+   * Appends a random expression.
+   *
+   * @param res the text of the expression
+   * @param altezza the depth of the expression to append
+   * @param generate the texts of the subexpressions generated so far, by depth
+   */
+  private void genera(StringBuilder res, int altezza, List<List<String>> generate) {
+    if (altezza == 0) {
+      if (parametri.simboli() > 0 && random.nextBoolean()) {
+        res.append(SIMBOLI.charAt(random.nextInt(parametri.simboli())));
+      } else {
+        long c = 1 + Math.floorMod(random.nextLong(), parametri.coefficiente());
+        res.append(random.nextBoolean() ? c : -c);
+      }
+      return;
+    }
+    // una sottoespressione già generata della stessa profondità viene ripetuta
+    List<String> stessaAltezza = generate.get(altezza - 1);
+    if (!stessaAltezza.isEmpty() && random.nextDouble() < parametri.condivisione()) {
+      res.append(stessaAltezza.get(random.nextInt(stessaAltezza.size())));
+      return;
+    }
+    int inizio = res.length();
+    int scelta = random.nextInt(parametri.esponente() > 0 ? 6 : 5);
+    if (scelta == 5) {
+      res.append("^ ");
+      genera(res, altezza - 1, generate);
+      int e = 1 + random.nextInt(parametri.esponente());
+      res.append(' ').append(random.nextBoolean() ? e : -e);
+    } else {
+      char operatore = scelta < 2 ? '+' : scelta < 4 ? '*' : '-';
+      int operandi = operatore == '-' ? 2 : parametri.ramificazione();
+      for (int i = 1; i < operandi; i++) res.append(operatore).append(' ');
+      for (int i = 0; i < operandi; i++) {
+        if (i > 0) res.append(' ');
+        genera(res, altezza - 1, generate);
+      }
+    }
+    stessaAltezza.add(res.substring(inizio));
+  }
+
+  /**
+   * Parses options of the form {@code --nome valore}.
+   *
+   * @param args the arguments
+   * @param posizionali the list where the arguments that are not options are added, or {@code
+   *     null} if there must be none
+   * @return the values of the options, by name
+   * @throws IllegalArgumentException if an option has no value or if there are unexpected
+   *     arguments
+   */
+  public static Map<String, String> opzioni(String[] args, List<String> posizionali) {
+    Map<String, String> res = new HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].startsWith("--")) {
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing value of option " + args[i]);
+        }
+        res.put(args[i].substring(2), args[++i]);
+      } else if (posizionali != null) {
+        posizionali.add(args[i]);
+      } else {
+        throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+      }
+    }
+    return res;
+  }
+
+  public static void main(String[] args) {
+    Map<String, String> opzioni = opzioni(args, null);
+    int righe = Integer.parseInt(opzioni.getOrDefault("righe", "1"));
+    long seme = Long.parseLong(opzioni.getOrDefault("seme", "0"));
+    boolean programma = "programma".equals(opzioni.getOrDefault("formato", "polacca"));
+    Generatore generatore = new Generatore(Parametri.da(opzioni), seme);
+    StringBuilder uscita = new StringBuilder();
+    for (int i = 0; i < righe; i++) {
+      if (programma) {
+        if (i > 0) uscita.append(System.lineSeparator());
+        for (String istruzione : generatore.programma()) {
+          uscita.append(istruzione).append(System.lineSeparator());
+        }
+      } else {
+        uscita.append(generatore.polacca()).append(System.lineSeparator());
+      }
+      if (uscita.length() > 1 << 16) {
+        System.out.print(uscita);
+        uscita.setLength(0);
+      }
+    }
+    System.out.print(uscita);
+    System.out.flush();
+  }
+}